@@ -278,7 +278,7 @@ public class Store {
         int dayOfWeek = cal.get(java.util.Calendar.DAY_OF_WEEK);
         String dayName = getDayName(dayOfWeek);
         
-        BusinessHours.DayHours dayHours = hours.getDayHours(dayName);
+        DayHours dayHours = hours.getDayHours(dayName);
         if (dayHours == null || dayHours.isClosed()) return false;
         
         // This is a simplified check - production would need proper time parsing
@@ -327,7 +327,7 @@ public class Store {
         public String getAddress() { return address; }
         public void setAddress(String address) { this.address = address; }
         public Coordinates getCoordinates() { return coordinates; }
-        public void setCoordinates(Cordinates coordinates) { this.coordinates = coordinates; }
+        public void setCoordinates(Coordinates coordinates) { this.coordinates = coordinates; }
         public String getTimezone() { return timezone; }
         public void setTimezone(String timezone) { this.timezone = timezone; }
     }
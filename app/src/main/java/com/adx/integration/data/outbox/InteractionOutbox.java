@@ -0,0 +1,292 @@
+package com.adx.integration.data.outbox;
+
+import android.content.Context;
+
+import androidx.lifecycle.LiveData;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.adx.integration.data.remote.ApiService;
+import com.adx.integration.data.remote.json.ApiGson;
+import com.adx.integration.utils.Clock;
+import com.google.gson.JsonElement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit2.Response;
+
+/**
+ * Durable queue for ad receives, clicks and store visits
+ * Interactions are written locally first, so they survive being offline and process
+ * death, and are delivered in batches by {@link OutboxFlushWorker} whenever the network
+ * is available. Each carries a client-generated idempotency key, which makes resending
+ * a batch after a lost response safe
+ */
+public class InteractionOutbox {
+
+    private static final String WORK_NAME = "adx_outbox_flush";
+    private static final int BATCH_SIZE = 50;
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long BACKOFF_SECONDS = 30; // doubled on each retry
+    private static final long AUDIT_RETENTION_MS = 7L * 24 * 60 * 60 * 1000; // 7 days
+
+    private static volatile InteractionOutbox instance;
+
+    private final Context appContext;
+    private final OutboxDao dao;
+    private final Executor transactions;
+    private final Clock clock;
+    private final LiveData<Integer> queueLength;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong localDuplicates = new AtomicLong(); // enqueued twice with the same key
+    private final AtomicLong serverDuplicates = new AtomicLong(); // already applied by the server
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong batchLatencyTotalMs = new AtomicLong();
+    private final AtomicLong deliveryDelayTotalMs = new AtomicLong(); // enqueue to acknowledgement
+
+    private InteractionOutbox(Context appContext, OutboxDatabase database, Clock clock) {
+        this(appContext, database.outboxDao(), database::runInTransaction, clock);
+    }
+
+    /**
+     * @param transactions runs a group of dao writes atomically
+     */
+    InteractionOutbox(Context appContext, OutboxDao dao, Executor transactions, Clock clock) {
+        this.appContext = appContext;
+        this.dao = dao;
+        this.transactions = transactions;
+        this.clock = clock;
+        this.queueLength = dao.observePendingCount();
+    }
+
+    public static InteractionOutbox getInstance(Context context) {
+        if (instance == null) {
+            synchronized (InteractionOutbox.class) {
+                if (instance == null) {
+                    Context appContext = context.getApplicationContext();
+                    instance = new InteractionOutbox(appContext, OutboxDatabase.getInstance(appContext), Clock.SYSTEM);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Queue an interaction and schedule delivery; call off the main thread
+     * @return the idempotency key assigned to it
+     */
+    public String enqueue(String type, String targetId, Map<String, Object> location) {
+        return enqueue(type, targetId, location, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Queue an interaction under a caller-chosen key; re-enqueueing the same key is a no-op
+     */
+    public String enqueue(String type, String targetId, Map<String, Object> location, String idempotencyKey) {
+        String locationJson = location != null ? ApiGson.get().toJson(location) : null;
+        long id = dao.insert(new OutboxEntry(idempotencyKey, type, targetId, locationJson, clock.currentTimeMillis()));
+        if (id == -1) {
+            localDuplicates.incrementAndGet();
+        } else {
+            enqueued.incrementAndGet();
+        }
+        scheduleFlush();
+        return idempotencyKey;
+    }
+
+    /**
+     * Ask WorkManager to flush once the network is available; retries back off exponentially
+     */
+    public void scheduleFlush() {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(OutboxFlushWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        // A queued or running flush drains everything pending, so one unique request is enough;
+        // the worker retries if entries arrived after its last read
+        WorkManager.getInstance(appContext)
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Whether entries are still waiting to be delivered; call off the main thread
+     */
+    boolean hasPending() {
+        return dao.countPending() > 0;
+    }
+
+    /**
+     * Deliver every pending entry in batches
+     * @throws IOException when a batch could not be delivered and the flush should be retried later
+     */
+    void flush(ApiService api) throws IOException {
+        List<OutboxEntry> batch;
+        while (!(batch = dao.getPending(BATCH_SIZE)).isEmpty()) {
+            List<OutboxEntry> sendable = dropExhausted(batch);
+            if (sendable.isEmpty()) continue;
+
+            List<Long> ids = new ArrayList<>();
+            List<ApiService.Interaction> interactions = new ArrayList<>();
+            for (OutboxEntry entry : sendable) {
+                ids.add(entry.getId());
+                interactions.add(new ApiService.Interaction(entry.getIdempotencyKey(), entry.getType(),
+                        entry.getTargetId(),
+                        ApiGson.get().fromJson(entry.getLocation(), JsonElement.class),
+                        entry.getCreatedAt()));
+            }
+            dao.incrementAttempts(ids);
+
+            long startedAt = System.nanoTime();
+            Response<ApiService.ApiResponse<ApiService.InteractionBatchResponse>> response =
+                    api.submitInteractions(new ApiService.InteractionBatch(interactions)).execute();
+            batchesSent.incrementAndGet();
+            batchLatencyTotalMs.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+
+            if (isBatchRejected(response.code())) {
+                // Resending the same batch cannot succeed; don't hold the queue for MAX_ATTEMPTS
+                rejectAll(sendable, "HTTP " + response.code());
+                continue;
+            }
+            ApiService.ApiResponse<ApiService.InteractionBatchResponse> body = response.body();
+            if (!response.isSuccessful() || body == null || !body.isSuccess() || body.getData() == null) {
+                throw new IOException("Interaction batch failed: " + response.code());
+            }
+            if (reconcile(sendable, body.getData()) == 0) {
+                // Nothing settled; stop rather than resend the same batch straight away
+                throw new IOException("Interaction batch settled no entries");
+            }
+        }
+        dao.deleteSettledBefore(clock.currentTimeMillis() - AUDIT_RETENTION_MS);
+    }
+
+    /**
+     * Give up on entries that keep failing so one bad interaction cannot block the queue
+     */
+    private List<OutboxEntry> dropExhausted(List<OutboxEntry> batch) {
+        List<OutboxEntry> sendable = new ArrayList<>(batch.size());
+        long now = clock.currentTimeMillis();
+        for (OutboxEntry entry : batch) {
+            if (entry.getAttempts() >= MAX_ATTEMPTS) {
+                dao.markRejected(entry.getIdempotencyKey(), "Gave up after " + MAX_ATTEMPTS + " attempts", now);
+                rejected.incrementAndGet();
+            } else {
+                sendable.add(entry);
+            }
+        }
+        return sendable;
+    }
+
+    /**
+     * The server refused the batch's content. Other errors, 401 and 404 included, can
+     * clear up (a refreshed token, a deploy finishing) and are retried with backoff
+     * until MAX_ATTEMPTS
+     */
+    private static boolean isBatchRejected(int code) {
+        return code == 400 || code == 422;
+    }
+
+    private void rejectAll(List<OutboxEntry> entries, String error) {
+        long now = clock.currentTimeMillis();
+        transactions.execute(() -> {
+            for (OutboxEntry entry : entries) {
+                dao.markRejected(entry.getIdempotencyKey(), error, now);
+            }
+        });
+        rejected.addAndGet(entries.size());
+    }
+
+    /**
+     * Settle entries from the server's per-key results; entries without a result stay pending
+     * @return number of entries settled
+     */
+    private int reconcile(List<OutboxEntry> sent, ApiService.InteractionBatchResponse response) {
+        Map<String, ApiService.InteractionResult> results = new HashMap<>();
+        if (response.getResults() != null) {
+            for (ApiService.InteractionResult result : response.getResults()) {
+                results.put(result.getIdempotencyKey(), result);
+            }
+        }
+
+        long now = clock.currentTimeMillis();
+        int[] settled = {0};
+        transactions.execute(() -> {
+            for (OutboxEntry entry : sent) {
+                ApiService.InteractionResult result = results.get(entry.getIdempotencyKey());
+                if (result == null) continue;
+
+                if (ApiService.InteractionResult.STATUS_REJECTED.equals(result.getStatus())) {
+                    dao.markRejected(entry.getIdempotencyKey(), result.getError(), now);
+                    rejected.incrementAndGet();
+                } else {
+                    String transactionId = result.getTransaction() != null
+                            ? result.getTransaction().getTransactionId() : null;
+                    dao.markSent(entry.getIdempotencyKey(), transactionId, now);
+                    if (ApiService.InteractionResult.STATUS_DUPLICATE.equals(result.getStatus())) {
+                        serverDuplicates.incrementAndGet();
+                    }
+                    delivered.incrementAndGet();
+                    deliveryDelayTotalMs.addAndGet(now - entry.getCreatedAt());
+                }
+                settled[0]++;
+            }
+        });
+        return settled[0];
+    }
+
+    public LiveData<Integer> getQueueLength() {
+        return queueLength;
+    }
+
+    public long getEnqueued() {
+        return enqueued.get();
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getLocalDuplicates() {
+        return localDuplicates.get();
+    }
+
+    public long getServerDuplicates() {
+        return serverDuplicates.get();
+    }
+
+    /**
+     * Mean round trip of one batch request
+     */
+    public long getAverageBatchLatencyMs() {
+        long batches = batchesSent.get();
+        return batches > 0 ? batchLatencyTotalMs.get() / batches : 0;
+    }
+
+    /**
+     * Mean time from enqueue until the server acknowledged the interaction
+     */
+    public long getAverageDeliveryDelayMs() {
+        long count = delivered.get();
+        return count > 0 ? deliveryDelayTotalMs.get() / count : 0;
+    }
+}
@@ -0,0 +1,45 @@
+package com.adx.integration.data.outbox;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface OutboxDao {
+
+    /**
+     * @return the new row id, or -1 if an entry with the same idempotency key is already queued
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insert(OutboxEntry entry);
+
+    @Query("SELECT * FROM interaction_outbox WHERE state = 0 ORDER BY id LIMIT :limit")
+    List<OutboxEntry> getPending(int limit);
+
+    @Query("SELECT COUNT(*) FROM interaction_outbox WHERE state = 0")
+    int countPending();
+
+    @Query("SELECT COUNT(*) FROM interaction_outbox WHERE state = 0")
+    LiveData<Integer> observePendingCount();
+
+    @Query("UPDATE interaction_outbox SET attempts = attempts + 1 WHERE id IN (:ids)")
+    void incrementAttempts(List<Long> ids);
+
+    @Query("UPDATE interaction_outbox SET state = 1, transactionId = :transactionId, settledAt = :settledAt "
+            + "WHERE idempotencyKey = :idempotencyKey")
+    void markSent(String idempotencyKey, String transactionId, long settledAt);
+
+    @Query("UPDATE interaction_outbox SET state = 2, error = :error, settledAt = :settledAt "
+            + "WHERE idempotencyKey = :idempotencyKey")
+    void markRejected(String idempotencyKey, String error, long settledAt);
+
+    /**
+     * Drop delivered and rejected entries once they are no longer useful for auditing
+     */
+    @Query("DELETE FROM interaction_outbox WHERE state != 0 AND settledAt < :before")
+    int deleteSettledBefore(long before);
+}
@@ -0,0 +1,33 @@
+package com.adx.integration.data.outbox;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+/**
+ * Local store for the interaction outbox; kept apart from cached server data so
+ * clearing caches never drops undelivered interactions
+ */
+@Database(entities = {OutboxEntry.class}, version = 1, exportSchema = false)
+public abstract class OutboxDatabase extends RoomDatabase {
+
+    private static final String DB_NAME = "adx_outbox.db";
+
+    private static volatile OutboxDatabase instance;
+
+    public abstract OutboxDao outboxDao();
+
+    public static OutboxDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (OutboxDatabase.class) {
+                if (instance == null) {
+                    instance = Room.databaseBuilder(context.getApplicationContext(),
+                            OutboxDatabase.class, DB_NAME).build();
+                }
+            }
+        }
+        return instance;
+    }
+}
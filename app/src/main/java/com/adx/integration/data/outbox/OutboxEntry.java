@@ -0,0 +1,77 @@
+package com.adx.integration.data.outbox;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One ad or store interaction waiting to be delivered, keyed by a client-generated
+ * idempotency key so a resent batch is never applied twice
+ */
+@Entity(tableName = "interaction_outbox", indices = {@Index(value = "idempotencyKey", unique = true)})
+public class OutboxEntry {
+
+    public static final String TYPE_RECEIVE = "receive";
+    public static final String TYPE_CLICK = "click";
+    public static final String TYPE_VISIT = "visit";
+
+    public static final int STATE_PENDING = 0;
+    public static final int STATE_SENT = 1;
+    public static final int STATE_REJECTED = 2;
+
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+
+    @NonNull
+    private String idempotencyKey;
+
+    @NonNull
+    private String type;
+
+    @NonNull
+    private String targetId; // adId, or storeId for visits
+
+    private String location; // location data as JSON, may be null
+
+    private long createdAt;
+    private int attempts;
+    private int state;
+    private String transactionId;
+    private String error;
+    private long settledAt;
+
+    public OutboxEntry(@NonNull String idempotencyKey, @NonNull String type, @NonNull String targetId,
+                       String location, long createdAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.type = type;
+        this.targetId = targetId;
+        this.location = location;
+        this.createdAt = createdAt;
+        this.state = STATE_PENDING;
+    }
+
+    // Getters and Setters
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+    @NonNull public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(@NonNull String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+    @NonNull public String getType() { return type; }
+    public void setType(@NonNull String type) { this.type = type; }
+    @NonNull public String getTargetId() { return targetId; }
+    public void setTargetId(@NonNull String targetId) { this.targetId = targetId; }
+    public String getLocation() { return location; }
+    public void setLocation(String location) { this.location = location; }
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public int getState() { return state; }
+    public void setState(int state) { this.state = state; }
+    public String getTransactionId() { return transactionId; }
+    public void setTransactionId(String transactionId) { this.transactionId = transactionId; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    public long getSettledAt() { return settledAt; }
+    public void setSettledAt(long settledAt) { this.settledAt = settledAt; }
+}
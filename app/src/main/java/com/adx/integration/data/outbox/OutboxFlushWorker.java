@@ -0,0 +1,36 @@
+package com.adx.integration.data.outbox;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.adx.integration.data.remote.ApiClient;
+
+import java.io.IOException;
+
+/**
+ * Delivers the interaction outbox; a failed flush is retried with exponential backoff
+ */
+public class OutboxFlushWorker extends Worker {
+
+    public OutboxFlushWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        InteractionOutbox outbox = InteractionOutbox.getInstance(context);
+        try {
+            outbox.flush(ApiClient.getInstance(context).getApiService());
+            // Entries queued after the last read were not picked up, and a new request
+            // for them was ignored while this one ran
+            return outbox.hasPending() ? Result.retry() : Result.success();
+        } catch (IOException e) {
+            return Result.retry();
+        }
+    }
+}
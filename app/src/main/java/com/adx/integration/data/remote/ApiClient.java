@@ -0,0 +1,122 @@
+package com.adx.integration.data.remote;
+
+import android.content.Context;
+
+import com.adx.integration.BuildConfig;
+import com.adx.integration.data.remote.json.ApiConverterFactory;
+import com.adx.integration.utils.Clock;
+import com.adx.integration.utils.PreferencesManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.logging.HttpLoggingInterceptor;
+import retrofit2.Retrofit;
+
+/**
+ * Builds the Retrofit {@link ApiService} over an OkHttp client with a bounded
+ * on-disk response cache for the read endpoints; identical concurrent GETs share
+ * one request
+ */
+public class ApiClient {
+
+    private static final String CACHE_DIR = "http_cache";
+    private static final long CACHE_SIZE_BYTES = 20L * 1024 * 1024; // 20 MB
+    private static final long TIMEOUT_SECONDS = 30; // 30 seconds
+    private static final long RESULT_REUSE_MS = 2000; // 2 seconds
+
+    private static volatile ApiClient instance;
+
+    private final Cache cache;
+    private final HttpCacheMetrics cacheMetrics = new HttpCacheMetrics();
+    private final SingleFlightCallAdapterFactory singleFlight =
+            new SingleFlightCallAdapterFactory(Clock.SYSTEM, RESULT_REUSE_MS);
+    private final ApiService apiService;
+    private volatile String authToken;
+
+    private ApiClient(Context context) {
+        cache = new Cache(new File(context.getCacheDir(), CACHE_DIR), CACHE_SIZE_BYTES);
+        // Workers and services can create the client before any screen has checked auth
+        authToken = normalize(new PreferencesManager(context).getAuthToken());
+
+        HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
+        logging.setLevel(BuildConfig.DEBUG ? HttpLoggingInterceptor.Level.BASIC : HttpLoggingInterceptor.Level.NONE);
+
+        OkHttpClient client = new OkHttpClient.Builder()
+                .cache(cache)
+                .addInterceptor(chain -> {
+                    Request.Builder request = chain.request().newBuilder();
+                    String token = authToken;
+                    if (token != null) {
+                        request.header("Authorization", "Bearer " + token);
+                    }
+                    return chain.proceed(request.build());
+                })
+                .addInterceptor(cacheMetrics)
+                .addInterceptor(logging)
+                .addNetworkInterceptor(new CachePolicyInterceptor())
+                .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+
+        apiService = new Retrofit.Builder()
+                .baseUrl(BuildConfig.API_BASE_URL)
+                .client(client)
+                .addConverterFactory(new ApiConverterFactory())
+                .addCallAdapterFactory(singleFlight)
+                .build()
+                .create(ApiService.class);
+    }
+
+    public static ApiClient getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ApiClient.class) {
+                if (instance == null) {
+                    instance = new ApiClient(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public ApiService getApiService() {
+        return apiService;
+    }
+
+    public HttpCacheMetrics getCacheMetrics() {
+        return cacheMetrics;
+    }
+
+    public SingleFlightCallAdapterFactory getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Set the bearer token; cached responses belong to the previous user and are dropped
+     */
+    public void setAuthToken(String token) {
+        token = normalize(token);
+        String previous = authToken;
+        authToken = token;
+        if (previous != null && !previous.equals(token)) {
+            clearCache();
+            singleFlight.clear();
+        }
+    }
+
+    private static String normalize(String token) {
+        return token == null || token.isEmpty() ? null : token;
+    }
+
+    public void clearCache() {
+        try {
+            cache.evictAll();
+        } catch (IOException e) {
+            // Handle error
+        }
+    }
+}
@@ -4,7 +4,10 @@ import com.adx.integration.data.model.Advertisement;
 import com.adx.integration.data.model.CreditTransaction;
 import com.adx.integration.data.model.Store;
 import com.adx.integration.data.model.User;
+import com.google.gson.JsonElement;
+import com.google.gson.annotations.SerializedName;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -37,7 +40,8 @@ public interface ApiService {
             @Query("latitude") Double latitude,
             @Query("longitude") Double longitude,
             @Query("category") String category,
-            @Query("limit") Integer limit
+            @Query("limit") Integer limit,
+            @Query("fields") String fields
     );
 
     @GET("ads/{adId}")
@@ -61,6 +65,14 @@ public interface ApiService {
             @Body Map<String, Object> locationData
     );
 
+    // Receives, clicks and visits queued in the interaction outbox; applied once per idempotency key
+    @POST("interactions/batch")
+    Call<ApiResponse<InteractionBatchResponse>> submitInteractions(@Body InteractionBatch batch);
+
+    // Net radius deducts and refunds after local compaction; applied once per operation id
+    @POST("credits/radius/batch")
+    Call<ApiResponse<RadiusOperationBatchResponse>> submitRadiusOperations(@Body RadiusOperationBatch batch);
+
     @GET("ads/history/user")
     Call<ApiResponse<List<AdInteraction>>> getUserAdHistory(
             @Query("limit") Integer limit
@@ -69,7 +81,8 @@ public interface ApiService {
     @GET("ads/category/{category}")
     Call<ApiResponse<List<Advertisement>>> getAdsByCategory(
             @Path("category") String category,
-            @Query("limit") Integer limit
+            @Query("limit") Integer limit,
+            @Query("fields") String fields
     );
 
     @GET("ads/sync/status")
@@ -130,12 +143,14 @@ public interface ApiService {
 
     @GET("users/nearby-stores")
     Call<ApiResponse<List<Store>>> getNearbyStores(
-            @Query("radius") Integer radius
+            @Query("radius") Integer radius,
+            @Query("fields") String fields
     );
 
     @GET("users/store-recommendations")
     Call<ApiResponse<List<Store>>> getStoreRecommendations(
-            @Query("limit") Integer limit
+            @Query("limit") Integer limit,
+            @Query("fields") String fields
     );
 
     @GET("users/location-history")
@@ -950,4 +965,216 @@ public interface ApiService {
             return version;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Batch of queued interactions
+     */
+    public static class InteractionBatch {
+        @SerializedName("interactions")
+        private List<Interaction> interactions;
+
+        public InteractionBatch(List<Interaction> interactions) {
+            this.interactions = interactions;
+        }
+
+        public List<Interaction> getInteractions() {
+            return interactions;
+        }
+    }
+
+    /**
+     * Single queued interaction
+     */
+    public static class Interaction {
+        @SerializedName("idempotencyKey")
+        private String idempotencyKey;
+
+        @SerializedName("type")
+        private String type; // receive, click, visit
+
+        @SerializedName("targetId")
+        private String targetId;
+
+        @SerializedName("location")
+        private JsonElement location;
+
+        @SerializedName("occurredAt")
+        private long occurredAt;
+
+        public Interaction(String idempotencyKey, String type, String targetId, JsonElement location, long occurredAt) {
+            this.idempotencyKey = idempotencyKey;
+            this.type = type;
+            this.targetId = targetId;
+            this.location = location;
+            this.occurredAt = occurredAt;
+        }
+
+        public String getIdempotencyKey() {
+            return idempotencyKey;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getTargetId() {
+            return targetId;
+        }
+
+        public JsonElement getLocation() {
+            return location;
+        }
+
+        public long getOccurredAt() {
+            return occurredAt;
+        }
+    }
+
+    /**
+     * Per-interaction outcome of a batch
+     */
+    public static class InteractionBatchResponse {
+        @SerializedName("results")
+        private List<InteractionResult> results;
+
+        @SerializedName("remainingCredits")
+        private int remainingCredits;
+
+        public List<InteractionResult> getResults() {
+            return results;
+        }
+
+        public int getRemainingCredits() {
+            return remainingCredits;
+        }
+    }
+
+    /**
+     * Outcome of one interaction
+     */
+    public static class InteractionResult {
+        public static final String STATUS_APPLIED = "applied";
+        public static final String STATUS_DUPLICATE = "duplicate"; // key seen before; transaction is the original
+        public static final String STATUS_REJECTED = "rejected";
+
+        @SerializedName("idempotencyKey")
+        private String idempotencyKey;
+
+        @SerializedName("status")
+        private String status;
+
+        @SerializedName("transaction")
+        private CreditTransaction transaction;
+
+        @SerializedName("error")
+        private String error;
+
+        public String getIdempotencyKey() {
+            return idempotencyKey;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public CreditTransaction getTransaction() {
+            return transaction;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Batch of compacted radius credit operations
+     */
+    public static class RadiusOperationBatch {
+        @SerializedName("operations")
+        private List<RadiusOperation> operations;
+
+        public RadiusOperationBatch(List<RadiusOperation> operations) {
+            this.operations = operations;
+        }
+
+        public List<RadiusOperation> getOperations() {
+            return operations;
+        }
+    }
+
+    /**
+     * Single radius deduct or refund
+     */
+    public static class RadiusOperation {
+        @SerializedName("operationId")
+        private String operationId;
+
+        @SerializedName("type")
+        private String type; // deduct, refund
+
+        @SerializedName("storeId")
+        private String storeId;
+
+        @SerializedName("credits")
+        private int credits;
+
+        @SerializedName("entryId")
+        private String entryId; // refunds: operation id of the deduct being returned
+
+        @SerializedName("occurredAt")
+        private long occurredAt;
+
+        public RadiusOperation(String operationId, String type, String storeId, int credits, String entryId,
+                               long occurredAt) {
+            this.operationId = operationId;
+            this.type = type;
+            this.storeId = storeId;
+            this.credits = credits;
+            this.entryId = entryId;
+            this.occurredAt = occurredAt;
+        }
+
+        public String getOperationId() {
+            return operationId;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getStoreId() {
+            return storeId;
+        }
+
+        public int getCredits() {
+            return credits;
+        }
+
+        public String getEntryId() {
+            return entryId;
+        }
+
+        public long getOccurredAt() {
+            return occurredAt;
+        }
+    }
+
+    /**
+     * Outcome of a radius operation batch; operations not listed as rejected were applied
+     */
+    public static class RadiusOperationBatchResponse {
+        @SerializedName("rejected")
+        private List<String> rejected;
+
+        @SerializedName("remainingCredits")
+        private int remainingCredits;
+
+        public List<String> getRejected() {
+            return rejected;
+        }
+
+        public int getRemainingCredits() {
+            return remainingCredits;
+        }
+    }
+}
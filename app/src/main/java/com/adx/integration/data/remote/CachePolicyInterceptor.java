@@ -0,0 +1,60 @@
+package com.adx.integration.data.remote;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Network interceptor that gives read endpoints a client-side freshness window
+ * when the server doesn't send one
+ *
+ * Within the window responses are served from the disk cache without a request.
+ * After it, OkHttp revalidates with If-None-Match / If-Modified-Since from the
+ * stored ETag / Last-Modified and a 304 is answered from the cache. A max-age of
+ * 0 means "always revalidate"
+ */
+public class CachePolicyInterceptor implements Interceptor {
+
+    // Path prefix -> max-age in seconds, first match wins
+    private final Map<String, Integer> maxAgeByPath = new LinkedHashMap<>();
+
+    public CachePolicyInterceptor() {
+        maxAgeByPath.put("ads/available", 60); // 1 minute
+        maxAgeByPath.put("users/nearby-stores", 5 * 60); // 5 minutes
+        maxAgeByPath.put("credits/opportunities", 10 * 60); // 10 minutes
+        maxAgeByPath.put("users/dashboard", 0); // always revalidate
+    }
+
+    public void setMaxAge(String pathPrefix, int maxAgeSeconds) {
+        maxAgeByPath.put(pathPrefix, maxAgeSeconds);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (!"GET".equals(request.method()) || !response.isSuccessful()) return response;
+
+        // Respect explicit server policies
+        if (response.header("Cache-Control") != null || response.header("Expires") != null) return response;
+
+        Integer maxAge = maxAgeFor(request.url().encodedPath());
+        if (maxAge == null) return response;
+
+        return response.newBuilder()
+                .removeHeader("Pragma")
+                .header("Cache-Control", "private, max-age=" + maxAge)
+                .build();
+    }
+
+    private Integer maxAgeFor(String path) {
+        for (Map.Entry<String, Integer> entry : maxAgeByPath.entrySet()) {
+            if (path.contains("/" + entry.getKey())) return entry.getValue();
+        }
+        return null;
+    }
+}
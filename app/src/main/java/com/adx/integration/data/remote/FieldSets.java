@@ -0,0 +1,23 @@
+package com.adx.integration.data.remote;
+
+/**
+ * Field projections for the {@code fields} parameter of list endpoints
+ * Comma-separated paths, dotted for nested fields; the server returns only these.
+ * Heavy fields no screen displays (stats.uniqueUsers, stats.uniqueVisitors) are left out.
+ * Passing null requests the full objects
+ */
+public final class FieldSets {
+
+    /** Ad cards and the bubble list */
+    public static final String AD_LIST = "id,adId,title,description,advertiser,media,creditCost,rewards,"
+            + "category,priority,status,schedule,targeting,isAvailable,"
+            + "stats.impressions,stats.clicks,stats.visits";
+
+    /** Nearby stores, recommendations and the radius engine */
+    public static final String STORE_LIST = "id,storeId,name,description,location,contact,hours,category,"
+            + "tags,ads,radiusSettings,images,isActive,distance,"
+            + "stats.totalVisits,stats.averageVisitDuration";
+
+    private FieldSets() {
+    }
+}
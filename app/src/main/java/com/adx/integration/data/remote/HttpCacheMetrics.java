@@ -0,0 +1,67 @@
+package com.adx.integration.data.remote;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Application interceptor counting how requests were answered by the HTTP cache
+ * and how many body bytes that saved
+ */
+public class HttpCacheMetrics implements Interceptor {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong(); // served without touching the network
+    private final AtomicLong conditionalHits = new AtomicLong(); // revalidated with a 304
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        requests.incrementAndGet();
+
+        Response networkResponse = response.networkResponse();
+        Response cacheResponse = response.cacheResponse();
+        if (cacheResponse == null) return response;
+
+        if (networkResponse == null) {
+            cacheHits.incrementAndGet();
+        } else if (networkResponse.code() == 304) {
+            conditionalHits.incrementAndGet();
+        } else {
+            return response;
+        }
+
+        long length = response.body() != null ? response.body().contentLength() : -1;
+        if (length > 0) {
+            bytesSaved.addAndGet(length);
+        }
+        return response;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getConditionalHits() {
+        return conditionalHits.get();
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * Share of requests whose body came from the cache, including 304 revalidations
+     */
+    public double getHitRatio() {
+        long total = requests.get();
+        return total > 0 ? (double) (cacheHits.get() + conditionalHits.get()) / total : 0;
+    }
+}
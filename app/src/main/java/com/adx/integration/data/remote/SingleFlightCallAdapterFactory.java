@@ -0,0 +1,470 @@
+package com.adx.integration.data.remote;
+
+import com.adx.integration.utils.Clock;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okio.Timeout;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+
+/**
+ * Call adapter that coalesces identical GET calls on {@link ApiService}
+ * Calls with the same method and URL (path and query arguments included) that overlap
+ * share one network request and its response. With a reuse window, a successful
+ * response is also handed to identical calls made shortly after it completed; any
+ * completed non-GET call ends that reuse, since it may have changed what a GET returns.
+ * Response bodies are shared between callers and must not be mutated
+ */
+public class SingleFlightCallAdapterFactory extends CallAdapter.Factory {
+
+    private final Clock clock;
+    private final long reuseWindowMs;
+    private final Map<String, Flight<?>> flights = new HashMap<>();
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong(); // joined a call still in flight
+    private final AtomicLong reused = new AtomicLong(); // answered from a call that just completed
+
+    public SingleFlightCallAdapterFactory(Clock clock, long reuseWindowMs) {
+        this.clock = clock;
+        this.reuseWindowMs = reuseWindowMs;
+    }
+
+    @Override
+    public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        if (getRawType(returnType) != Call.class) {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        CallAdapter<Object, Call<Object>> next =
+                (CallAdapter<Object, Call<Object>>) retrofit.nextCallAdapter(this, returnType, annotations);
+        Executor callbackExecutor = retrofit.callbackExecutor();
+        boolean get = isGet(annotations);
+        return new CallAdapter<Object, Call<Object>>() {
+            @Override
+            public Type responseType() {
+                return next.responseType();
+            }
+
+            @Override
+            public Call<Object> adapt(Call<Object> call) {
+                return get
+                        ? new SingleFlightCall<>(next.adapt(call), callbackExecutor)
+                        : new InvalidatingCall<>(next.adapt(call));
+            }
+        };
+    }
+
+    /**
+     * Forget completed responses kept for reuse, e.g. after the signed-in user changed or
+     * a write went through. Calls still in flight finish for their callers but are no
+     * longer joined or reused
+     */
+    public void clear() {
+        synchronized (flights) {
+            flights.clear();
+        }
+    }
+
+    public long getStarted() {
+        return started.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getReused() {
+        return reused.get();
+    }
+
+    private static boolean isGet(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof GET) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Join the flight for a key, or start one with the given call as its leader
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Flight<T> join(String key, Call<T> call, SingleFlightCall<T> caller) {
+        long now = clock.currentTimeMillis();
+        synchronized (flights) {
+            Iterator<Flight<?>> it = flights.values().iterator();
+            while (it.hasNext()) {
+                if (!it.next().isJoinable(now)) it.remove();
+            }
+
+            Flight<T> flight = (Flight<T>) flights.get(key);
+            if (flight != null && flight.retain()) {
+                if (flight.isDone()) {
+                    reused.incrementAndGet();
+                } else {
+                    coalesced.incrementAndGet();
+                }
+                return flight;
+            }
+
+            flight = new Flight<>(key, call);
+            flight.retain();
+            flights.put(key, flight);
+            started.incrementAndGet();
+            caller.leader = true;
+            return flight;
+        }
+    }
+
+    private void onCompleted(Flight<?> flight) {
+        if (flight.isJoinable(clock.currentTimeMillis())) return;
+        synchronized (flights) {
+            flights.remove(flight.key, flight);
+        }
+    }
+
+    private final class Flight<T> {
+        final String key;
+        final Call<T> call;
+        private final List<Waiter<T>> waiters = new ArrayList<>();
+        private int refs;
+        private boolean done;
+        private long completedAt;
+        private Response<T> response;
+        private byte[] errorBytes; // error bodies are one-shot, so each caller gets its own copy
+        private Throwable failure;
+
+        Flight(String key, Call<T> call) {
+            this.key = key;
+            this.call = call;
+        }
+
+        synchronized boolean isDone() {
+            return done;
+        }
+
+        synchronized boolean isJoinable(long now) {
+            if (!done) return true;
+            return failure == null && response.isSuccessful() && now - completedAt < reuseWindowMs;
+        }
+
+        synchronized boolean retain() {
+            if (done && !isJoinable(clock.currentTimeMillis())) return false;
+            refs++;
+            return true;
+        }
+
+        /**
+         * Drop one caller's interest; the shared request is cancelled once nobody waits on it
+         */
+        void release() {
+            boolean cancel;
+            synchronized (this) {
+                cancel = --refs == 0 && !done;
+                notifyAll();
+            }
+            if (cancel) {
+                call.cancel();
+            }
+        }
+
+        void complete(Response<T> response, Throwable failure) {
+            byte[] errorBytes = null;
+            if (response != null && !response.isSuccessful() && response.errorBody() != null) {
+                try {
+                    errorBytes = response.errorBody().bytes();
+                } catch (IOException e) {
+                    // Handle error
+                }
+            }
+
+            List<Waiter<T>> pending;
+            synchronized (this) {
+                this.response = response;
+                this.errorBytes = errorBytes;
+                this.failure = failure;
+                completedAt = clock.currentTimeMillis();
+                done = true;
+                pending = new ArrayList<>(waiters);
+                waiters.clear();
+                notifyAll();
+            }
+            onCompleted(this);
+            for (Waiter<T> waiter : pending) {
+                waiter.deliver();
+            }
+        }
+
+        void enqueue(Waiter<T> waiter) {
+            synchronized (this) {
+                if (!done) {
+                    waiters.add(waiter);
+                    return;
+                }
+            }
+            waiter.deliver();
+        }
+
+        /**
+         * Wait for the shared response within the caller's own timeout, which the
+         * request it never runs would otherwise have enforced
+         */
+        Response<T> await(SingleFlightCall<T> caller) throws IOException {
+            Timeout timeout = caller.timeout();
+            long timeoutNanos = timeout.timeoutNanos();
+            long now = System.nanoTime();
+            if (timeout.hasDeadline()) {
+                long untilDeadline = Math.max(1, timeout.deadlineNanoTime() - now);
+                timeoutNanos = timeoutNanos == 0 ? untilDeadline : Math.min(timeoutNanos, untilDeadline);
+            }
+            long waitUntil = now + timeoutNanos;
+
+            boolean timedOut = false;
+            synchronized (this) {
+                while (!done && !caller.canceled) {
+                    try {
+                        if (timeoutNanos == 0) {
+                            wait();
+                            continue;
+                        }
+                        long remaining = waitUntil - System.nanoTime();
+                        if (remaining <= 0) {
+                            timedOut = true;
+                            break;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+            }
+            if (timedOut) {
+                // Same as OkHttp's call timeout; the shared request goes on for the others
+                caller.cancel();
+                throw new InterruptedIOException("timeout");
+            }
+            return result(caller);
+        }
+
+        synchronized Response<T> result(SingleFlightCall<T> caller) throws IOException {
+            if (caller.canceled) throw new IOException("Canceled");
+            if (failure instanceof IOException) throw (IOException) failure;
+            if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+            if (failure instanceof Error) throw (Error) failure;
+            if (failure != null) throw new IOException(failure);
+            if (errorBytes == null) return response;
+
+            MediaType type = response.errorBody() != null ? response.errorBody().contentType() : null;
+            return Response.error(ResponseBody.create(errorBytes, type), response.raw());
+        }
+    }
+
+    private static final class Waiter<T> {
+        final SingleFlightCall<T> caller;
+        final Callback<T> callback;
+
+        Waiter(SingleFlightCall<T> caller, Callback<T> callback) {
+            this.caller = caller;
+            this.callback = callback;
+        }
+
+        void deliver() {
+            Runnable delivery = () -> {
+                try {
+                    callback.onResponse(caller, caller.flight.result(caller));
+                } catch (IOException | RuntimeException e) {
+                    callback.onFailure(caller, e);
+                }
+            };
+            if (caller.callbackExecutor != null) {
+                caller.callbackExecutor.execute(delivery);
+            } else {
+                delivery.run();
+            }
+        }
+    }
+
+    /**
+     * Non-GET call that ends response reuse once it completes
+     */
+    private final class InvalidatingCall<T> implements Call<T> {
+        private final Call<T> delegate;
+
+        InvalidatingCall(Call<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Response<T> execute() throws IOException {
+            try {
+                return delegate.execute();
+            } finally {
+                clear();
+            }
+        }
+
+        @Override
+        public void enqueue(Callback<T> callback) {
+            delegate.enqueue(new Callback<T>() {
+                @Override
+                public void onResponse(Call<T> call, Response<T> response) {
+                    clear();
+                    callback.onResponse(InvalidatingCall.this, response);
+                }
+
+                @Override
+                public void onFailure(Call<T> call, Throwable t) {
+                    clear();
+                    callback.onFailure(InvalidatingCall.this, t);
+                }
+            });
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return delegate.isExecuted();
+        }
+
+        @Override
+        public void cancel() {
+            delegate.cancel();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return delegate.isCanceled();
+        }
+
+        @Override
+        public Call<T> clone() {
+            return new InvalidatingCall<>(delegate.clone());
+        }
+
+        @Override
+        public Request request() {
+            return delegate.request();
+        }
+
+        @Override
+        public Timeout timeout() {
+            return delegate.timeout();
+        }
+    }
+
+    private final class SingleFlightCall<T> implements Call<T> {
+        private final Call<T> delegate;
+        private final Executor callbackExecutor;
+        private volatile Flight<T> flight;
+        private volatile boolean canceled;
+        private boolean executed;
+        private boolean leader;
+
+        SingleFlightCall(Call<T> delegate, Executor callbackExecutor) {
+            this.delegate = delegate;
+            this.callbackExecutor = callbackExecutor;
+        }
+
+        private Flight<T> start() {
+            synchronized (this) {
+                if (executed) throw new IllegalStateException("Already executed.");
+                executed = true;
+            }
+            Request request = delegate.request();
+            Flight<T> joined = join(request.method() + " " + request.url(), delegate, this);
+            flight = joined;
+            if (canceled) {
+                // Cancelled before it started; the result is then reported as cancelled
+                joined.release();
+            }
+            return joined;
+        }
+
+        @Override
+        public Response<T> execute() throws IOException {
+            Flight<T> flight = start();
+            if (leader) {
+                try {
+                    flight.complete(delegate.execute(), null);
+                } catch (IOException | RuntimeException e) {
+                    flight.complete(null, e);
+                }
+            }
+            return flight.await(this);
+        }
+
+        @Override
+        public void enqueue(Callback<T> callback) {
+            Flight<T> flight = start();
+            flight.enqueue(new Waiter<>(this, callback));
+            if (leader) {
+                delegate.enqueue(new Callback<T>() {
+                    @Override
+                    public void onResponse(Call<T> call, Response<T> response) {
+                        flight.complete(response, null);
+                    }
+
+                    @Override
+                    public void onFailure(Call<T> call, Throwable t) {
+                        flight.complete(null, t);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public synchronized boolean isExecuted() {
+            return executed;
+        }
+
+        @Override
+        public void cancel() {
+            if (canceled) return;
+            canceled = true;
+            Flight<T> current = flight;
+            if (current != null) {
+                current.release();
+            }
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @Override
+        public Call<T> clone() {
+            return new SingleFlightCall<>(delegate.clone(), callbackExecutor);
+        }
+
+        @Override
+        public Request request() {
+            return delegate.request();
+        }
+
+        @Override
+        public Timeout timeout() {
+            return delegate.timeout();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.adx.integration.data.remote.json;
+
+import com.adx.integration.data.model.Advertisement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Streaming reader for {@link Advertisement} and its nested objects
+ */
+class AdvertisementAdapter extends StreamingModelAdapter<Advertisement> {
+
+    private final boolean skipStatsLists;
+
+    AdvertisementAdapter(TypeAdapter<Advertisement> reflective, TypeAdapter<Date> dates, boolean skipStatsLists) {
+        super(reflective, dates);
+        this.skipStatsLists = skipStatsLists;
+    }
+
+    @Override
+    protected Advertisement readObject(JsonReader in) throws IOException {
+        Advertisement ad = new Advertisement();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": ad.setId(readString(in)); break;
+                case "adId": ad.setAdId(readString(in)); break;
+                case "title": ad.setTitle(readString(in)); break;
+                case "description": ad.setDescription(readString(in)); break;
+                case "advertiser": ad.setAdvertiser(readAdvertiser(in)); break;
+                case "media": ad.setMedia(readMedia(in)); break;
+                case "creditCost": ad.setCreditCost(readCreditCost(in)); break;
+                case "rewards": ad.setRewards(readRewards(in)); break;
+                case "category": ad.setCategory(readString(in)); break;
+                case "priority": if (!skipNull(in)) ad.setPriority(in.nextInt()); break;
+                case "status": ad.setStatus(readString(in)); break;
+                case "schedule": ad.setSchedule(readSchedule(in)); break;
+                case "stats": ad.setStats(readStats(in)); break;
+                case "targeting": ad.setTargeting(readTargeting(in)); break;
+                case "createdAt": ad.setCreatedAt(readDate(in)); break;
+                case "updatedAt": ad.setUpdatedAt(readDate(in)); break;
+                case "isAvailable": if (!skipNull(in)) ad.setAvailable(readBoolean(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return ad;
+    }
+
+    private static Advertisement.Advertiser readAdvertiser(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.Advertiser advertiser = new Advertisement.Advertiser();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "name": advertiser.setName(readString(in)); break;
+                case "logo": advertiser.setLogo(readString(in)); break;
+                case "website": advertiser.setWebsite(readString(in)); break;
+                case "storeId": advertiser.setStoreId(readString(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return advertiser;
+    }
+
+    private static Advertisement.Media readMedia(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.Media media = new Advertisement.Media();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "type": media.setType(readString(in)); break;
+                case "content": media.setContent(readList(in, AdvertisementAdapter::readMediaContent)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return media;
+    }
+
+    private static Advertisement.MediaContent readMediaContent(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.MediaContent content = new Advertisement.MediaContent();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "url": content.setUrl(readString(in)); break;
+                case "type": content.setType(readString(in)); break;
+                case "duration": content.setDuration(readInteger(in)); break;
+                case "size": content.setSize(readSize(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return content;
+    }
+
+    private static Advertisement.Size readSize(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.Size size = new Advertisement.Size();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "width": size.setWidth(readInteger(in)); break;
+                case "height": size.setHeight(readInteger(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return size;
+    }
+
+    private static Advertisement.CreditCost readCreditCost(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.CreditCost cost = new Advertisement.CreditCost();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "receive": if (!skipNull(in)) cost.setReceive(in.nextInt()); break;
+                case "click": if (!skipNull(in)) cost.setClick(in.nextInt()); break;
+                case "visit": if (!skipNull(in)) cost.setVisit(in.nextInt()); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return cost;
+    }
+
+    private static Advertisement.Rewards readRewards(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.Rewards rewards = new Advertisement.Rewards();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "receive": if (!skipNull(in)) rewards.setReceive(in.nextInt()); break;
+                case "click": if (!skipNull(in)) rewards.setClick(in.nextInt()); break;
+                case "visit": if (!skipNull(in)) rewards.setVisit(in.nextInt()); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return rewards;
+    }
+
+    private Advertisement.Schedule readSchedule(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.Schedule schedule = new Advertisement.Schedule();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "startDate": schedule.setStartDate(readDate(in)); break;
+                case "endDate": schedule.setEndDate(readDate(in)); break;
+                case "timezone": schedule.setTimezone(readString(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return schedule;
+    }
+
+    private Advertisement.Stats readStats(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.Stats stats = new Advertisement.Stats();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "impressions": if (!skipNull(in)) stats.setImpressions(in.nextInt()); break;
+                case "clicks": if (!skipNull(in)) stats.setClicks(in.nextInt()); break;
+                case "visits": if (!skipNull(in)) stats.setVisits(in.nextInt()); break;
+                case "uniqueUsers":
+                    // Unbounded and never displayed in lists; skipped without materializing it
+                    if (skipStatsLists) in.skipValue();
+                    else stats.setUniqueUsers(readStringList(in));
+                    break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return stats;
+    }
+
+    private static Advertisement.Targeting readTargeting(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.Targeting targeting = new Advertisement.Targeting();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "locations": targeting.setLocations(readList(in, AdvertisementAdapter::readLocation)); break;
+                case "demographics": targeting.setDemographics(readDemographics(in)); break;
+                case "maxImpressions": targeting.setMaxImpressions(readInteger(in)); break;
+                case "maxClicks": targeting.setMaxClicks(readInteger(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return targeting;
+    }
+
+    private static Advertisement.Location readLocation(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.Location location = new Advertisement.Location();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "latitude": if (!skipNull(in)) location.setLatitude(in.nextDouble()); break;
+                case "longitude": if (!skipNull(in)) location.setLongitude(in.nextDouble()); break;
+                case "radius": if (!skipNull(in)) location.setRadius(in.nextInt()); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return location;
+    }
+
+    private static Advertisement.Demographics readDemographics(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.Demographics demographics = new Advertisement.Demographics();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "ageRange": demographics.setAgeRange(readAgeRange(in)); break;
+                case "gender": demographics.setGender(readString(in)); break;
+                case "interests": demographics.setInterests(readStringList(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return demographics;
+    }
+
+    private static Advertisement.AgeRange readAgeRange(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Advertisement.AgeRange range = new Advertisement.AgeRange();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "min": if (!skipNull(in)) range.setMin(in.nextInt()); break;
+                case "max": if (!skipNull(in)) range.setMax(in.nextInt()); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return range;
+    }
+}
@@ -0,0 +1,46 @@
+package com.adx.integration.data.remote.json;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Gson converter that parses list responses with {@link ApiGson#forLists()} and
+ * everything else, detail endpoints included, with the full {@link ApiGson#get()}
+ */
+public final class ApiConverterFactory extends Converter.Factory {
+
+    private final GsonConverterFactory full = GsonConverterFactory.create(ApiGson.get());
+    private final GsonConverterFactory lists = GsonConverterFactory.create(ApiGson.forLists());
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations,
+                                                            Retrofit retrofit) {
+        return (isList(type) ? lists : full).responseBodyConverter(type, annotations, retrofit);
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+                                                          Annotation[] methodAnnotations, Retrofit retrofit) {
+        return full.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+    }
+
+    /**
+     * A list, or a wrapper such as ApiResponse whose payload is a list
+     */
+    private static boolean isList(Type type) {
+        if (getRawType(type) == List.class) return true;
+        if (!(type instanceof ParameterizedType)) return false;
+        for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+            if (getRawType(argument) == List.class) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+package com.adx.integration.data.remote.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Gson instance shared by Retrofit and anything else parsing API payloads, so the
+ * streaming model adapters and Gson's adapter cache are built once per process
+ * List responses use {@link #forLists()}, which skips the stats lists list screens never show
+ */
+public final class ApiGson {
+
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapterFactory(new ModelAdapterFactory())
+            .create();
+
+    private static final Gson LIST_GSON = new GsonBuilder()
+            .registerTypeAdapterFactory(new ModelAdapterFactory(true))
+            .create();
+
+    private ApiGson() {
+    }
+
+    public static Gson get() {
+        return GSON;
+    }
+
+    public static Gson forLists() {
+        return LIST_GSON;
+    }
+}
@@ -0,0 +1,45 @@
+package com.adx.integration.data.remote.json;
+
+import com.adx.integration.data.model.Advertisement;
+import com.adx.integration.data.model.Store;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+import java.util.Date;
+
+/**
+ * Registers the streaming adapters for the models that dominate response parsing
+ */
+public final class ModelAdapterFactory implements TypeAdapterFactory {
+
+    private final boolean skipStatsLists;
+
+    public ModelAdapterFactory() {
+        this(false);
+    }
+
+    /**
+     * @param skipStatsLists leave the unbounded stats lists (uniqueUsers, uniqueVisitors)
+     *                       unread; for list responses, which never display them
+     */
+    public ModelAdapterFactory(boolean skipStatsLists) {
+        this.skipStatsLists = skipStatsLists;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> raw = type.getRawType();
+        if (raw == Advertisement.class) {
+            return (TypeAdapter<T>) new AdvertisementAdapter(
+                    gson.getDelegateAdapter(this, TypeToken.get(Advertisement.class)), gson.getAdapter(Date.class), skipStatsLists);
+        }
+        if (raw == Store.class) {
+            return (TypeAdapter<T>) new StoreAdapter(
+                    gson.getDelegateAdapter(this, TypeToken.get(Store.class)), gson.getAdapter(Date.class), skipStatsLists);
+        }
+        return null;
+    }
+}
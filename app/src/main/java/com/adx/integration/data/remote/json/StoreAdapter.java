@@ -0,0 +1,191 @@
+package com.adx.integration.data.remote.json;
+
+import com.adx.integration.data.model.Store;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Streaming reader for {@link Store} and its nested objects
+ */
+class StoreAdapter extends StreamingModelAdapter<Store> {
+
+    private final boolean skipStatsLists;
+
+    StoreAdapter(TypeAdapter<Store> reflective, TypeAdapter<Date> dates, boolean skipStatsLists) {
+        super(reflective, dates);
+        this.skipStatsLists = skipStatsLists;
+    }
+
+    @Override
+    protected Store readObject(JsonReader in) throws IOException {
+        Store store = new Store();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id": store.setId(readString(in)); break;
+                case "storeId": store.setStoreId(readString(in)); break;
+                case "name": store.setName(readString(in)); break;
+                case "description": store.setDescription(readString(in)); break;
+                case "location": store.setLocation(readLocation(in)); break;
+                case "contact": store.setContact(readContact(in)); break;
+                case "hours": store.setHours(readHours(in)); break;
+                case "category": store.setCategory(readString(in)); break;
+                case "tags": store.setTags(readStringList(in)); break;
+                case "ads": store.setAds(readStringList(in)); break;
+                case "radiusSettings": store.setRadiusSettings(readRadiusSettings(in)); break;
+                case "stats": store.setStats(readStats(in)); break;
+                case "images": store.setImages(readList(in, StoreAdapter::readImage)); break;
+                case "isActive": if (!skipNull(in)) store.setActive(readBoolean(in)); break;
+                case "createdAt": store.setCreatedAt(readDate(in)); break;
+                case "updatedAt": store.setUpdatedAt(readDate(in)); break;
+                // Not annotated, but the reflective adapter binds them by field name
+                case "distance": if (!skipNull(in)) store.setDistance(in.nextDouble()); break;
+                case "isInRadius": if (!skipNull(in)) store.setInRadius(readBoolean(in)); break;
+                case "enteredAt": store.setEnteredAt(readDate(in)); break;
+                case "timeInRadius": if (!skipNull(in)) store.setTimeInRadius(in.nextLong()); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return store;
+    }
+
+    private static Store.Location readLocation(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Store.Location location = new Store.Location();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "address": location.setAddress(readString(in)); break;
+                case "coordinates": location.setCoordinates(readCoordinates(in)); break;
+                case "timezone": location.setTimezone(readString(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return location;
+    }
+
+    private static Store.Coordinates readCoordinates(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Store.Coordinates coordinates = new Store.Coordinates();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "latitude": if (!skipNull(in)) coordinates.setLatitude(in.nextDouble()); break;
+                case "longitude": if (!skipNull(in)) coordinates.setLongitude(in.nextDouble()); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return coordinates;
+    }
+
+    private static Store.Contact readContact(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Store.Contact contact = new Store.Contact();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "phone": contact.setPhone(readString(in)); break;
+                case "email": contact.setEmail(readString(in)); break;
+                case "website": contact.setWebsite(readString(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return contact;
+    }
+
+    private static Store.BusinessHours readHours(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Store.BusinessHours hours = new Store.BusinessHours();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "monday": hours.setMonday(readDayHours(in)); break;
+                case "tuesday": hours.setTuesday(readDayHours(in)); break;
+                case "wednesday": hours.setWednesday(readDayHours(in)); break;
+                case "thursday": hours.setThursday(readDayHours(in)); break;
+                case "friday": hours.setFriday(readDayHours(in)); break;
+                case "saturday": hours.setSaturday(readDayHours(in)); break;
+                case "sunday": hours.setSunday(readDayHours(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return hours;
+    }
+
+    private static Store.DayHours readDayHours(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Store.DayHours day = new Store.DayHours();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "open": day.setOpen(readString(in)); break;
+                case "close": day.setClose(readString(in)); break;
+                case "closed": if (!skipNull(in)) day.setClosed(readBoolean(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return day;
+    }
+
+    private static Store.RadiusSettings readRadiusSettings(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Store.RadiusSettings settings = new Store.RadiusSettings();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "enabled": if (!skipNull(in)) settings.setEnabled(readBoolean(in)); break;
+                case "radius": if (!skipNull(in)) settings.setRadius(in.nextInt()); break;
+                case "creditDeduction": if (!skipNull(in)) settings.setCreditDeduction(in.nextInt()); break;
+                case "timeoutMinutes": if (!skipNull(in)) settings.setTimeoutMinutes(in.nextInt()); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return settings;
+    }
+
+    private Store.Stats readStats(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Store.Stats stats = new Store.Stats();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "totalVisits": if (!skipNull(in)) stats.setTotalVisits(in.nextInt()); break;
+                case "uniqueVisitors":
+                    // Unbounded and never displayed in lists; skipped without materializing it
+                    if (skipStatsLists) in.skipValue();
+                    else stats.setUniqueVisitors(readStringList(in));
+                    break;
+                case "averageVisitDuration": if (!skipNull(in)) stats.setAverageVisitDuration(in.nextDouble()); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return stats;
+    }
+
+    private static Store.StoreImage readImage(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        Store.StoreImage image = new Store.StoreImage();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "url": image.setUrl(readString(in)); break;
+                case "alt": image.setAlt(readString(in)); break;
+                case "type": image.setType(readString(in)); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+        return image;
+    }
+}
@@ -0,0 +1,89 @@
+package com.adx.integration.data.remote.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Base for hand-written adapters that read a model straight off the token stream
+ * Reading follows Gson's reflective rules: unknown keys are skipped, JSON null clears
+ * object fields and leaves primitives at their defaults. Writing is rare and stays
+ * with the reflective adapter
+ */
+abstract class StreamingModelAdapter<T> extends TypeAdapter<T> {
+
+    interface ElementReader<E> {
+        E read(JsonReader in) throws IOException;
+    }
+
+    private final TypeAdapter<T> reflective;
+    private final TypeAdapter<Date> dates;
+
+    StreamingModelAdapter(TypeAdapter<T> reflective, TypeAdapter<Date> dates) {
+        this.reflective = reflective;
+        this.dates = dates;
+    }
+
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+        reflective.write(out, value);
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        return readObject(in);
+    }
+
+    protected abstract T readObject(JsonReader in) throws IOException;
+
+    protected Date readDate(JsonReader in) throws IOException {
+        return dates.read(in);
+    }
+
+    /**
+     * Consume a JSON null if one is next
+     */
+    static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.NULL) return false;
+        in.nextNull();
+        return true;
+    }
+
+    static String readString(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        if (in.peek() == JsonToken.BOOLEAN) return Boolean.toString(in.nextBoolean());
+        return in.nextString();
+    }
+
+    static Integer readInteger(JsonReader in) throws IOException {
+        if (skipNull(in)) return null;
+        return in.nextInt();
+    }
+
+    static boolean readBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.STRING) return Boolean.parseBoolean(in.nextString());
+        return in.nextBoolean();
+    }
+
+    static List<String> readStringList(JsonReader in) throws IOException {
+        return readList(in, StreamingModelAdapter::readString);
+    }
+
+    static <E> List<E> readList(JsonReader in, ElementReader<E> element) throws IOException {
+        if (skipNull(in)) return null;
+        List<E> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(element.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+}
@@ -0,0 +1,25 @@
+package com.adx.integration.location;
+
+/**
+ * Where fence logic hands off blocking work and how results come back
+ * {@link LocationPipeline} runs effects on its bounded pool; a replay harness can
+ * run them inline for a deterministic, single-threaded replay
+ */
+public interface EffectRunner {
+
+    /**
+     * Run a side effect off the evaluation thread
+     * @return false if the effect was dropped because the effect stage is saturated or shut down
+     */
+    boolean runEffect(Runnable effect);
+
+    /**
+     * Run a side effect where only the latest pending task per key matters
+     */
+    void runConflatedEffect(String key, Runnable effect);
+
+    /**
+     * Hand a result from an effect back to the evaluation thread
+     */
+    void runOnEvaluationThread(Runnable task);
+}
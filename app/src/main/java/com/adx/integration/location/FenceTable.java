@@ -0,0 +1,154 @@
+package com.adx.integration.location;
+
+import com.adx.integration.data.model.Store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact table of radius-enabled store fences stored as parallel primitive arrays
+ * Each fence lives in an int slot; the store id dictionary maps ids to slots and
+ * freed slots are recycled so slot numbers stay stable while a fence is present
+ *
+ * Not thread-safe: confine reads and updates to a single thread
+ */
+public class FenceTable {
+
+    public static final int NO_SLOT = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private float[] radii;
+    private int[] creditDeductions;
+    private int[] timeoutMinutes;
+    private String[] ids;
+    private Store[] stores; // cold column, only read for side effects
+
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int highWater; // slots below this index have been handed out at least once
+
+    public FenceTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public FenceTable(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        radii = new float[capacity];
+        creditDeductions = new int[capacity];
+        timeoutMinutes = new int[capacity];
+        ids = new String[capacity];
+        stores = new Store[capacity];
+    }
+
+    /**
+     * Insert or overwrite the fence for a store, returning its slot
+     * Returns NO_SLOT (after removing any previous fence) when the store
+     * has no valid location or its radius is disabled
+     */
+    public int put(Store store) {
+        if (store == null || store.getId() == null) return NO_SLOT;
+
+        String id = store.getId();
+        if (!store.isRadiusEnabled() || !store.isLocationValid() || store.getRadius() <= 0) {
+            remove(id);
+            return NO_SLOT;
+        }
+
+        Integer existing = slotsById.get(id);
+        int slot = existing != null ? existing : allocateSlot();
+
+        Store.RadiusSettings settings = store.getRadiusSettings();
+        latitudes[slot] = store.getLatitude();
+        longitudes[slot] = store.getLongitude();
+        radii[slot] = store.getRadius();
+        creditDeductions[slot] = store.getCreditDeduction();
+        timeoutMinutes[slot] = settings != null ? settings.getTimeoutMinutes() : 10;
+        ids[slot] = id;
+        stores[slot] = store;
+
+        if (existing == null) {
+            slotsById.put(id, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Remove the fence for a store id, returning the freed slot or NO_SLOT
+     */
+    public int remove(String storeId) {
+        Integer slot = slotsById.remove(storeId);
+        if (slot == null) return NO_SLOT;
+
+        ids[slot] = null;
+        stores[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        return slot;
+    }
+
+    public void clear() {
+        Arrays.fill(ids, 0, highWater, null);
+        Arrays.fill(stores, 0, highWater, null);
+        slotsById.clear();
+        freeCount = 0;
+        highWater = 0;
+    }
+
+    public int slotOf(String storeId) {
+        Integer slot = slotsById.get(storeId);
+        return slot != null ? slot : NO_SLOT;
+    }
+
+    public int size() {
+        return slotsById.size();
+    }
+
+    /**
+     * Upper bound (exclusive) of slot numbers handed out so far; iterate up to it
+     * and skip slots that are not {@link #isActive active}
+     */
+    public int capacity() {
+        return highWater;
+    }
+
+    public boolean isActive(int slot) {
+        return slot >= 0 && slot < highWater && ids[slot] != null;
+    }
+
+    public double latitude(int slot) { return latitudes[slot]; }
+    public double longitude(int slot) { return longitudes[slot]; }
+    public float radius(int slot) { return radii[slot]; }
+    public int creditDeduction(int slot) { return creditDeductions[slot]; }
+    public int timeoutMinutes(int slot) { return timeoutMinutes[slot]; }
+    public String id(int slot) { return ids[slot]; }
+    public Store store(int slot) { return stores[slot]; }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (highWater == latitudes.length) {
+            grow(latitudes.length * 2);
+        }
+        return highWater++;
+    }
+
+    private void grow(int newCapacity) {
+        latitudes = Arrays.copyOf(latitudes, newCapacity);
+        longitudes = Arrays.copyOf(longitudes, newCapacity);
+        radii = Arrays.copyOf(radii, newCapacity);
+        creditDeductions = Arrays.copyOf(creditDeductions, newCapacity);
+        timeoutMinutes = Arrays.copyOf(timeoutMinutes, newCapacity);
+        ids = Arrays.copyOf(ids, newCapacity);
+        stores = Arrays.copyOf(stores, newCapacity);
+    }
+}
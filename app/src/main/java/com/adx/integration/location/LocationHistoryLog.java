@@ -0,0 +1,149 @@
+package com.adx.integration.location;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local location history made of {@link TrajectoryCodec} chunks
+ * Retained points are buffered and appended to the file one length-prefixed chunk
+ * at a time; once the file outgrows its budget the oldest half is dropped.
+ * {@link #read} decodes the chunks with {@link TrajectoryCodec#decode}, which verifies
+ * their checksum; a damaged chunk is skipped rather than ending the history
+ */
+public class LocationHistoryLog {
+
+    private static final int CHUNK_POINTS = 32;
+    private static final long DEFAULT_MAX_BYTES = 256 * 1024; // 256 KB
+
+    private final File file;
+    private final long maxBytes;
+    private final List<TrackPoint> buffer = new ArrayList<>(CHUNK_POINTS);
+    private long pointsWritten;
+    private long bytesWritten;
+    private long corruptChunks;
+
+    public LocationHistoryLog(File file) {
+        this(file, DEFAULT_MAX_BYTES);
+    }
+
+    public LocationHistoryLog(File file, long maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Buffer a retained point, writing a chunk once enough points have accumulated
+     */
+    public synchronized void append(TrackPoint point) throws IOException {
+        buffer.add(point);
+        if (buffer.size() >= CHUNK_POINTS) {
+            flush();
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        if (buffer.isEmpty()) return;
+
+        byte[] chunk = TrajectoryCodec.encode(buffer);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true))) {
+            out.writeInt(chunk.length);
+            out.write(chunk);
+        }
+        pointsWritten += buffer.size();
+        bytesWritten += chunk.length + 4;
+        buffer.clear();
+
+        if (file.length() > maxBytes) {
+            trim();
+        }
+    }
+
+    /**
+     * Points recorded at or after a time, oldest first, including ones not yet flushed
+     */
+    public synchronized List<TrackPoint> read(long sinceMs) throws IOException {
+        List<TrackPoint> points = new ArrayList<>();
+        for (byte[] chunk : readChunks()) {
+            List<TrackPoint> decoded;
+            try {
+                decoded = TrajectoryCodec.decode(chunk);
+            } catch (IllegalArgumentException e) {
+                corruptChunks++;
+                continue;
+            }
+            addSince(decoded, sinceMs, points);
+        }
+        addSince(buffer, sinceMs, points);
+        return points;
+    }
+
+    public synchronized long getPointsWritten() {
+        return pointsWritten;
+    }
+
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public synchronized long getCorruptChunks() {
+        return corruptChunks;
+    }
+
+    private static void addSince(List<TrackPoint> source, long sinceMs, List<TrackPoint> target) {
+        for (TrackPoint point : source) {
+            if (point.getTimeMs() >= sinceMs) target.add(point);
+        }
+    }
+
+    private List<byte[]> readChunks() throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        if (!file.exists()) return chunks;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || length > maxBytes) break;
+                byte[] chunk = new byte[length];
+                try {
+                    in.readFully(chunk);
+                } catch (EOFException e) {
+                    break; // torn final chunk
+                }
+                chunks.add(chunk);
+            }
+        }
+        return chunks;
+    }
+
+    private void trim() throws IOException {
+        List<byte[]> chunks = readChunks();
+        ByteArrayOutputStream kept = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(kept);
+        for (int i = chunks.size() / 2; i < chunks.size(); i++) {
+            out.writeInt(chunks.get(i).length);
+            out.write(chunks.get(i));
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream tempOut = new FileOutputStream(temp, false)) {
+            kept.writeTo(tempOut);
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.adx.integration.location;
+
+import com.adx.integration.utils.Clock;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Staged processing for location fixes
+ *
+ * 1. Ingestion: {@link #offer} drops the fix into a single conflating slot, so a
+ *    newer fix replaces one that has not been evaluated yet
+ * 2. Evaluation: the newest fix is evaluated on the caller-supplied single-threaded
+ *    executor; fixes older than the maximum age are dropped. Evaluation must be
+ *    CPU-only and hand anything blocking to the effect stage
+ * 3. Effects: repository writes, RPCs and notifications run on a small bounded pool
+ *    so a slow network never delays the next evaluation. Keyed effects are
+ *    conflated the same way fixes are: only the latest pending task per key runs.
+ *    When the effect queue is full the effect is dropped and counted, never run on
+ *    the evaluation thread; callers learn this from {@link #runEffect}'s result
+ *
+ * @param <F> fix type
+ */
+public class LocationPipeline<F> implements EffectRunner {
+
+    public interface Evaluator<F> {
+        void evaluate(F fix);
+    }
+
+    public interface FixTime<F> {
+        long timeMillis(F fix);
+    }
+
+    private static final int EFFECT_THREADS = 2;
+    private static final int EFFECT_QUEUE_CAPACITY = 32;
+
+    private final Executor evaluationExecutor;
+    private final ThreadPoolExecutor effectExecutor;
+    private final Clock clock;
+    private final long maxFixAgeMs;
+    private final Evaluator<F> evaluator;
+    private final FixTime<F> fixTime;
+    private final Metrics metrics = new Metrics();
+
+    private final AtomicReference<F> latestFix = new AtomicReference<>();
+    private final AtomicBoolean evaluationScheduled = new AtomicBoolean();
+    private final Map<String, Runnable> pendingConflated = new ConcurrentHashMap<>();
+
+    public LocationPipeline(Executor evaluationExecutor, Clock clock, long maxFixAgeMs,
+                            Evaluator<F> evaluator, FixTime<F> fixTime) {
+        this.evaluationExecutor = evaluationExecutor;
+        this.clock = clock;
+        this.maxFixAgeMs = maxFixAgeMs;
+        this.evaluator = evaluator;
+        this.fixTime = fixTime;
+
+        this.effectExecutor = new ThreadPoolExecutor(
+                EFFECT_THREADS, EFFECT_THREADS,
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(EFFECT_QUEUE_CAPACITY),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.effectExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Stage 1: accept a fix from the location callback
+     */
+    public void offer(F fix) {
+        metrics.fixesIngested.incrementAndGet();
+        if (latestFix.getAndSet(fix) != null) {
+            metrics.fixesConflated.incrementAndGet();
+        }
+        if (evaluationScheduled.compareAndSet(false, true)) {
+            evaluationExecutor.execute(this::drainLatestFix);
+        }
+    }
+
+    /**
+     * Stage 3: run a side effect off the evaluation thread
+     */
+    @Override
+    public boolean runEffect(Runnable effect) {
+        long queuedAt = System.nanoTime();
+        try {
+            effectExecutor.execute(() -> runTimedEffect(effect, queuedAt));
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (effectExecutor.isShutdown()) {
+                metrics.effectsDroppedAfterShutdown.incrementAndGet();
+            } else {
+                metrics.effectsDropped.incrementAndGet();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Stage 3: run a side effect where only the latest pending task per key matters,
+     * e.g. uploading the current location or refreshing nearby stores
+     */
+    @Override
+    public void runConflatedEffect(String key, Runnable effect) {
+        if (pendingConflated.put(key, effect) != null) {
+            metrics.effectsConflated.incrementAndGet();
+            return;
+        }
+        boolean queued = runEffect(() -> {
+            Runnable latest = pendingConflated.remove(key);
+            if (latest != null) {
+                latest.run();
+            }
+        });
+        if (!queued) {
+            // Nothing will run it; let the next request for this key try again
+            pendingConflated.remove(key);
+        }
+    }
+
+    /**
+     * Hand a result from an effect back to the evaluation thread
+     */
+    @Override
+    public void runOnEvaluationThread(Runnable task) {
+        evaluationExecutor.execute(task);
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Number of effects waiting for an effect thread
+     */
+    public int getEffectQueueDepth() {
+        return effectExecutor.getQueue().size();
+    }
+
+    /**
+     * Stop accepting effects; those already queued still run
+     */
+    public void shutdown() {
+        effectExecutor.shutdown();
+    }
+
+    /**
+     * Wait for queued effects to finish after {@link #shutdown}
+     * @return false if some were still running when the timeout elapsed
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return effectExecutor.awaitTermination(timeout, unit);
+    }
+
+    private void drainLatestFix() {
+        evaluationScheduled.set(false);
+        F fix = latestFix.getAndSet(null);
+        if (fix == null) return;
+
+        if (clock.currentTimeMillis() - fixTime.timeMillis(fix) > maxFixAgeMs) {
+            metrics.fixesStale.incrementAndGet();
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            evaluator.evaluate(fix);
+        } finally {
+            metrics.evaluationLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void runTimedEffect(Runnable effect, long queuedAt) {
+        long start = System.nanoTime();
+        metrics.effectQueueLatency.record(start - queuedAt);
+        try {
+            effect.run();
+        } catch (RuntimeException e) {
+            metrics.effectsFailed.incrementAndGet();
+        } finally {
+            metrics.effectLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Counters and per-stage latency for the pipeline
+     */
+    public static class Metrics {
+        final AtomicLong fixesIngested = new AtomicLong();
+        final AtomicLong fixesConflated = new AtomicLong();
+        final AtomicLong fixesStale = new AtomicLong();
+        final AtomicLong effectsConflated = new AtomicLong();
+        final AtomicLong effectsDropped = new AtomicLong(); // effect queue full
+        final AtomicLong effectsDroppedAfterShutdown = new AtomicLong();
+        final AtomicLong effectsFailed = new AtomicLong();
+        final Latency evaluationLatency = new Latency();
+        final Latency effectQueueLatency = new Latency();
+        final Latency effectLatency = new Latency();
+
+        public long getFixesIngested() { return fixesIngested.get(); }
+        public long getFixesConflated() { return fixesConflated.get(); }
+        public long getFixesStale() { return fixesStale.get(); }
+        public long getEffectsConflated() { return effectsConflated.get(); }
+        public long getEffectsDropped() { return effectsDropped.get(); }
+        public long getEffectsDroppedAfterShutdown() { return effectsDroppedAfterShutdown.get(); }
+        public long getEffectsFailed() { return effectsFailed.get(); }
+        public Latency getEvaluationLatency() { return evaluationLatency; }
+        public Latency getEffectQueueLatency() { return effectQueueLatency; }
+        public Latency getEffectLatency() { return effectLatency; }
+    }
+
+    /**
+     * Running count, mean and max of a stage's latency in nanoseconds
+     */
+    public static class Latency {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max;
+            do {
+                max = maxNanos.get();
+            } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+        }
+
+        public long getCount() { return count.get(); }
+        public long getMaxNanos() { return maxNanos.get(); }
+
+        public long getMeanNanos() {
+            long n = count.get();
+            return n > 0 ? totalNanos.get() / n : 0;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.adx.integration.location;
+
+/**
+ * Chooses location request parameters from the distance to the nearest fence edge
+ * and the current speed. Far from every fence it backs off to low-power sampling;
+ * as the user approaches an edge it tightens toward high-accuracy 5 s fixes
+ *
+ * Pure function of its inputs, with no Android dependencies
+ */
+public class LocationSamplingPolicy {
+
+    public enum Accuracy {
+        HIGH,
+        BALANCED,
+        LOW_POWER
+    }
+
+    private static final long MIN_INTERVAL_MS = 5 * 1000; // 5 seconds
+    private static final long MAX_INTERVAL_MS = 5 * 60 * 1000; // 5 minutes
+    private static final long MIN_FASTEST_INTERVAL_MS = 2 * 1000; // 2 seconds
+    private static final float WALKING_SPEED_MPS = 1.4f;
+
+    private static final double NEAR_EDGE_METERS = 50;
+    private static final double APPROACH_EDGE_METERS = 500;
+    private static final double BALANCED_EDGE_METERS = 2000;
+
+    /**
+     * Compute the sampling plan for the current situation
+     *
+     * @param edgeDistanceMeters distance to the nearest fence edge, 0 when inside,
+     *                           {@link Double#POSITIVE_INFINITY} when no fence is known
+     * @param speedMps           current speed, 0 if unknown
+     * @param fenceActive        true while any store presence is inside or pending
+     */
+    public SamplingPlan plan(double edgeDistanceMeters, float speedMps, boolean fenceActive) {
+        if (fenceActive || edgeDistanceMeters <= NEAR_EDGE_METERS) {
+            return new SamplingPlan(MIN_INTERVAL_MS, MIN_FASTEST_INTERVAL_MS, Accuracy.HIGH, 5);
+        }
+
+        // Sample at least twice before the user could reach the nearest edge; with no
+        // known fence, assume one could sit just beyond the balanced-power range
+        float speed = Math.max(speedMps, WALKING_SPEED_MPS);
+        double reachMeters = Math.min(edgeDistanceMeters, BALANCED_EDGE_METERS);
+        long timeToEdgeMs = (long) (reachMeters / speed * 1000);
+        long interval = clamp(timeToEdgeMs / 2, MIN_INTERVAL_MS, MAX_INTERVAL_MS);
+
+        if (edgeDistanceMeters <= APPROACH_EDGE_METERS) {
+            interval = Math.min(interval, 30 * 1000);
+            float displacement = (float) clamp((long) (edgeDistanceMeters / 10), 5, 25);
+            return new SamplingPlan(interval, fastestFor(interval), Accuracy.HIGH, displacement);
+        }
+        if (edgeDistanceMeters <= BALANCED_EDGE_METERS) {
+            interval = clamp(interval, 15 * 1000, 2 * 60 * 1000);
+            return new SamplingPlan(interval, fastestFor(interval), Accuracy.BALANCED, 50);
+        }
+        interval = Math.max(interval, 60 * 1000);
+        return new SamplingPlan(interval, fastestFor(interval), Accuracy.LOW_POWER, 100);
+    }
+
+    private static long fastestFor(long interval) {
+        return Math.max(interval / 2, MIN_FASTEST_INTERVAL_MS);
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Location request parameters chosen by the policy
+     */
+    public static final class SamplingPlan {
+        private final long intervalMs;
+        private final long fastestIntervalMs;
+        private final Accuracy accuracy;
+        private final float minDisplacementMeters;
+
+        public SamplingPlan(long intervalMs, long fastestIntervalMs, Accuracy accuracy, float minDisplacementMeters) {
+            this.intervalMs = intervalMs;
+            this.fastestIntervalMs = fastestIntervalMs;
+            this.accuracy = accuracy;
+            this.minDisplacementMeters = minDisplacementMeters;
+        }
+
+        public long getIntervalMs() { return intervalMs; }
+        public long getFastestIntervalMs() { return fastestIntervalMs; }
+        public Accuracy getAccuracy() { return accuracy; }
+        public float getMinDisplacementMeters() { return minDisplacementMeters; }
+
+        /**
+         * Whether switching from this plan to another is worth re-registering
+         * the location request: accuracy changed or the interval moved by 25% or more
+         */
+        public boolean differsSignificantly(SamplingPlan other) {
+            if (other == null || accuracy != other.accuracy) return true;
+            long delta = Math.abs(intervalMs - other.intervalMs);
+            return delta * 4 >= Math.max(intervalMs, other.intervalMs);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SamplingPlan)) return false;
+            SamplingPlan that = (SamplingPlan) o;
+            return intervalMs == that.intervalMs &&
+                   fastestIntervalMs == that.fastestIntervalMs &&
+                   accuracy == that.accuracy &&
+                   Float.compare(minDisplacementMeters, that.minDisplacementMeters) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (intervalMs ^ (intervalMs >>> 32));
+            result = 31 * result + (int) (fastestIntervalMs ^ (fastestIntervalMs >>> 32));
+            result = 31 * result + accuracy.hashCode();
+            result = 31 * result + Float.floatToIntBits(minDisplacementMeters);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "SamplingPlan{" +
+                    "interval=" + intervalMs +
+                    ", fastest=" + fastestIntervalMs +
+                    ", accuracy=" + accuracy +
+                    ", displacement=" + minDisplacementMeters +
+                    '}';
+        }
+    }
+}
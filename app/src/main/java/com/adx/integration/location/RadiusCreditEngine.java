@@ -0,0 +1,380 @@
+package com.adx.integration.location;
+
+import com.adx.integration.data.model.Store;
+import com.adx.integration.utils.Clock;
+import com.adx.integration.utils.GeoMath;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store radius logic: fence lookup, enter/exit hysteresis, credit deduction and
+ * per-store refund timeouts
+ *
+ * Plain Java with no Android dependencies, so the same code that runs in the
+ * tracking service can be replayed against recorded traces on a JVM. All state is
+ * confined to the evaluation thread; blocking calls go through the {@link Gateway}
+ * on the {@link EffectRunner}'s effect stage and post their results back
+ */
+public class RadiusCreditEngine {
+
+    /**
+     * Backend calls the engine depends on
+     */
+    public interface Gateway {
+        List<Store> getNearbyStores(double latitude, double longitude, int radiusMeters);
+
+        boolean deductRadiusCredits(String storeId, int credits);
+
+        void returnRadiusCredits(String storeId);
+    }
+
+    public interface Listener {
+        /** The gateway accepted a deduct for entering a store radius; effect thread */
+        void onRadiusEntered(Store store);
+
+        /** The user left a store radius before its timeout; effect thread */
+        void onRadiusExited(Store store);
+
+        /** Credits were returned after a radius timeout; effect thread */
+        void onRadiusCreditsReturned(String storeId);
+
+        /** A timeout was scheduled while none were pending; evaluation thread */
+        void onTimeoutsPending();
+    }
+
+    private static final int DEFAULT_RADIUS_TIMEOUT_MINUTES = 10; // 10 minutes
+    private static final int NEAREST_FENCE_SEARCH_RINGS = 4; // ~2km at the default cell size
+
+    // Nearby store fences, refreshed from the gateway only after moving or going stale
+    private static final int STORE_SYNC_RADIUS = 1000; // 1km radius
+    private static final float STORE_SYNC_DISTANCE = 250; // 250 meters
+    private static final long STORE_SYNC_INTERVAL_MS = 60 * 1000; // 1 minute
+
+    private final Clock clock;
+    private final Gateway gateway;
+    private final EffectRunner effects;
+    private final RadiusSessionJournal journal;
+    private final Listener listener;
+
+    private final StoreSpatialIndex storeIndex = new StoreSpatialIndex();
+    private final RadiusPresenceTracker presenceTracker = new RadiusPresenceTracker();
+    private final RadiusTimeoutWheel radiusTimeouts;
+    private final Map<String, Long> radiusEntryTimes = new HashMap<>();
+    private final Set<String> pendingDeductions = new HashSet<>();
+    // Deducts the effect stage refused, re-offered on the next fix
+    private final Map<String, Runnable> deferredDeductions = new LinkedHashMap<>();
+    private int[] containingSlots = new int[16];
+
+    private boolean storeSynced;
+    private double lastStoreSyncLatitude;
+    private double lastStoreSyncLongitude;
+    private long lastStoreSyncTime;
+    private long storesEvicted;
+
+    /**
+     * @param journal session journal, or null to keep sessions in memory only
+     */
+    public RadiusCreditEngine(Clock clock, Gateway gateway, EffectRunner effects,
+                              RadiusSessionJournal journal, Listener listener) {
+        this.clock = clock;
+        this.gateway = gateway;
+        this.effects = effects;
+        this.journal = journal;
+        this.listener = listener;
+        this.radiusTimeouts = new RadiusTimeoutWheel(clock, this::onRadiusTimeout);
+    }
+
+    /**
+     * Restore sessions that were open when the service was last killed: the user
+     * is treated as still inside (so re-entry doesn't deduct again) and refunds
+     * whose deadline passed while the service was down fire on the next tick
+     */
+    public void restoreSessions() {
+        if (journal == null) return;
+        try {
+            Map<String, RadiusSessionJournal.Session> sessions = journal.recover();
+            for (RadiusSessionJournal.Session session : sessions.values()) {
+                radiusEntryTimes.put(session.getStoreId(), session.getEntryTime());
+                presenceTracker.markInside(session.getStoreId(), session.getEntryTime());
+                scheduleRadiusTimeout(session.getStoreId(), session.getDeadline());
+            }
+        } catch (Exception e) {
+            // Handle error
+        }
+    }
+
+    /**
+     * Evaluate one fix against every fence that contains it or is already tracked
+     */
+    public void evaluate(double latitude, double longitude, float accuracy, long timeMs) {
+        retryDeferredDeductions();
+
+        if (isStoreSyncDue(latitude, longitude)) {
+            requestStoreSync(latitude, longitude);
+        }
+
+        int found = storeIndex.findContaining(latitude, longitude, containingSlots);
+        if (found > containingSlots.length) {
+            containingSlots = new int[Integer.highestOneBit(found) * 2];
+            found = storeIndex.findContaining(latitude, longitude, containingSlots);
+        }
+
+        FenceTable fences = storeIndex.getFences();
+        for (int i = 0; i < found; i++) {
+            evaluatePresence(fences, containingSlots[i], latitude, longitude, accuracy, timeMs);
+        }
+
+        // Stores already inside (or pending) must be re-evaluated against their wider exit radius
+        for (String storeId : presenceTracker.getTrackedStoreIds()) {
+            int slot = fences.slotOf(storeId);
+            if (slot == FenceTable.NO_SLOT) {
+                // Keep restored sessions until the store sync brings their fence back
+                if (!radiusEntryTimes.containsKey(storeId) && !pendingDeductions.contains(storeId)) {
+                    presenceTracker.forget(storeId);
+                }
+            } else if (!containsSlot(containingSlots, found, slot)) {
+                evaluatePresence(fences, slot, latitude, longitude, accuracy, timeMs);
+            }
+        }
+    }
+
+    /**
+     * Apply a batch of stores to the fence index; evaluation thread only
+     */
+    public void upsertStores(Collection<Store> stores) {
+        storeIndex.upsertAll(stores);
+    }
+
+    /**
+     * Drop a store's open radius session after the server rejected its deduct, so its
+     * timeout never refunds credits that were not taken; evaluation thread only.
+     * The user stays inside, so the store is not charged again until they leave
+     */
+    public void revokeEntry(String storeId) {
+        if (radiusEntryTimes.remove(storeId) == null) return;
+        radiusTimeouts.cancel(storeId);
+        if (journal != null) {
+            journal.recordExit(storeId, clock.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Fire every refund timeout whose deadline has passed
+     *
+     * @return number of timeouts fired
+     */
+    public int advanceTimeouts() {
+        return radiusTimeouts.advance();
+    }
+
+    public int getPendingTimeouts() {
+        return radiusTimeouts.size();
+    }
+
+    public long getTimeoutTickMs() {
+        return radiusTimeouts.getTickMs();
+    }
+
+    /**
+     * Distance to the nearest fence edge, or infinity if none is within the search range
+     */
+    public double nearestEdgeDistance(double latitude, double longitude) {
+        return storeIndex.nearestEdgeDistance(latitude, longitude, NEAREST_FENCE_SEARCH_RINGS);
+    }
+
+    /**
+     * True while any store is being entered, is inside, or is being exited
+     */
+    public boolean hasTrackedStores() {
+        return !presenceTracker.getTrackedStoreIds().isEmpty();
+    }
+
+    public int getIndexedStoreCount() {
+        return storeIndex.size();
+    }
+
+    /**
+     * Stores dropped from the index because a later sync no longer returned them
+     */
+    public long getStoresEvicted() {
+        return storesEvicted;
+    }
+
+    public int getOpenSessionCount() {
+        return radiusEntryTimes.size();
+    }
+
+    public long getConfirmedTransitions() {
+        return presenceTracker.getConfirmedTransitions();
+    }
+
+    /**
+     * Number of enter/exit flips suppressed by the radius hysteresis
+     */
+    public long getSuppressedTransitions() {
+        return presenceTracker.getSuppressedTransitions();
+    }
+
+    public long getIgnoredFixes() {
+        return presenceTracker.getIgnoredFixes();
+    }
+
+    private static boolean containsSlot(int[] slots, int count, int slot) {
+        for (int i = 0; i < count; i++) {
+            if (slots[i] == slot) return true;
+        }
+        return false;
+    }
+
+    private boolean isStoreSyncDue(double latitude, double longitude) {
+        if (!storeSynced) return true;
+        if (clock.currentTimeMillis() - lastStoreSyncTime >= STORE_SYNC_INTERVAL_MS) return true;
+        return GeoMath.distanceMeters(latitude, longitude, lastStoreSyncLatitude, lastStoreSyncLongitude)
+                >= STORE_SYNC_DISTANCE;
+    }
+
+    private void requestStoreSync(double latitude, double longitude) {
+        storeSynced = true;
+        lastStoreSyncLatitude = latitude;
+        lastStoreSyncLongitude = longitude;
+        lastStoreSyncTime = clock.currentTimeMillis();
+
+        effects.runConflatedEffect("store-sync", () -> {
+            List<Store> nearbyStores = gateway.getNearbyStores(latitude, longitude, STORE_SYNC_RADIUS);
+            effects.runOnEvaluationThread(() -> applyStoreSync(nearbyStores));
+        });
+    }
+
+    /**
+     * Replace the indexed stores with a sync result so stores left behind don't pile up;
+     * fences still in use (tracked, open session or pending deduct) are kept
+     */
+    private void applyStoreSync(List<Store> nearbyStores) {
+        if (nearbyStores == null) return; // sync failed; keep what we have
+        Set<String> keep = new HashSet<>(presenceTracker.getTrackedStoreIds());
+        keep.addAll(radiusEntryTimes.keySet());
+        keep.addAll(pendingDeductions);
+        storesEvicted += storeIndex.replaceAll(nearbyStores, keep);
+    }
+
+    private void evaluatePresence(FenceTable fences, int slot, double latitude, double longitude,
+                                  float accuracy, long timeMs) {
+        double distance = GeoMath.distanceMeters(latitude, longitude, fences.latitude(slot), fences.longitude(slot));
+
+        RadiusPresenceTracker.Transition transition = presenceTracker.onFix(
+            fences.id(slot), distance, fences.radius(slot), accuracy, timeMs);
+
+        Store store = fences.store(slot);
+        if (transition == RadiusPresenceTracker.Transition.ENTER
+                && !radiusEntryTimes.containsKey(store.getId())
+                && !pendingDeductions.contains(store.getId())) {
+            enterStoreRadius(store);
+        } else if (transition == RadiusPresenceTracker.Transition.EXIT && radiusEntryTimes.containsKey(store.getId())) {
+            exitStoreRadius(store);
+        }
+    }
+
+    private void enterStoreRadius(Store store) {
+        String storeId = store.getId();
+        long currentTime = clock.currentTimeMillis();
+        pendingDeductions.add(storeId);
+
+        // Deduct credits immediately, off the evaluation thread; if the effect stage
+        // is saturated the store stays pending and the deduct is re-offered on the next fix
+        Runnable deduct = () -> {
+            boolean creditsDeducted;
+            try {
+                creditsDeducted = gateway.deductRadiusCredits(storeId, store.getCreditDeduction());
+            } catch (Exception e) {
+                creditsDeducted = false;
+            }
+            boolean deducted = creditsDeducted;
+            effects.runOnEvaluationThread(() -> onRadiusCreditsDeducted(store, deducted, currentTime));
+        };
+        if (!effects.runEffect(deduct)) {
+            deferredDeductions.put(storeId, deduct);
+        }
+    }
+
+    private void retryDeferredDeductions() {
+        Iterator<Runnable> deferred = deferredDeductions.values().iterator();
+        while (deferred.hasNext()) {
+            if (!effects.runEffect(deferred.next())) return;
+            deferred.remove();
+        }
+    }
+
+    private void onRadiusCreditsDeducted(Store store, boolean creditsDeducted, long entryTime) {
+        String storeId = store.getId();
+        pendingDeductions.remove(storeId);
+        if (!creditsDeducted) return;
+
+        // Only start the refund clock if the user is still inside once the RPC returns
+        if (presenceTracker.isInside(storeId)) {
+            long deadline = entryTime + TimeUnit.MINUTES.toMillis(getRadiusTimeoutMinutes(store));
+            radiusEntryTimes.put(storeId, entryTime);
+            if (journal != null) {
+                journal.recordEnter(storeId, entryTime, deadline, store.getCreditDeduction());
+            }
+            scheduleRadiusTimeout(storeId, deadline);
+        }
+
+        effects.runEffect(() -> listener.onRadiusEntered(store));
+    }
+
+    private void exitStoreRadius(Store store) {
+        String storeId = store.getId();
+        radiusEntryTimes.remove(storeId);
+        radiusTimeouts.cancel(storeId);
+        if (journal != null) {
+            journal.recordExit(storeId, clock.currentTimeMillis());
+        }
+
+        // User left before timeout - credits are kept
+        effects.runEffect(() -> listener.onRadiusExited(store));
+    }
+
+    private static int getRadiusTimeoutMinutes(Store store) {
+        Store.RadiusSettings settings = store.getRadiusSettings();
+        return settings != null && settings.getTimeoutMinutes() > 0
+                ? settings.getTimeoutMinutes()
+                : DEFAULT_RADIUS_TIMEOUT_MINUTES;
+    }
+
+    private void scheduleRadiusTimeout(String storeId, long deadline) {
+        boolean wasIdle = radiusTimeouts.size() == 0;
+        radiusTimeouts.schedule(storeId, deadline);
+        if (wasIdle) {
+            listener.onTimeoutsPending();
+        }
+    }
+
+    private void onRadiusTimeout(String storeId) {
+        Long entryTime = radiusEntryTimes.remove(storeId);
+        if (entryTime != null && !effects.runEffect(() -> returnRadiusCredits(storeId))) {
+            // Effect stage saturated; keep the session and retry on the next tick
+            radiusEntryTimes.put(storeId, entryTime);
+            scheduleRadiusTimeout(storeId, clock.currentTimeMillis() + radiusTimeouts.getTickMs());
+        }
+    }
+
+    private void returnRadiusCredits(String storeId) {
+        try {
+            gateway.returnRadiusCredits(storeId);
+            if (journal != null) {
+                journal.recordRefund(storeId, clock.currentTimeMillis());
+            }
+            listener.onRadiusCreditsReturned(storeId);
+        } catch (Exception e) {
+            // Handle error
+        }
+    }
+}
@@ -0,0 +1,616 @@
+package com.adx.integration.location;
+
+import com.adx.integration.utils.Clock;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pending radius credit operations, compacted before they go upstream
+ *
+ * Deducts and refunds are queued instead of being sent one call at a time. A refund
+ * whose deduct for the same radius entry has not been sent yet cancels it, and both
+ * are dropped, so only the net effect is sent, as one batch per flush. Every event
+ * (queued, netted, sent, rejected, dropped) is appended to a local audit log, which
+ * also makes the queue durable: replaying it restores the operations not yet settled
+ *
+ * Audit events are written behind by a dedicated thread, one write and one fsync per
+ * batch, so callers never wait on the disk. A batch is only sent once the events that
+ * queued it are on disk. When the log grows past its limit the unsettled state (pending
+ * operations, open entries and rejected deducts) is written to a new generation and
+ * swapped in; the previous generation is kept and replayed if the swap was interrupted
+ *
+ * A batch the server refuses outright ({@link BatchRejectedException}) is parked: its
+ * operations stay queued and durable but are not retried until the next {@link #restore}
+ *
+ * Line format: time, event, opId, type, storeId, credits, entryId; tab separated
+ */
+public class RadiusCreditQueue {
+
+    /**
+     * Delivers one batch upstream
+     */
+    public interface Sender {
+        /**
+         * @return ids of the operations the server rejected
+         * @throws IOException when the batch was not delivered and should be retried
+         */
+        Set<String> send(List<Operation> operations) throws IOException;
+    }
+
+    /**
+     * Thrown by a {@link Sender} when retrying the same batch cannot succeed, e.g. the
+     * endpoint does not exist or refuses the payload
+     */
+    public static class BatchRejectedException extends IOException {
+        public BatchRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Outcome of delivered operations; flusher thread
+     */
+    public interface Listener {
+        /** The server applied the operation */
+        void onApplied(Operation operation);
+
+        /** The server rejected the deduct of the store's open radius entry */
+        void onEntryRejected(Operation deduct);
+    }
+
+    public static final String TYPE_DEDUCT = "deduct";
+    public static final String TYPE_REFUND = "refund";
+
+    private static final String EVENT_QUEUED = "Q";
+    private static final String EVENT_NETTED = "N"; // cancelled against its counterpart before sending
+    private static final String EVENT_SENT = "S";
+    private static final String EVENT_REJECTED = "J";
+    private static final String EVENT_DROPPED = "D"; // refund for a deduct the server rejected
+    private static final String EVENT_OPEN = "O"; // carried over: an entry whose deduct was already sent
+
+    private static final long FLUSH_DELAY_MS = 30 * 1000; // 30 seconds, gives pairs a chance to net out
+    private static final long MAX_RETRY_DELAY_MS = 15 * 60 * 1000; // 15 minutes
+    private static final long DEFAULT_MAX_AUDIT_BYTES = 256 * 1024; // 256 KB before rotating
+    private static final long AUDIT_WRITE_DELAY_MS = 200;
+
+    private final File file;
+    private final Clock clock;
+    private final Sender sender;
+    private final Listener listener;
+    private final long maxAuditBytes;
+    private final ScheduledExecutorService flusher; // sends batches
+    private final ScheduledExecutorService writer; // appends audit events
+
+    private final Object lock = new Object();
+    private final Map<String, Operation> pending = new LinkedHashMap<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private final Map<String, Operation> lastDeductByStore = new HashMap<>(); // open radius entry per store
+    private final Set<String> rejectedDeducts = new HashSet<>();
+    private final Set<String> parked = new HashSet<>(); // refused batches, held until the next restore
+    private ScheduledFuture<?> scheduledFlush;
+    private long retryDelayMs = FLUSH_DELAY_MS;
+    private StringBuilder unwritten = new StringBuilder();
+    private boolean writeScheduled;
+    private boolean closed;
+
+    private long queued;
+    private long netted;
+    private long sent;
+    private long rejected;
+    private long batches;
+    private long parkedBatches;
+
+    private FileOutputStream out; // writer thread only
+
+    /**
+     * @param listener told about settled operations, or null
+     */
+    public RadiusCreditQueue(File file, Clock clock, Sender sender, Listener listener) {
+        this(file, clock, sender, listener, DEFAULT_MAX_AUDIT_BYTES);
+    }
+
+    RadiusCreditQueue(File file, Clock clock, Sender sender, Listener listener, long maxAuditBytes) {
+        this.file = file;
+        this.clock = clock;
+        this.sender = sender;
+        this.listener = listener;
+        this.maxAuditBytes = maxAuditBytes;
+        this.flusher = Executors.newSingleThreadScheduledExecutor();
+        this.writer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Radius credit operation; a refund's entryId is the id of the deduct it returns
+     */
+    public static final class Operation {
+        public final String id;
+        public final String type;
+        public final String storeId;
+        public final int credits;
+        public final String entryId;
+        public final long createdAt;
+
+        Operation(String id, String type, String storeId, int credits, String entryId, long createdAt) {
+            this.id = id;
+            this.type = type;
+            this.storeId = storeId;
+            this.credits = credits;
+            this.entryId = entryId;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * Replay the audit log and schedule delivery of anything left unsettled, including
+     * parked operations. Call once before queueing operations
+     */
+    public void restore() throws IOException {
+        synchronized (lock) {
+            // Missing only if a rotation stopped between its renames; the previous
+            // generation then still holds every event
+            File log = file.exists() ? file : previousGeneration();
+            if (log.exists()) {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(new FileInputStream(log), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!replay(line)) {
+                            break; // torn tail
+                        }
+                    }
+                }
+                if (log != file) {
+                    // New events append to the current generation, so it has to start
+                    // from the recovered state; nothing is being written yet
+                    writeGeneration(snapshot().toString());
+                }
+            }
+            if (!pending.isEmpty()) {
+                scheduleFlush(FLUSH_DELAY_MS, false);
+            }
+        }
+    }
+
+    /**
+     * Queue a deduct for entering a store radius
+     * @return the operation id, which identifies the radius entry
+     */
+    public String deduct(String storeId, int credits) {
+        synchronized (lock) {
+            Operation op = new Operation(UUID.randomUUID().toString(), TYPE_DEDUCT, storeId, credits,
+                    null, clock.currentTimeMillis());
+            pending.put(op.id, op);
+            lastDeductByStore.put(storeId, op);
+            queued++;
+            audit(EVENT_QUEUED, op);
+            scheduleFlush(FLUSH_DELAY_MS, false);
+            return op.id;
+        }
+    }
+
+    /**
+     * Return the credits of the store's latest radius entry. If that deduct is still
+     * queued the two cancel out and nothing is sent. Without an open entry there is
+     * nothing to return, e.g. when a refund fires again after a crash, and the call
+     * is ignored
+     * @return whether the entry was refunded (or netted, or dropped after a rejection)
+     */
+    public boolean refund(String storeId) {
+        synchronized (lock) {
+            Operation deduct = lastDeductByStore.remove(storeId);
+            if (deduct == null) return false;
+            Operation op = new Operation(UUID.randomUUID().toString(), TYPE_REFUND, storeId,
+                    deduct.credits, deduct.id, clock.currentTimeMillis());
+
+            if (pending.containsKey(deduct.id) && !inFlight.contains(deduct.id)) {
+                pending.remove(deduct.id);
+                parked.remove(deduct.id);
+                audit(EVENT_NETTED, deduct);
+                audit(EVENT_NETTED, op);
+                netted += 2;
+                return true;
+            }
+            if (rejectedDeducts.remove(deduct.id)) {
+                audit(EVENT_DROPPED, op);
+                return true;
+            }
+
+            pending.put(op.id, op);
+            queued++;
+            audit(EVENT_QUEUED, op);
+            scheduleFlush(FLUSH_DELAY_MS, false);
+            return true;
+        }
+    }
+
+    /**
+     * Send every queued operation in one batch, blocking until done
+     */
+    public void flush() throws IOException {
+        List<Operation> batch;
+        synchronized (lock) {
+            if (closed) return;
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            batch = new ArrayList<>();
+            for (Operation op : pending.values()) {
+                if (!inFlight.contains(op.id) && !parked.contains(op.id)) batch.add(op);
+            }
+            if (batch.isEmpty()) return;
+            for (Operation op : batch) inFlight.add(op.id);
+        }
+
+        Set<String> rejectedIds;
+        try {
+            syncAudit();
+            rejectedIds = sender.send(batch);
+        } catch (BatchRejectedException e) {
+            synchronized (lock) {
+                for (Operation op : batch) {
+                    inFlight.remove(op.id);
+                    parked.add(op.id);
+                }
+                parkedBatches++;
+            }
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            synchronized (lock) {
+                for (Operation op : batch) inFlight.remove(op.id);
+                retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+                // Replaces any short flush scheduled by operations queued during the send
+                scheduleFlush(retryDelayMs, true);
+            }
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+
+        List<Operation> applied = new ArrayList<>(batch.size());
+        List<Operation> rejectedEntries = new ArrayList<>();
+        synchronized (lock) {
+            // Closed mid-send: leave the batch to be replayed and resent under the same ids
+            if (closed) return;
+            batches++;
+            retryDelayMs = FLUSH_DELAY_MS;
+            for (Operation op : batch) {
+                inFlight.remove(op.id);
+                pending.remove(op.id);
+                if (rejectedIds != null && rejectedIds.contains(op.id)) {
+                    audit(EVENT_REJECTED, op);
+                    rejected++;
+                    if (isOpenEntry(op)) {
+                        rejectedDeducts.add(op.id);
+                        rejectedEntries.add(op);
+                    }
+                } else {
+                    audit(EVENT_SENT, op);
+                    sent++;
+                    applied.add(op);
+                }
+            }
+            if (!pending.isEmpty()) {
+                scheduleFlush(FLUSH_DELAY_MS, false);
+            }
+        }
+
+        if (listener != null) {
+            for (Operation op : applied) listener.onApplied(op);
+            for (Operation op : rejectedEntries) listener.onEntryRejected(op);
+        }
+    }
+
+    /**
+     * Stop sending and write out the audit events recorded so far. Flushes already
+     * scheduled are cancelled; anything unsent is restored from the log next time
+     */
+    public void close() {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+        }
+        flusher.shutdownNow();
+        try {
+            writer.submit(() -> {
+                writeAudit();
+                try {
+                    if (out != null) out.close();
+                } catch (IOException e) {
+                    // Handle error
+                }
+                out = null;
+            }).get();
+        } catch (Exception e) {
+            // Handle error
+        }
+        writer.shutdown();
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public long getQueued() {
+        synchronized (lock) {
+            return queued;
+        }
+    }
+
+    /**
+     * Operations that cancelled out and were never sent
+     */
+    public long getNetted() {
+        synchronized (lock) {
+            return netted;
+        }
+    }
+
+    public long getSent() {
+        synchronized (lock) {
+            return sent;
+        }
+    }
+
+    public long getRejected() {
+        synchronized (lock) {
+            return rejected;
+        }
+    }
+
+    public long getBatches() {
+        synchronized (lock) {
+            return batches;
+        }
+    }
+
+    /**
+     * Operations held back after the server refused their batch
+     */
+    public int getParkedCount() {
+        synchronized (lock) {
+            return parked.size();
+        }
+    }
+
+    public long getParkedBatches() {
+        synchronized (lock) {
+            return parkedBatches;
+        }
+    }
+
+    /**
+     * @param replace whether to move an already scheduled flush to the new delay
+     */
+    private void scheduleFlush(long delayMs, boolean replace) {
+        if (closed) return;
+        if (scheduledFlush != null && !scheduledFlush.isDone()) {
+            if (!replace) return;
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = flusher.schedule(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                // Retried with backoff
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean replay(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 7) return false;
+        try {
+            Operation op = new Operation(fields[2], fields[3], fields[4], Integer.parseInt(fields[5]),
+                    fields[6].isEmpty() ? null : fields[6], Long.parseLong(fields[0]));
+            switch (fields[1]) {
+                case EVENT_QUEUED:
+                    pending.put(op.id, op);
+                    if (TYPE_DEDUCT.equals(op.type)) {
+                        lastDeductByStore.put(op.storeId, op);
+                    } else {
+                        closeEntry(op);
+                    }
+                    break;
+                case EVENT_REJECTED:
+                    pending.remove(op.id);
+                    if (isOpenEntry(op)) {
+                        rejectedDeducts.add(op.id);
+                    }
+                    break;
+                case EVENT_NETTED:
+                case EVENT_DROPPED:
+                    pending.remove(op.id);
+                    closeEntry(op);
+                    break;
+                case EVENT_SENT:
+                    pending.remove(op.id);
+                    break;
+                case EVENT_OPEN:
+                    lastDeductByStore.put(op.storeId, op);
+                    break;
+                default:
+                    return false;
+            }
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private boolean isOpenEntry(Operation deduct) {
+        Operation open = lastDeductByStore.get(deduct.storeId);
+        return TYPE_DEDUCT.equals(deduct.type) && open != null && open.id.equals(deduct.id);
+    }
+
+    /**
+     * A refund or netted pair ends the store's open radius entry
+     */
+    private void closeEntry(Operation op) {
+        String deductId = TYPE_DEDUCT.equals(op.type) ? op.id : op.entryId;
+        Operation open = lastDeductByStore.get(op.storeId);
+        if (open != null && open.id.equals(deductId)) {
+            lastDeductByStore.remove(op.storeId);
+        }
+        if (deductId != null) {
+            rejectedDeducts.remove(deductId);
+        }
+    }
+
+    /**
+     * Buffer one audit event for the writer; caller holds the lock
+     */
+    private void audit(String event, Operation op) {
+        if (closed) return;
+        appendLine(unwritten, event, op);
+        if (!writeScheduled) {
+            writeScheduled = true;
+            writer.schedule(this::writeAudit, AUDIT_WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void appendLine(StringBuilder text, String event, Operation op) {
+        appendLine(text, clock.currentTimeMillis(), event, op);
+    }
+
+    private static void appendLine(StringBuilder text, long time, String event, Operation op) {
+        text.append(time).append('\t').append(event).append('\t').append(op.id)
+                .append('\t').append(op.type).append('\t').append(op.storeId).append('\t').append(op.credits)
+                .append('\t').append(op.entryId != null ? op.entryId : "").append('\n');
+    }
+
+    /**
+     * Write buffered events now, blocking until they are on disk
+     */
+    private void syncAudit() throws IOException {
+        try {
+            writer.submit(this::writeAudit).get();
+        } catch (Exception e) {
+            throw new IOException("Audit log not written", e);
+        }
+    }
+
+    private void writeAudit() {
+        String batch;
+        StringBuilder carried = null;
+        synchronized (lock) {
+            writeScheduled = false;
+            if (unwritten.length() == 0) return;
+            batch = unwritten.toString();
+            unwritten = new StringBuilder();
+            if (file.length() + batch.length() >= maxAuditBytes) {
+                // The snapshot already reflects every event in this batch
+                carried = snapshot();
+            }
+        }
+
+        try {
+            if (out == null) {
+                out = new FileOutputStream(file, true);
+            }
+            out.write(batch.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            // Keep the batch for the next attempt
+            synchronized (lock) {
+                unwritten.insert(0, batch);
+            }
+            return;
+        }
+
+        if (carried != null) {
+            try {
+                rotate(carried.toString());
+            } catch (IOException e) {
+                // Handle error
+            }
+        }
+    }
+
+    /**
+     * Events that rebuild the unsettled state on replay; caller holds the lock.
+     * Pending operations keep their queueing order and creation time, so replaying
+     * them leaves each store's latest deduct as its open entry; entries whose deduct
+     * was already sent follow, with their rejection if the server refused them
+     */
+    private StringBuilder snapshot() {
+        StringBuilder text = new StringBuilder();
+        for (Operation op : pending.values()) {
+            appendLine(text, op.createdAt, EVENT_QUEUED, op);
+        }
+        for (Operation open : lastDeductByStore.values()) {
+            if (!pending.containsKey(open.id)) {
+                appendLine(text, open.createdAt, EVENT_OPEN, open);
+            }
+            if (rejectedDeducts.contains(open.id)) {
+                appendLine(text, open.createdAt, EVENT_REJECTED, open);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Start a new generation of the audit log holding the unsettled state and keep the
+     * old one as the previous generation. The new generation is fully written before
+     * either rename, so a crash at any point leaves a log that replays to the same state
+     */
+    private void rotate(String carried) throws IOException {
+        File next = writeTemp(carried);
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        File previous = previousGeneration();
+        if (previous.exists() && !previous.delete()) {
+            throw new IOException("Failed to delete " + previous);
+        }
+        if (!file.renameTo(previous)) {
+            throw new IOException("Failed to rotate " + file);
+        }
+        if (!next.renameTo(file)) {
+            previous.renameTo(file);
+            throw new IOException("Failed to rotate " + file);
+        }
+    }
+
+    /**
+     * Replace the current generation without touching the previous one
+     */
+    private void writeGeneration(String content) throws IOException {
+        File next = writeTemp(content);
+        if (!next.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    private File writeTemp(String content) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream tempOut = new FileOutputStream(temp, false)) {
+            tempOut.write(content.getBytes(StandardCharsets.UTF_8));
+            tempOut.getFD().sync();
+        }
+        return temp;
+    }
+
+    private File previousGeneration() {
+        return new File(file.getPath() + ".1");
+    }
+}
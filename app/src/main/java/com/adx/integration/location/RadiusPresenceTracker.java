@@ -0,0 +1,195 @@
+package com.adx.integration.location;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-store presence state machine with hysteresis for radius enter/exit
+ *
+ * A fix only counts as being inside when it falls within the fence radius,
+ * and only counts as being outside when even the near edge of its accuracy
+ * circle lies beyond a wider exit radius. Either way the evidence has to hold
+ * for a minimum dwell time before the transition is confirmed, so GPS jitter
+ * around a 10 m fence no longer flips between enter and exit
+ *
+ * Driven purely by (distance, accuracy, time) so recorded fix sequences can be
+ * replayed against it. Not thread-safe: confine to a single thread
+ */
+public class RadiusPresenceTracker {
+
+    public enum Transition {
+        NONE,
+        ENTER,
+        EXIT
+    }
+
+    private enum State {
+        OUTSIDE,
+        ENTERING,
+        INSIDE,
+        EXITING
+    }
+
+    private static final long DEFAULT_ENTER_DWELL_MS = 15 * 1000; // 15 seconds
+    private static final long DEFAULT_EXIT_DWELL_MS = 30 * 1000; // 30 seconds
+    private static final float DEFAULT_EXIT_MARGIN_METERS = 15; // 15 meters
+    private static final float DEFAULT_MAX_ACCURACY_METERS = 50; // 50 meters
+
+    private final long enterDwellMs;
+    private final long exitDwellMs;
+    private final float exitMarginMeters;
+    private final float maxAccuracyMeters;
+
+    private final Map<String, Presence> presences = new HashMap<>();
+    private long confirmedTransitions;
+    private long suppressedTransitions;
+    private long ignoredFixes;
+
+    public RadiusPresenceTracker() {
+        this(DEFAULT_ENTER_DWELL_MS, DEFAULT_EXIT_DWELL_MS, DEFAULT_EXIT_MARGIN_METERS, DEFAULT_MAX_ACCURACY_METERS);
+    }
+
+    public RadiusPresenceTracker(long enterDwellMs, long exitDwellMs,
+                                 float exitMarginMeters, float maxAccuracyMeters) {
+        this.enterDwellMs = enterDwellMs;
+        this.exitDwellMs = exitDwellMs;
+        this.exitMarginMeters = exitMarginMeters;
+        this.maxAccuracyMeters = maxAccuracyMeters;
+    }
+
+    /**
+     * Feed one fix for one store
+     *
+     * @param storeId        store the fence belongs to
+     * @param distanceMeters distance from the fix to the store center
+     * @param radiusMeters   store fence radius, used as the enter radius
+     * @param accuracyMeters horizontal accuracy of the fix, 0 if unknown
+     * @param timeMs         fix timestamp
+     * @return the transition confirmed by this fix, if any
+     */
+    public Transition onFix(String storeId, double distanceMeters, float radiusMeters,
+                            float accuracyMeters, long timeMs) {
+        if (accuracyMeters > maxAccuracyMeters) {
+            ignoredFixes++;
+            return Transition.NONE;
+        }
+
+        float exitRadius = exitRadius(radiusMeters);
+        boolean insideEvidence = distanceMeters <= radiusMeters;
+        boolean outsideEvidence = distanceMeters - accuracyMeters > exitRadius;
+
+        Presence presence = presences.get(storeId);
+        State state = presence != null ? presence.state : State.OUTSIDE;
+
+        switch (state) {
+            case OUTSIDE:
+                if (insideEvidence) {
+                    presence = new Presence(State.ENTERING, timeMs);
+                    presences.put(storeId, presence);
+                    return confirmIfDwelled(storeId, presence, timeMs);
+                }
+                return Transition.NONE;
+
+            case ENTERING:
+                if (!insideEvidence) {
+                    presences.remove(storeId);
+                    suppressedTransitions++;
+                    return Transition.NONE;
+                }
+                return confirmIfDwelled(storeId, presence, timeMs);
+
+            case INSIDE:
+                if (outsideEvidence) {
+                    presence.state = State.EXITING;
+                    presence.since = timeMs;
+                    return confirmIfDwelled(storeId, presence, timeMs);
+                }
+                return Transition.NONE;
+
+            case EXITING:
+                if (distanceMeters <= exitRadius) {
+                    presence.state = State.INSIDE;
+                    suppressedTransitions++;
+                    return Transition.NONE;
+                }
+                if (!outsideEvidence) {
+                    // Ambiguous fix: neither confirms nor cancels the pending exit
+                    return Transition.NONE;
+                }
+                return confirmIfDwelled(storeId, presence, timeMs);
+
+            default:
+                return Transition.NONE;
+        }
+    }
+
+    /**
+     * Force a store to the inside state, e.g. when restoring a persisted session
+     */
+    public void markInside(String storeId, long timeMs) {
+        presences.put(storeId, new Presence(State.INSIDE, timeMs));
+    }
+
+    /**
+     * Drop all state for a store, e.g. when its fence is removed
+     */
+    public void forget(String storeId) {
+        presences.remove(storeId);
+    }
+
+    public boolean isInside(String storeId) {
+        Presence presence = presences.get(storeId);
+        return presence != null && (presence.state == State.INSIDE || presence.state == State.EXITING);
+    }
+
+    /**
+     * Stores that are not plainly outside and therefore need to be evaluated
+     * on every fix, even when the fix is outside their enter radius
+     */
+    public List<String> getTrackedStoreIds() {
+        return new ArrayList<>(presences.keySet());
+    }
+
+    public float exitRadius(float radiusMeters) {
+        return radiusMeters + Math.max(exitMarginMeters, radiusMeters * 0.5f);
+    }
+
+    public long getConfirmedTransitions() {
+        return confirmedTransitions;
+    }
+
+    public long getSuppressedTransitions() {
+        return suppressedTransitions;
+    }
+
+    public long getIgnoredFixes() {
+        return ignoredFixes;
+    }
+
+    private Transition confirmIfDwelled(String storeId, Presence presence, long timeMs) {
+        if (presence.state == State.ENTERING && timeMs - presence.since >= enterDwellMs) {
+            presence.state = State.INSIDE;
+            presence.since = timeMs;
+            confirmedTransitions++;
+            return Transition.ENTER;
+        }
+        if (presence.state == State.EXITING && timeMs - presence.since >= exitDwellMs) {
+            presences.remove(storeId);
+            confirmedTransitions++;
+            return Transition.EXIT;
+        }
+        return Transition.NONE;
+    }
+
+    private static class Presence {
+        State state;
+        long since;
+
+        Presence(State state, long since) {
+            this.state = state;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.adx.integration.location;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of radius sessions so enter/exit/refund state survives
+ * the tracking service being killed and restarted
+ *
+ * Events are buffered and written behind by a dedicated thread, one write and one
+ * fsync per batch. Each line carries a CRC32, so a record torn by a crash mid-batch
+ * is detected on replay and everything from it onward is ignored. Replaying also
+ * compacts the file down to the still-open sessions, which keeps recovery in the
+ * low milliseconds. Events recorded after {@link #close} are dropped
+ *
+ * Line format: type, storeId, fields..., crc; tab separated
+ */
+public class RadiusSessionJournal {
+
+    private static final String TYPE_ENTER = "E";
+    private static final String TYPE_EXIT = "X";
+    private static final String TYPE_REFUND = "R";
+
+    private static final long FLUSH_DELAY_MS = 200;
+    private static final int COMPACT_THRESHOLD = 1000; // events appended since the last compaction
+
+    private final File file;
+    private final ScheduledExecutorService writer;
+
+    private final Object lock = new Object();
+    private final Map<String, Session> openSessions = new HashMap<>();
+    private StringBuilder pending = new StringBuilder();
+    private boolean flushScheduled;
+    private boolean closed;
+    private int eventsSinceCompaction;
+    private long batchesWritten;
+    private long eventsWritten;
+
+    private FileOutputStream out; // writer thread only
+
+    public RadiusSessionJournal(File file) {
+        this.file = file;
+        this.writer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Replay the journal and return the sessions that were still open, then
+     * compact the file to just those sessions. Call once before recording events
+     */
+    public Map<String, Session> recover() throws IOException {
+        Map<String, Session> sessions = new HashMap<>();
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!apply(sessions, line)) {
+                        break; // torn or corrupt tail
+                    }
+                }
+            }
+        }
+
+        synchronized (lock) {
+            openSessions.clear();
+            openSessions.putAll(sessions);
+        }
+        List<Session> snapshot = new ArrayList<>(sessions.values());
+        try {
+            // The file and its stream belong to the writer thread
+            writer.submit(() -> {
+                compact(snapshot);
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        return Collections.unmodifiableMap(sessions);
+    }
+
+    public void recordEnter(String storeId, long entryTime, long deadline, int creditsDeducted) {
+        Session session = new Session(storeId, entryTime, deadline, creditsDeducted);
+        synchronized (lock) {
+            openSessions.put(storeId, session);
+            append(encode(TYPE_ENTER, storeId,
+                    Long.toString(entryTime), Long.toString(deadline), Integer.toString(creditsDeducted)));
+        }
+    }
+
+    public void recordExit(String storeId, long time) {
+        synchronized (lock) {
+            openSessions.remove(storeId);
+            append(encode(TYPE_EXIT, storeId, Long.toString(time)));
+        }
+    }
+
+    public void recordRefund(String storeId, long time) {
+        synchronized (lock) {
+            openSessions.remove(storeId);
+            append(encode(TYPE_REFUND, storeId, Long.toString(time)));
+        }
+    }
+
+    /**
+     * Write and fsync everything recorded so far, blocking until done
+     */
+    public void flush() {
+        try {
+            writer.submit(this::writePending).get();
+        } catch (Exception e) {
+            // Handle error
+        }
+    }
+
+    /**
+     * Write out everything recorded so far and stop; call once nothing records any more
+     */
+    public void close() {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+        }
+        try {
+            writer.submit(() -> {
+                writePending();
+                try {
+                    if (out != null) out.close();
+                } catch (IOException e) {
+                    // Handle error
+                }
+                out = null;
+            }).get();
+        } catch (Exception e) {
+            // Handle error
+        }
+        // Nothing is left to write; drop the already scheduled write-behind
+        writer.shutdownNow();
+    }
+
+    public long getBatchesWritten() {
+        synchronized (lock) {
+            return batchesWritten;
+        }
+    }
+
+    public long getEventsWritten() {
+        synchronized (lock) {
+            return eventsWritten;
+        }
+    }
+
+    private void append(String line) {
+        if (closed) return;
+        pending.append(line).append('\n');
+        eventsSinceCompaction++;
+        if (!flushScheduled) {
+            flushScheduled = true;
+            writer.schedule(this::writePending, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void writePending() {
+        String batch;
+        int events;
+        List<Session> snapshot = null;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pending.length() == 0) return;
+            batch = pending.toString();
+            events = countLines(batch);
+            pending = new StringBuilder();
+            if (eventsSinceCompaction >= COMPACT_THRESHOLD) {
+                snapshot = new ArrayList<>(openSessions.values());
+            }
+        }
+
+        try {
+            if (snapshot != null) {
+                // The snapshot already reflects every event in this batch
+                compact(snapshot);
+            } else {
+                if (out == null) {
+                    out = new FileOutputStream(file, true);
+                }
+                out.write(batch.getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            synchronized (lock) {
+                batchesWritten++;
+                eventsWritten += events;
+            }
+        } catch (IOException e) {
+            // Keep the batch for the next attempt
+            synchronized (lock) {
+                pending.insert(0, batch);
+            }
+        }
+    }
+
+    /**
+     * Atomically replace the journal with one ENTER record per open session
+     */
+    private void compact(List<Session> sessions) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Session session : sessions) {
+            content.append(encode(TYPE_ENTER, session.storeId,
+                    Long.toString(session.entryTime), Long.toString(session.deadline),
+                    Integer.toString(session.creditsDeducted))).append('\n');
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream tempOut = new FileOutputStream(temp, false)) {
+            tempOut.write(content.toString().getBytes(StandardCharsets.UTF_8));
+            tempOut.getFD().sync();
+        }
+
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+        synchronized (lock) {
+            eventsSinceCompaction = 0;
+        }
+    }
+
+    private static boolean apply(Map<String, Session> sessions, String line) {
+        int crcStart = line.lastIndexOf('\t');
+        if (crcStart < 0) return false;
+        String body = line.substring(0, crcStart);
+        if (!crc(body).equals(line.substring(crcStart + 1))) return false;
+
+        String[] fields = body.split("\t");
+        try {
+            switch (fields[0]) {
+                case TYPE_ENTER:
+                    sessions.put(fields[1], new Session(fields[1],
+                            Long.parseLong(fields[2]), Long.parseLong(fields[3]), Integer.parseInt(fields[4])));
+                    return true;
+                case TYPE_EXIT:
+                case TYPE_REFUND:
+                    sessions.remove(fields[1]);
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static String encode(String type, String storeId, String... values) {
+        StringBuilder body = new StringBuilder(type).append('\t').append(storeId);
+        for (String value : values) {
+            body.append('\t').append(value);
+        }
+        String text = body.toString();
+        return text + '\t' + crc(text);
+    }
+
+    private static String crc(String text) {
+        CRC32 crc = new CRC32();
+        crc.update(text.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static int countLines(String text) {
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * An open radius session: credits were deducted and no exit or refund followed yet
+     */
+    public static class Session {
+        private final String storeId;
+        private final long entryTime;
+        private final long deadline;
+        private final int creditsDeducted;
+
+        public Session(String storeId, long entryTime, long deadline, int creditsDeducted) {
+            this.storeId = storeId;
+            this.entryTime = entryTime;
+            this.deadline = deadline;
+            this.creditsDeducted = creditsDeducted;
+        }
+
+        public String getStoreId() { return storeId; }
+        public long getEntryTime() { return entryTime; }
+        public long getDeadline() { return deadline; }
+        public int getCreditsDeducted() { return creditsDeducted; }
+    }
+}
@@ -0,0 +1,163 @@
+package com.adx.integration.location;
+
+import com.adx.integration.utils.Clock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timing wheel for per-store radius timeouts
+ * Scheduling, rescheduling and cancelling are O(1); each tick only visits the
+ * one bucket whose slot has come up, so thousands of concurrent radius entries
+ * cost nothing between deadlines
+ *
+ * The wheel does not own a thread: call {@link #advance()} periodically (and
+ * from the same thread that schedules) and expired keys are handed to the listener
+ */
+public class RadiusTimeoutWheel {
+
+    public interface Listener {
+        void onTimeout(String storeId);
+    }
+
+    private static final long DEFAULT_TICK_MS = 5 * 1000; // 5 seconds
+    private static final int DEFAULT_WHEEL_SIZE = 256; // ~21 minutes per revolution
+
+    private final Clock clock;
+    private final Listener listener;
+    private final long tickMs;
+    private final int mask;
+    private final Timeout[] buckets;
+    private final Map<String, Timeout> timeouts = new HashMap<>();
+    private long lastTick;
+
+    public RadiusTimeoutWheel(Clock clock, Listener listener) {
+        this(clock, listener, DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE);
+    }
+
+    public RadiusTimeoutWheel(Clock clock, Listener listener, long tickMs, int wheelSize) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("tickMs must be positive");
+        }
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize must be a power of two");
+        }
+        this.clock = clock;
+        this.listener = listener;
+        this.tickMs = tickMs;
+        this.mask = wheelSize - 1;
+        this.buckets = new Timeout[wheelSize];
+        this.lastTick = clock.currentTimeMillis() / tickMs;
+    }
+
+    /**
+     * Schedule (or reschedule) the timeout for a store at an absolute deadline
+     */
+    public void schedule(String storeId, long deadlineMs) {
+        cancel(storeId);
+
+        long deadlineTick = (deadlineMs + tickMs - 1) / tickMs;
+        long ticks = Math.max(deadlineTick - lastTick, 1);
+        Timeout timeout = new Timeout(storeId, deadlineMs, (ticks - 1) / buckets.length);
+        int index = (int) ((lastTick + ticks) & mask);
+
+        timeout.bucket = index;
+        timeout.next = buckets[index];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        buckets[index] = timeout;
+        timeouts.put(storeId, timeout);
+    }
+
+    /**
+     * Cancel a pending timeout, returning true if one was scheduled
+     */
+    public boolean cancel(String storeId) {
+        Timeout timeout = timeouts.remove(storeId);
+        if (timeout == null) return false;
+        unlink(timeout);
+        return true;
+    }
+
+    public boolean isScheduled(String storeId) {
+        return timeouts.containsKey(storeId);
+    }
+
+    public long getDeadline(String storeId) {
+        Timeout timeout = timeouts.get(storeId);
+        return timeout != null ? timeout.deadlineMs : -1;
+    }
+
+    public int size() {
+        return timeouts.size();
+    }
+
+    public long getTickMs() {
+        return tickMs;
+    }
+
+    /**
+     * Process every tick up to the current clock time and fire expired timeouts
+     *
+     * @return number of timeouts fired
+     */
+    public int advance() {
+        long now = clock.currentTimeMillis();
+        long targetTick = now / tickMs;
+        List<String> expired = null;
+
+        while (lastTick < targetTick) {
+            lastTick++;
+            Timeout timeout = buckets[(int) (lastTick & mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0 && timeout.deadlineMs <= now) {
+                    unlink(timeout);
+                    timeouts.remove(timeout.storeId);
+                    if (expired == null) expired = new ArrayList<>();
+                    expired.add(timeout.storeId);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        if (expired == null) return 0;
+        for (String storeId : expired) {
+            listener.onTimeout(storeId);
+        }
+        return expired.size();
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else if (buckets[timeout.bucket] == timeout) {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    private static class Timeout {
+        final String storeId;
+        final long deadlineMs;
+        long remainingRounds;
+        int bucket;
+        Timeout prev;
+        Timeout next;
+
+        Timeout(String storeId, long deadlineMs, long remainingRounds) {
+            this.storeId = storeId;
+            this.deadlineMs = deadlineMs;
+            this.remainingRounds = remainingRounds;
+        }
+    }
+}
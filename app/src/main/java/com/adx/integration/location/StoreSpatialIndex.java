@@ -0,0 +1,322 @@
+package com.adx.integration.location;
+
+import com.adx.integration.data.model.Store;
+import com.adx.integration.utils.GeoMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory grid index over radius-enabled store fences
+ * Answers "which fences contain this point" by scanning only the grid cell
+ * the point falls in instead of every cached store
+ *
+ * Fence data lives in a {@link FenceTable}; the grid only holds slot numbers,
+ * and {@link #findContaining(double, double, int[])} allocates nothing per call
+ *
+ * Not thread-safe: confine reads and updates to a single thread
+ */
+public class StoreSpatialIndex {
+
+    private static final double DEFAULT_CELL_SIZE_DEGREES = 0.005; // ~550 m of latitude
+    private static final long EMPTY_CELL = Long.MIN_VALUE;
+    private static final long[] NO_CELLS = new long[0];
+
+    private final double cellSizeDegrees;
+    private final FenceTable fences = new FenceTable();
+
+    // Open-addressing map from cell key to the slots whose fence overlaps that cell
+    private long[] cellKeys;
+    private int[][] cellSlots;
+    private int[] cellCounts;
+    private int usedCells;
+
+    // Cells each slot was registered in, so removal doesn't need a scan
+    private long[][] slotCells = new long[64][];
+
+    public StoreSpatialIndex() {
+        this(DEFAULT_CELL_SIZE_DEGREES);
+    }
+
+    public StoreSpatialIndex(double cellSizeDegrees) {
+        if (cellSizeDegrees <= 0) {
+            throw new IllegalArgumentException("cellSizeDegrees must be positive");
+        }
+        this.cellSizeDegrees = cellSizeDegrees;
+        allocateCells(256);
+    }
+
+    /**
+     * Insert or replace the fence for a store
+     * Stores without a valid location or with radius disabled are removed
+     */
+    public void upsert(Store store) {
+        if (store == null || store.getId() == null) return;
+
+        remove(store.getId());
+        int slot = fences.put(store);
+        if (slot == FenceTable.NO_SLOT) return;
+
+        double latitude = fences.latitude(slot);
+        double longitude = fences.longitude(slot);
+        double latSpan = GeoMath.latitudeSpanDegrees(fences.radius(slot));
+        double lonSpan = GeoMath.longitudeSpanDegrees(fences.radius(slot), latitude);
+        int minLatCell = cellOf(latitude - latSpan);
+        int maxLatCell = cellOf(latitude + latSpan);
+        int minLonCell = cellOf(longitude - lonSpan);
+        int maxLonCell = cellOf(longitude + lonSpan);
+
+        long[] keys = new long[(maxLatCell - minLatCell + 1) * (maxLonCell - minLonCell + 1)];
+        int k = 0;
+        for (int latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+            for (int lonCell = minLonCell; lonCell <= maxLonCell; lonCell++) {
+                long key = cellKey(latCell, lonCell);
+                addToCell(key, slot);
+                keys[k++] = key;
+            }
+        }
+
+        if (slot >= slotCells.length) {
+            slotCells = Arrays.copyOf(slotCells, Math.max(slot + 1, slotCells.length * 2));
+        }
+        slotCells[slot] = keys;
+    }
+
+    /**
+     * Apply a batch of synced stores incrementally
+     */
+    public void upsertAll(Collection<Store> stores) {
+        if (stores == null) return;
+        for (Store store : stores) {
+            upsert(store);
+        }
+    }
+
+    /**
+     * Apply the result of a full sync: upsert the synced stores and evict indexed
+     * stores the sync no longer returned, except those listed in keep
+     * @return number of stores evicted
+     */
+    public int replaceAll(Collection<Store> stores, Set<String> keep) {
+        if (stores == null) return 0;
+        Set<String> synced = new HashSet<>(stores.size() * 2);
+        for (Store store : stores) {
+            if (store != null && store.getId() != null) synced.add(store.getId());
+        }
+
+        List<String> stale = new ArrayList<>();
+        for (int slot = 0; slot < fences.capacity(); slot++) {
+            if (!fences.isActive(slot)) continue;
+            String id = fences.id(slot);
+            if (!synced.contains(id) && !keep.contains(id)) stale.add(id);
+        }
+        for (String id : stale) {
+            remove(id);
+        }
+        upsertAll(stores);
+        return stale.size();
+    }
+
+    /**
+     * Remove a store's fence, returning true if it was indexed
+     */
+    public boolean remove(String storeId) {
+        int slot = fences.remove(storeId);
+        if (slot == FenceTable.NO_SLOT) return false;
+
+        long[] keys = slot < slotCells.length && slotCells[slot] != null ? slotCells[slot] : NO_CELLS;
+        for (long key : keys) {
+            removeFromCell(key, slot);
+        }
+        slotCells[slot] = null;
+        return true;
+    }
+
+    public void clear() {
+        fences.clear();
+        Arrays.fill(slotCells, null);
+        allocateCells(256);
+    }
+
+    public int size() {
+        return fences.size();
+    }
+
+    public FenceTable getFences() {
+        return fences;
+    }
+
+    public Store getStore(String storeId) {
+        int slot = fences.slotOf(storeId);
+        return slot != FenceTable.NO_SLOT ? fences.store(slot) : null;
+    }
+
+    /**
+     * Write the slot of every fence containing the given point into slotsOut
+     * Returns the total number of containing fences, which may exceed
+     * slotsOut.length; in that case only the first slotsOut.length are written
+     * and the caller should retry with a larger buffer
+     */
+    public int findContaining(double latitude, double longitude, int[] slotsOut) {
+        int index = findCell(cellKey(cellOf(latitude), cellOf(longitude)));
+        if (index < 0) return 0;
+
+        int[] slots = cellSlots[index];
+        int count = cellCounts[index];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = slots[i];
+            if (GeoMath.isWithinRadius(latitude, longitude,
+                    fences.latitude(slot), fences.longitude(slot), fences.radius(slot))) {
+                if (found < slotsOut.length) {
+                    slotsOut[found] = slot;
+                }
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Distance from the point to the nearest fence edge, 0 when inside a fence
+     * Searches outward ring by ring and stops once no unvisited cell could hold
+     * anything closer; returns {@link Double#POSITIVE_INFINITY} when no fence
+     * lies within maxRings cells
+     */
+    public double nearestEdgeDistance(double latitude, double longitude, int maxRings) {
+        int centerLat = cellOf(latitude);
+        int centerLon = cellOf(longitude);
+        double ringMeters = Math.min(
+                GeoMath.METERS_PER_DEGREE * cellSizeDegrees,
+                GeoMath.METERS_PER_DEGREE * cellSizeDegrees * Math.cos(Math.toRadians(latitude)));
+        double best = Double.POSITIVE_INFINITY;
+
+        for (int ring = 0; ring <= maxRings; ring++) {
+            for (int dLat = -ring; dLat <= ring; dLat++) {
+                boolean edgeRow = dLat == -ring || dLat == ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int dLon = -ring; dLon <= ring; dLon += step) {
+                    int index = findCell(cellKey(centerLat + dLat, centerLon + dLon));
+                    if (index < 0) continue;
+
+                    int[] slots = cellSlots[index];
+                    int count = cellCounts[index];
+                    for (int i = 0; i < count; i++) {
+                        int slot = slots[i];
+                        double edge = GeoMath.distanceMeters(latitude, longitude,
+                                fences.latitude(slot), fences.longitude(slot)) - fences.radius(slot);
+                        if (edge <= 0) return 0;
+                        if (edge < best) best = edge;
+                    }
+                }
+            }
+            if (best <= ring * ringMeters) break;
+        }
+        return best;
+    }
+
+    private int cellOf(double degrees) {
+        return (int) Math.floor(degrees / cellSizeDegrees);
+    }
+
+    private static long cellKey(int latCell, int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xffffffffL);
+    }
+
+    // Cell map internals
+
+    private void allocateCells(int capacity) {
+        cellKeys = new long[capacity];
+        Arrays.fill(cellKeys, EMPTY_CELL);
+        cellSlots = new int[capacity][];
+        cellCounts = new int[capacity];
+        usedCells = 0;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int findCell(long key) {
+        int mask = cellKeys.length - 1;
+        int index = mix(key) & mask;
+        while (cellKeys[index] != EMPTY_CELL) {
+            if (cellKeys[index] == key) return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void addToCell(long key, int slot) {
+        if ((usedCells + 1) * 4 > cellKeys.length * 3) {
+            rehashCells();
+        }
+
+        int mask = cellKeys.length - 1;
+        int index = mix(key) & mask;
+        while (cellKeys[index] != EMPTY_CELL && cellKeys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        if (cellKeys[index] == EMPTY_CELL) {
+            cellKeys[index] = key;
+            cellSlots[index] = new int[4];
+            usedCells++;
+        }
+
+        int count = cellCounts[index];
+        if (count == cellSlots[index].length) {
+            cellSlots[index] = Arrays.copyOf(cellSlots[index], count * 2);
+        }
+        cellSlots[index][count] = slot;
+        cellCounts[index] = count + 1;
+    }
+
+    private void removeFromCell(long key, int slot) {
+        int index = findCell(key);
+        if (index < 0) return;
+
+        int[] slots = cellSlots[index];
+        int count = cellCounts[index];
+        for (int i = 0; i < count; i++) {
+            if (slots[i] == slot) {
+                slots[i] = slots[count - 1];
+                cellCounts[index] = count - 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Grow the cell map, dropping cells that no longer hold any fence
+     */
+    private void rehashCells() {
+        long[] oldKeys = cellKeys;
+        int[][] oldSlots = cellSlots;
+        int[] oldCounts = cellCounts;
+
+        int live = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_CELL && oldCounts[i] > 0) live++;
+        }
+        int capacity = Integer.highestOneBit(Math.max(live * 2, 128)) * 2;
+        allocateCells(capacity);
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY_CELL || oldCounts[i] == 0) continue;
+            int index = mix(oldKeys[i]) & mask;
+            while (cellKeys[index] != EMPTY_CELL) {
+                index = (index + 1) & mask;
+            }
+            cellKeys[index] = oldKeys[i];
+            cellSlots[index] = oldSlots[i];
+            cellCounts[index] = oldCounts[i];
+            usedCells++;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.adx.integration.location;
+
+/**
+ * A single retained location fix
+ */
+public class TrackPoint {
+    private final double latitude;
+    private final double longitude;
+    private final long timeMs;
+
+    public TrackPoint(double latitude, double longitude, long timeMs) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.timeMs = timeMs;
+    }
+
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public long getTimeMs() { return timeMs; }
+
+    @Override
+    public String toString() {
+        return "TrackPoint{" +
+                "lat=" + latitude +
+                ", lon=" + longitude +
+                ", time=" + timeMs +
+                '}';
+    }
+}
@@ -0,0 +1,131 @@
+package com.adx.integration.location;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary encoding for runs of track points
+ *
+ * Coordinates are quantized to 1e-6 degrees (~0.1 m) and time to whole seconds.
+ * The first point is stored absolute, every following point as the zigzag varint
+ * delta from its predecessor, so a walking trace costs a few bytes per point
+ * instead of the 24 bytes of raw doubles and longs. A CRC32 of the encoded points
+ * closes the chunk, so decoding rejects damaged data instead of misreading it
+ */
+public final class TrajectoryCodec {
+
+    private static final double SCALE = 1e6;
+    private static final int MIN_POINT_BYTES = 3; // one byte per delta
+    private static final int CHECKSUM_BYTES = 4;
+
+    private TrajectoryCodec() {
+    }
+
+    public static byte[] encode(List<TrackPoint> points) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(points.size() * 6 + 8);
+        writeVarint(out, points.size());
+
+        long prevLat = 0;
+        long prevLon = 0;
+        long prevTime = 0;
+        for (TrackPoint point : points) {
+            long lat = Math.round(point.getLatitude() * SCALE);
+            long lon = Math.round(point.getLongitude() * SCALE);
+            long time = point.getTimeMs() / 1000;
+
+            writeVarint(out, zigzag(lat - prevLat));
+            writeVarint(out, zigzag(lon - prevLon));
+            writeVarint(out, zigzag(time - prevTime));
+
+            prevLat = lat;
+            prevLon = lon;
+            prevTime = time;
+        }
+
+        long checksum = checksum(out.toByteArray(), out.size());
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            out.write((int) (checksum >>> shift));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data is truncated, corrupt or not a chunk
+     */
+    public static List<TrackPoint> decode(byte[] data) {
+        if (data.length < CHECKSUM_BYTES + 1) {
+            throw new IllegalArgumentException("Truncated trajectory data");
+        }
+        int end = data.length - CHECKSUM_BYTES;
+        long stored = 0;
+        for (int i = end; i < data.length; i++) {
+            stored = (stored << 8) | (data[i] & 0xFF);
+        }
+        if (stored != checksum(data, end)) {
+            throw new IllegalArgumentException("Trajectory checksum mismatch");
+        }
+
+        int[] position = {0};
+        long count = readVarint(data, end, position);
+        // Bound the count by the bytes actually present before trusting it for allocation
+        if (count < 0 || count > (end - position[0]) / MIN_POINT_BYTES) {
+            throw new IllegalArgumentException("Point count exceeds trajectory data");
+        }
+        List<TrackPoint> points = new ArrayList<>((int) count);
+
+        long lat = 0;
+        long lon = 0;
+        long time = 0;
+        for (int i = 0; i < count; i++) {
+            lat += unzigzag(readVarint(data, end, position));
+            lon += unzigzag(readVarint(data, end, position));
+            time += unzigzag(readVarint(data, end, position));
+            points.add(new TrackPoint(lat / SCALE, lon / SCALE, time * 1000));
+        }
+        if (position[0] != end) {
+            throw new IllegalArgumentException("Trailing trajectory data");
+        }
+        return points;
+    }
+
+    private static long checksum(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return crc.getValue();
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int end, int[] position) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            if (position[0] >= end) {
+                throw new IllegalArgumentException("Truncated trajectory data");
+            }
+            byte b = data[position[0]++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalArgumentException("Malformed varint");
+            }
+        }
+    }
+}
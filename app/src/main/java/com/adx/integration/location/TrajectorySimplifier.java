@@ -0,0 +1,118 @@
+package com.adx.integration.location;
+
+import com.adx.integration.utils.GeoMath;
+
+/**
+ * Streaming dead-reckoning filter for location fixes
+ *
+ * The velocity between the last two retained points predicts where the user
+ * should be now; a fix is only retained when it strays from that prediction by
+ * more than the error tolerance, or when nothing has been retained for the
+ * heartbeat interval. Walking in a straight line or standing still therefore
+ * produces very few points, while turns are kept to within the tolerance
+ *
+ * O(1) time and memory per fix. Not thread-safe: confine to a single thread
+ */
+public class TrajectorySimplifier {
+
+    private static final long DEFAULT_HEARTBEAT_MS = 2 * 60 * 1000; // 2 minutes
+
+    private final double toleranceMeters;
+    private final long heartbeatMs;
+
+    private boolean hasAnchor;
+    private double anchorLat;
+    private double anchorLon;
+    private long anchorTime;
+    private double velocityLat; // degrees per ms
+    private double velocityLon; // degrees per ms
+
+    private long fixesOffered;
+    private long fixesRetained;
+
+    public TrajectorySimplifier(double toleranceMeters) {
+        this(toleranceMeters, DEFAULT_HEARTBEAT_MS);
+    }
+
+    public TrajectorySimplifier(double toleranceMeters, long heartbeatMs) {
+        if (toleranceMeters <= 0) {
+            throw new IllegalArgumentException("toleranceMeters must be positive");
+        }
+        this.toleranceMeters = toleranceMeters;
+        this.heartbeatMs = heartbeatMs;
+    }
+
+    /**
+     * Offer a fix, returning true if it should be retained
+     */
+    public boolean offer(double latitude, double longitude, long timeMs) {
+        fixesOffered++;
+
+        if (!hasAnchor) {
+            retain(latitude, longitude, timeMs, false);
+            return true;
+        }
+
+        long elapsed = timeMs - anchorTime;
+        if (elapsed <= 0) return false;
+
+        double predictedLat = anchorLat + velocityLat * elapsed;
+        double predictedLon = anchorLon + velocityLon * elapsed;
+        boolean deviates = !GeoMath.isWithinRadius(predictedLat, predictedLon, latitude, longitude, toleranceMeters);
+
+        if (deviates || elapsed >= heartbeatMs) {
+            retain(latitude, longitude, timeMs, true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Continue from the last two retained points, e.g. read back from the history
+     * after a restart, instead of retaining the next fix unconditionally
+     */
+    public void resume(TrackPoint previous, TrackPoint last) {
+        anchorLat = previous.getLatitude();
+        anchorLon = previous.getLongitude();
+        anchorTime = previous.getTimeMs();
+        hasAnchor = true;
+        long elapsed = last.getTimeMs() - anchorTime;
+        if (elapsed > 0) {
+            velocityLat = (last.getLatitude() - anchorLat) / elapsed;
+            velocityLon = (last.getLongitude() - anchorLon) / elapsed;
+        } else {
+            velocityLat = 0;
+            velocityLon = 0;
+        }
+        anchorLat = last.getLatitude();
+        anchorLon = last.getLongitude();
+        anchorTime = last.getTimeMs();
+    }
+
+    public void reset() {
+        hasAnchor = false;
+        velocityLat = 0;
+        velocityLon = 0;
+    }
+
+    public long getFixesOffered() {
+        return fixesOffered;
+    }
+
+    public long getFixesRetained() {
+        return fixesRetained;
+    }
+
+    private void retain(double latitude, double longitude, long timeMs, boolean updateVelocity) {
+        if (updateVelocity) {
+            long elapsed = timeMs - anchorTime;
+            velocityLat = (latitude - anchorLat) / elapsed;
+            velocityLon = (longitude - anchorLon) / elapsed;
+        }
+        anchorLat = latitude;
+        anchorLon = longitude;
+        anchorTime = timeMs;
+        hasAnchor = true;
+        fixesRetained++;
+    }
+}
@@ -10,6 +10,7 @@ import android.content.Intent;
 import android.location.Location;
 import android.os.Binder;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
 
@@ -18,8 +19,19 @@ import androidx.core.app.NotificationCompat;
 import com.adx.integration.ADXApplication;
 import com.adx.integration.R;
 import com.adx.integration.data.model.Store;
+import com.adx.integration.data.remote.ApiClient;
+import com.adx.integration.data.remote.ApiService;
 import com.adx.integration.data.repository.LocationRepository;
+import com.adx.integration.location.LocationHistoryLog;
+import com.adx.integration.location.LocationPipeline;
+import com.adx.integration.location.LocationSamplingPolicy;
+import com.adx.integration.location.RadiusCreditEngine;
+import com.adx.integration.location.RadiusCreditQueue;
+import com.adx.integration.location.RadiusSessionJournal;
+import com.adx.integration.location.TrackPoint;
+import com.adx.integration.location.TrajectorySimplifier;
 import com.adx.integration.ui.main.MainActivity;
+import com.adx.integration.utils.Clock;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
@@ -27,13 +39,22 @@ import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.Priority;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Response;
 
 /**
  * Background service for continuous location tracking
- * Implements radius-based credit system with 10-minute timeout
+ * Implements radius-based credit system with per-store radius timeouts
  */
 public class LocationTrackingService extends Service {
 
@@ -42,19 +63,41 @@ public class LocationTrackingService extends Service {
     private static final long LOCATION_UPDATE_INTERVAL = 5000; // 5 seconds
     private static final long FASTEST_UPDATE_INTERVAL = 2000; // 2 seconds
     private static final float MINIMUM_DISPLACEMENT = 10; // 10 meters
+    private static final long MAX_FIX_AGE_MS = 30 * 1000; // 30 seconds
+    private static final String RADIUS_JOURNAL_FILE = "radius_sessions.log";
+    private static final String RADIUS_OPERATIONS_FILE = "radius_credit_ops.log";
+    private static final String LOCATION_HISTORY_FILE = "location_history.bin";
+    private static final double TRAJECTORY_TOLERANCE_METERS = 20; // 20 meters
+    private static final long TRAJECTORY_RESUME_MS = 10 * 60 * 1000; // 10 minutes
+    private static final long SHUTDOWN_DRAIN_MS = 2000; // 2 seconds per stage
 
     private final IBinder binder = new LocalBinder();
     private FusedLocationProviderClient fusedLocationClient;
     private LocationCallback locationCallback;
     private LocationRepository locationRepository;
-    private ExecutorService executorService;
+    private ScheduledExecutorService executorService; // evaluation stage, owns all radius state
+    private LocationPipeline<Location> pipeline;
+    private final Clock clock = Clock.SYSTEM;
     
     private Location lastLocation;
-    private boolean isTracking = false;
+    private volatile boolean isTracking = false; // written on the main thread only
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Only fixes that deviate from the dead-reckoned path are uploaded and kept in history
+    private final TrajectorySimplifier trajectory = new TrajectorySimplifier(TRAJECTORY_TOLERANCE_METERS);
+    private LocationHistoryLog locationHistory;
+
+    // Adaptive sampling: start tight until the first evaluation tells us how far the fences are
+    private final LocationSamplingPolicy samplingPolicy = new LocationSamplingPolicy();
+    private volatile LocationSamplingPolicy.SamplingPlan samplingPlan = new LocationSamplingPolicy.SamplingPlan(
+            LOCATION_UPDATE_INTERVAL, FASTEST_UPDATE_INTERVAL,
+            LocationSamplingPolicy.Accuracy.HIGH, MINIMUM_DISPLACEMENT);
 
-    // Radius tracking
-    private static final long RADIUS_TIMEOUT_MS = 10 * 60 * 1000; // 10 minutes
-    private java.util.Map<String, Long> radiusEntryTimes = new java.util.HashMap<>();
+    // Radius tracking; the engine's state is confined to the evaluation stage
+    private RadiusCreditEngine radiusEngine;
+    private RadiusSessionJournal radiusJournal;
+    private RadiusCreditQueue radiusCredits; // deducts and refunds, netted before sending
+    private ScheduledFuture<?> radiusTimeoutTicker;
 
     public class LocalBinder extends Binder {
         public LocationTrackingService getService() {
@@ -71,7 +114,28 @@ public class LocationTrackingService extends Service {
     private void initializeService() {
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
         locationRepository = new LocationRepository(this);
-        executorService = Executors.newSingleThreadExecutor();
+        executorService = Executors.newSingleThreadScheduledExecutor();
+        pipeline = new LocationPipeline<>(executorService, clock, MAX_FIX_AGE_MS,
+                this::evaluateFix, Location::getTime);
+
+        locationHistory = new LocationHistoryLog(new File(getFilesDir(), LOCATION_HISTORY_FILE));
+
+        radiusCredits = new RadiusCreditQueue(new File(getFilesDir(), RADIUS_OPERATIONS_FILE), clock,
+                this::sendRadiusOperations, createRadiusCreditListener());
+
+        // Rebuild radius sessions before the first fix is evaluated on the same thread
+        radiusJournal = new RadiusSessionJournal(new File(getFilesDir(), RADIUS_JOURNAL_FILE));
+        radiusEngine = new RadiusCreditEngine(clock, createRadiusGateway(), pipeline, radiusJournal,
+                createRadiusListener());
+        executorService.execute(() -> {
+            try {
+                radiusCredits.restore();
+            } catch (IOException e) {
+                // Handle error
+            }
+            radiusEngine.restoreSessions();
+            resumeTrajectory();
+        });
         
         createNotificationChannel();
         setupLocationCallback();
@@ -93,8 +157,36 @@ public class LocationTrackingService extends Service {
     public void onDestroy() {
         super.onDestroy();
         stopLocationTracking();
-        if (executorService != null) {
-            executorService.shutdown();
+
+        // Drain effects, then the evaluation tasks they hand back, before closing
+        // the journal and credit queue they record into
+        try {
+            if (pipeline != null) {
+                pipeline.shutdown();
+                pipeline.awaitTermination(SHUTDOWN_DRAIN_MS, TimeUnit.MILLISECONDS);
+            }
+            if (executorService != null) {
+                if (locationHistory != null) {
+                    executorService.execute(() -> {
+                        try {
+                            locationHistory.flush();
+                        } catch (IOException e) {
+                            // Handle error
+                        }
+                    });
+                }
+                executorService.shutdown();
+                executorService.awaitTermination(SHUTDOWN_DRAIN_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (radiusJournal != null) {
+            radiusJournal.close();
+        }
+        if (radiusCredits != null) {
+            radiusCredits.close();
         }
     }
 
@@ -119,14 +211,8 @@ public class LocationTrackingService extends Service {
     private void startLocationTracking() {
         if (isTracking) return;
 
-        LocationRequest locationRequest = LocationRequest.create();
-        locationRequest.setInterval(LOCATION_UPDATE_INTERVAL);
-        locationRequest.setFastestInterval(FASTEST_UPDATE_INTERVAL);
-        locationRequest.setPriority(Priority.PRIORITY_HIGH_ACCURACY);
-        locationRequest.setSmallestDisplacement(MINIMUM_DISPLACEMENT);
-
         try {
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+            requestLocationUpdates(samplingPlan);
             isTracking = true;
         } catch (SecurityException e) {
             // Handle permission error
@@ -134,6 +220,48 @@ public class LocationTrackingService extends Service {
         }
     }
 
+    /**
+     * Register (or replace) the location request for the callback with the given plan
+     */
+    private void requestLocationUpdates(LocationSamplingPolicy.SamplingPlan plan) throws SecurityException {
+        LocationRequest locationRequest = LocationRequest.create();
+        locationRequest.setInterval(plan.getIntervalMs());
+        locationRequest.setFastestInterval(plan.getFastestIntervalMs());
+        locationRequest.setPriority(toPriority(plan.getAccuracy()));
+        locationRequest.setSmallestDisplacement(plan.getMinDisplacementMeters());
+
+        fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
+    }
+
+    private static int toPriority(LocationSamplingPolicy.Accuracy accuracy) {
+        switch (accuracy) {
+            case HIGH: return Priority.PRIORITY_HIGH_ACCURACY;
+            case BALANCED: return Priority.PRIORITY_BALANCED_POWER_ACCURACY;
+            case LOW_POWER: return Priority.PRIORITY_LOW_POWER;
+            default: return Priority.PRIORITY_HIGH_ACCURACY;
+        }
+    }
+
+    private void updateSamplingPlan(Location userLocation) {
+        double edgeDistance = radiusEngine.nearestEdgeDistance(userLocation.getLatitude(), userLocation.getLongitude());
+        float speed = userLocation.hasSpeed() ? userLocation.getSpeed() : 0;
+        boolean fenceActive = radiusEngine.hasTrackedStores();
+
+        LocationSamplingPolicy.SamplingPlan plan = samplingPolicy.plan(edgeDistance, speed, fenceActive);
+        if (!plan.differsSignificantly(samplingPlan)) return;
+
+        samplingPlan = plan;
+        // Start and stop run on the main thread; re-registering there can't revive a stopped request
+        mainHandler.post(() -> {
+            if (!isTracking || samplingPlan != plan) return;
+            try {
+                requestLocationUpdates(plan);
+            } catch (SecurityException e) {
+                // Handle permission error
+            }
+        });
+    }
+
     private void stopLocationTracking() {
         if (fusedLocationClient != null && locationCallback != null) {
             fusedLocationClient.removeLocationUpdates(locationCallback);
@@ -157,125 +285,191 @@ public class LocationTrackingService extends Service {
 
     private void handleLocationUpdate(Location location) {
         lastLocation = location;
-        
-        // Update location in repository
-        executorService.execute(() -> {
-            try {
-                locationRepository.updateLocation(location.getLatitude(), location.getLongitude());
-                
-                // Check for nearby stores and radius entries
-                checkNearbyStores(location);
-                
-                // Check for radius timeouts
-                checkRadiusTimeouts();
-                
-            } catch (Exception e) {
-                // Handle error
+        pipeline.offer(location);
+    }
+
+    /**
+     * Pick the trajectory filter up where the history left off, so a restart doesn't
+     * log the first fix again when the user hasn't moved; tracking executor only
+     */
+    private void resumeTrajectory() {
+        try {
+            List<TrackPoint> recent = locationHistory.read(clock.currentTimeMillis() - TRAJECTORY_RESUME_MS);
+            if (recent.size() >= 2) {
+                trajectory.resume(recent.get(recent.size() - 2), recent.get(recent.size() - 1));
             }
-        });
+        } catch (IOException e) {
+            // Handle error
+        }
+    }
+
+    /**
+     * Evaluation stage: runs on the tracking executor for the newest fix only
+     */
+    private void evaluateFix(Location location) {
+        try {
+            if (trajectory.offer(location.getLatitude(), location.getLongitude(), location.getTime())) {
+                TrackPoint point = new TrackPoint(location.getLatitude(), location.getLongitude(), location.getTime());
+
+                // Update location in repository; only the newest pending upload is sent
+                pipeline.runConflatedEffect("location-upload", () ->
+                    locationRepository.updateLocation(point.getLatitude(), point.getLongitude()));
+                pipeline.runEffect(() -> {
+                    try {
+                        locationHistory.append(point);
+                    } catch (IOException e) {
+                        // Handle error
+                    }
+                });
+            }
+
+            // Check for nearby stores and radius entries
+            checkNearbyStores(location);
+
+        } catch (Exception e) {
+            // Handle error
+        }
     }
 
     private void checkNearbyStores(Location userLocation) {
         try {
-            List<Store> nearbyStores = locationRepository.getNearbyStores(
-                userLocation.getLatitude(), 
-                userLocation.getLongitude(), 
-                1000 // 1km radius
-            );
+            float accuracy = userLocation.hasAccuracy() ? userLocation.getAccuracy() : 0;
+            radiusEngine.evaluate(userLocation.getLatitude(), userLocation.getLongitude(),
+                    accuracy, userLocation.getTime());
 
-            for (Store store : nearbyStores) {
-                if (store.isRadiusEnabled()) {
-                    boolean isInRadius = isUserInStoreRadius(userLocation, store);
-                    handleRadiusChange(store, isInRadius);
-                }
-            }
+            updateSamplingPlan(userLocation);
         } catch (Exception e) {
             // Handle error
         }
     }
 
-    private boolean isUserInStoreRadius(Location userLocation, Store store) {
-        if (!store.isLocationValid()) return false;
-        
-        float[] results = new float[1];
-        android.location.Location.distanceBetween(
-            userLocation.getLatitude(), userLocation.getLongitude(),
-            store.getLatitude(), store.getLongitude(),
-            results
-        );
-        
-        return results[0] <= store.getRadius();
+    private RadiusCreditEngine.Gateway createRadiusGateway() {
+        return new RadiusCreditEngine.Gateway() {
+            @Override
+            public List<Store> getNearbyStores(double latitude, double longitude, int radiusMeters) {
+                return locationRepository.getNearbyStores(latitude, longitude, radiusMeters);
+            }
+
+            @Override
+            public boolean deductRadiusCredits(String storeId, int credits) {
+                // Provisional until the batch result comes back; a rejection revokes the entry
+                radiusCredits.deduct(storeId, credits);
+                return true;
+            }
+
+            @Override
+            public void returnRadiusCredits(String storeId) {
+                radiusCredits.refund(storeId);
+            }
+        };
     }
 
-    private void handleRadiusChange(Store store, boolean isInRadius) {
-        String storeId = store.getId();
-        boolean wasInRadius = radiusEntryTimes.containsKey(storeId);
-        
-        if (isInRadius && !wasInRadius) {
-            // User entered radius
-            enterStoreRadius(store);
-        } else if (!isInRadius && wasInRadius) {
-            // User exited radius
-            exitStoreRadius(store);
+    /**
+     * Deliver one compacted batch of radius operations
+     * @return ids of the operations the server rejected
+     */
+    private Set<String> sendRadiusOperations(List<RadiusCreditQueue.Operation> operations) throws IOException {
+        List<ApiService.RadiusOperation> batch = new ArrayList<>(operations.size());
+        for (RadiusCreditQueue.Operation op : operations) {
+            batch.add(new ApiService.RadiusOperation(op.id, op.type, op.storeId, op.credits, op.entryId,
+                    op.createdAt));
         }
-    }
+        Response<ApiService.ApiResponse<ApiService.RadiusOperationBatchResponse>> response =
+                ApiClient.getInstance(this).getApiService()
+                        .submitRadiusOperations(new ApiService.RadiusOperationBatch(batch)).execute();
 
-    private void enterStoreRadius(Store store) {
-        String storeId = store.getId();
-        long currentTime = System.currentTimeMillis();
-        
-        // Deduct credits immediately
-        boolean creditsDeducted = locationRepository.deductRadiusCredits(storeId, store.getCreditDeduction());
-        
-        if (creditsDeducted) {
-            radiusEntryTimes.put(storeId, currentTime);
-            
-            // Send notification
-            sendRadiusNotification(store.getName(), "You entered the store radius. " + 
-                                 store.getCreditDeduction() + " credits deducted.");
+        if (isBatchRefused(response.code())) {
+            // Resending cannot help until the app or endpoint changes; park the batch
+            throw new RadiusCreditQueue.BatchRejectedException("Radius operation batch refused: " + response.code());
+        }
+        ApiService.ApiResponse<ApiService.RadiusOperationBatchResponse> body = response.body();
+        if (!response.isSuccessful() || body == null || !body.isSuccess() || body.getData() == null) {
+            throw new IOException("Radius operation batch failed: " + response.code());
         }
+        Set<String> rejected = new HashSet<>();
+        if (body.getData().getRejected() != null) {
+            rejected.addAll(body.getData().getRejected());
+        }
+        return rejected;
     }
 
-    private void exitStoreRadius(Store store) {
-        String storeId = store.getId();
-        radiusEntryTimes.remove(storeId);
-        
-        // User left before timeout - credits are kept
-        sendRadiusNotification(store.getName(), "You left the store radius.");
+    /**
+     * Client errors that resending the same batch cannot fix, e.g. a missing endpoint
+     * or a refused payload; an expired token (401), timeouts and rate limiting are retried
+     */
+    private static boolean isBatchRefused(int code) {
+        return code >= 400 && code < 500 && code != 401 && code != 408 && code != 429;
     }
 
-    private void checkRadiusTimeouts() {
-        long currentTime = System.currentTimeMillis();
-        List<String> timedOutStores = new ArrayList<>();
-        
-        for (java.util.Map.Entry<String, Long> entry : radiusEntryTimes.entrySet()) {
-            long timeInRadius = currentTime - entry.getValue();
-            
-            if (timeInRadius >= RADIUS_TIMEOUT_MS) {
-                timedOutStores.add(entry.getKey());
+    private RadiusCreditEngine.Listener createRadiusListener() {
+        return new RadiusCreditEngine.Listener() {
+            @Override
+            public void onRadiusEntered(Store store) {
+                // The deduct is only queued; notified once the server applies it
             }
-        }
-        
-        // Return credits for timed-out stores
-        for (String storeId : timedOutStores) {
-            returnRadiusCredits(storeId);
-            radiusEntryTimes.remove(storeId);
+
+            @Override
+            public void onRadiusExited(Store store) {
+                sendRadiusNotification(store.getName(), "You left the store radius.");
+            }
+
+            @Override
+            public void onRadiusCreditsReturned(String storeId) {
+                // The refund is only queued, and may cancel an unsent deduct; notified once applied
+            }
+
+            @Override
+            public void onTimeoutsPending() {
+                startRadiusTimeoutTicker();
+            }
+        };
+    }
+
+    private RadiusCreditQueue.Listener createRadiusCreditListener() {
+        return new RadiusCreditQueue.Listener() {
+            @Override
+            public void onApplied(RadiusCreditQueue.Operation operation) {
+                Store store = locationRepository.getStoreById(operation.storeId);
+                if (store == null) return;
+                if (RadiusCreditQueue.TYPE_DEDUCT.equals(operation.type)) {
+                    sendRadiusNotification(store.getName(), "You entered the store radius. " +
+                            operation.credits + " credits deducted.");
+                } else {
+                    sendRadiusNotification(store.getName(),
+                        "Radius timeout: credits returned for not visiting the store.");
+                }
+            }
+
+            @Override
+            public void onEntryRejected(RadiusCreditQueue.Operation deduct) {
+                pipeline.runOnEvaluationThread(() -> radiusEngine.revokeEntry(deduct.storeId));
+            }
+        };
+    }
+
+    private void startRadiusTimeoutTicker() {
+        if (radiusTimeoutTicker == null) {
+            long tickMs = radiusEngine.getTimeoutTickMs();
+            radiusTimeoutTicker = executorService.scheduleWithFixedDelay(
+                    this::tickRadiusTimeouts, tickMs, tickMs, TimeUnit.MILLISECONDS);
         }
     }
 
-    private void returnRadiusCredits(String storeId) {
+    /**
+     * Runs on the tracking executor only while radius entries are pending,
+     * so refunds happen at each store's deadline even without new fixes
+     */
+    private void tickRadiusTimeouts() {
         try {
-            locationRepository.returnRadiusCredits(storeId);
-            
-            // Send notification
-            Store store = locationRepository.getStoreById(storeId);
-            if (store != null) {
-                sendRadiusNotification(store.getName(), 
-                    "Radius timeout: credits returned for not visiting the store.");
-            }
+            radiusEngine.advanceTimeouts();
         } catch (Exception e) {
             // Handle error
         }
+
+        if (radiusEngine.getPendingTimeouts() == 0 && radiusTimeoutTicker != null) {
+            radiusTimeoutTicker.cancel(false);
+            radiusTimeoutTicker = null;
+        }
     }
 
     private void sendRadiusNotification(String storeName, String message) {
@@ -336,4 +530,41 @@ public class LocationTrackingService extends Service {
     public boolean isTracking() {
         return isTracking;
     }
-}
\ No newline at end of file
+
+    public LocationPipeline.Metrics getPipelineMetrics() {
+        return pipeline.getMetrics();
+    }
+
+    public int getEffectQueueDepth() {
+        return pipeline.getEffectQueueDepth();
+    }
+
+    /**
+     * Locally recorded track since a time, oldest first; read off the main thread
+     */
+    public List<TrackPoint> getLocationHistory(long sinceMs) throws IOException {
+        return locationHistory.read(sinceMs);
+    }
+
+    public LocationSamplingPolicy.SamplingPlan getSamplingPlan() {
+        return samplingPlan;
+    }
+
+    /**
+     * Number of enter/exit flips suppressed by the radius hysteresis
+     */
+    public long getSuppressedRadiusTransitions() {
+        return radiusEngine.getSuppressedTransitions();
+    }
+
+    /**
+     * Radius operations that cancelled out locally and were never sent
+     */
+    public long getNettedRadiusOperations() {
+        return radiusCredits.getNetted();
+    }
+
+    public int getPendingRadiusOperations() {
+        return radiusCredits.getPendingCount();
+    }
+}
@@ -10,9 +10,11 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.adx.integration.data.model.Advertisement;
 import com.adx.integration.databinding.ItemAdvertisementBinding;
+import com.adx.integration.utils.MediaCache;
 import com.bumptech.glide.Glide;
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
 import com.google.android.exoplayer2.ui.PlayerView;
 
 import java.util.List;
@@ -167,7 +169,10 @@ public class AdvertisementAdapter extends RecyclerView.Adapter<AdvertisementAdap
 
         private void initializeExoPlayer(String videoUrl) {
             if (exoPlayer == null) {
-                exoPlayer = new ExoPlayer.Builder(context).build();
+                // Read through the shared cache so prefetched video starts without a network round trip
+                exoPlayer = new ExoPlayer.Builder(context)
+                        .setMediaSourceFactory(new DefaultMediaSourceFactory(MediaCache.dataSourceFactory(context)))
+                        .build();
                 binding.videoPlayer.setPlayer(exoPlayer);
             }
 
@@ -0,0 +1,43 @@
+package com.adx.integration.ui.main;
+
+import com.adx.integration.data.remote.ApiService;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Dashboard sections that users/dashboard may omit and that have an endpoint of their own
+ * Missing sections are loaded in parallel, in the order listed here
+ */
+final class DashboardSections {
+
+    static final String ADS = "ads";
+    static final String BALANCE = "balance";
+    static final String STORES = "stores";
+    static final String STATS = "stats";
+
+    private DashboardSections() {
+    }
+
+    /**
+     * Sections to load separately because the dashboard response lacks them
+     * @param dashboard the dashboard response, or null if the call failed
+     * @param hasLocation nearby stores need a last known location
+     */
+    static Set<String> missing(ApiService.DashboardData dashboard, boolean hasLocation) {
+        Set<String> missing = new LinkedHashSet<>();
+        if (dashboard == null || dashboard.getAvailableAds() == null) {
+            missing.add(ADS);
+        }
+        if (dashboard == null || dashboard.getCreditBalance() == null) {
+            missing.add(BALANCE);
+        }
+        if ((dashboard == null || dashboard.getNearbyStores() == null) && hasLocation) {
+            missing.add(STORES);
+        }
+        if (dashboard == null || dashboard.getCreditStats() == null) {
+            missing.add(STATS);
+        }
+        return missing;
+    }
+}
@@ -2,17 +2,26 @@ package com.adx.integration.ui.main;
 
 import android.app.Application;
 import android.location.Location;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
 
 import com.adx.integration.data.model.User;
 import com.adx.integration.data.model.Advertisement;
 import com.adx.integration.data.model.CreditBalance;
 import com.adx.integration.data.model.CreditTransaction;
 import com.adx.integration.data.model.Store;
+import com.adx.integration.data.outbox.InteractionOutbox;
+import com.adx.integration.data.outbox.OutboxEntry;
+import com.adx.integration.data.remote.ApiClient;
+import com.adx.integration.data.remote.ApiService;
+import com.adx.integration.data.remote.FieldSets;
 import com.adx.integration.data.repository.AdRepository;
 import com.adx.integration.data.repository.CreditRepository;
 import com.adx.integration.data.repository.UserRepository;
@@ -22,13 +31,21 @@ import com.adx.integration.service.LocationTrackingService;
 import com.adx.integration.utils.NetworkUtils;
 import com.adx.integration.utils.PreferencesManager;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import dagger.hilt.android.lifecycle.HiltViewModel;
+import retrofit2.Call;
+import retrofit2.Response;
 
 /**
  * ViewModel for MainActivity managing UI-related data
@@ -36,18 +53,29 @@ import dagger.hilt.android.lifecycle.HiltViewModel;
 @HiltViewModel
 public class MainViewModel extends AndroidViewModel {
 
+    private static final String TAG = "MainViewModel";
+    private static final long DASHBOARD_DEADLINE_MS = 4000; // 4 seconds
+    private static final long SECTION_DEADLINE_MS = 5000; // 5 seconds
+    private static final int NEARBY_STORES_RADIUS = 1000; // 1km
+
     private final UserRepository userRepository;
     private final AdRepository adRepository;
     private final CreditRepository creditRepository;
     private final LocationRepository locationRepository;
     private final PreferencesManager preferencesManager;
+    private final ApiService apiService;
+    private final InteractionOutbox outbox;
+    private final Observer<Integer> outboxDrained;
     private final ExecutorService executorService;
+    private final ScheduledExecutorService deadlineScheduler;
 
     // LiveData for UI observation
     private final MutableLiveData<User> user = new MutableLiveData<>();
     private final MutableLiveData<Integer> availableAdCount = new MutableLiveData<>(0);
     private final MutableLiveData<CreditBalance> creditBalance = new MutableLiveData<>();
     private final MutableLiveData<List<Store>> nearbyStores = new MutableLiveData<>();
+    private final MutableLiveData<ApiService.CreditStats> creditStats = new MutableLiveData<>();
+    private final MutableLiveData<List<ApiService.RadiusEntry>> radiusEntries = new MutableLiveData<>();
     private final MutableLiveData<String> error = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
 
@@ -68,9 +96,27 @@ public class MainViewModel extends AndroidViewModel {
         this.creditRepository = creditRepository;
         this.locationRepository = locationRepository;
         this.preferencesManager = preferencesManager;
+        this.apiService = ApiClient.getInstance(application).getApiService();
+        this.outbox = InteractionOutbox.getInstance(application);
         this.executorService = Executors.newFixedThreadPool(4);
+        this.deadlineScheduler = Executors.newSingleThreadScheduledExecutor();
         
         initializeServices();
+
+        // Queued interactions change the balance; reload it whenever the outbox empties
+        outboxDrained = new Observer<Integer>() {
+            private int previous;
+
+            @Override
+            public void onChanged(Integer pending) {
+                int current = pending != null ? pending : 0;
+                if (previous > 0 && current == 0) {
+                    executorService.execute(() -> loadCreditBalance());
+                }
+                previous = current;
+            }
+        };
+        outbox.getQueueLength().observeForever(outboxDrained);
     }
 
     private void initializeServices() {
@@ -85,6 +131,8 @@ public class MainViewModel extends AndroidViewModel {
         executorService.execute(() -> {
             try {
                 String token = preferencesManager.getAuthToken();
+                // Picks up a token saved by the login flow since the client was created
+                ApiClient.getInstance(getApplication()).setAuthToken(token);
                 if (token == null || token.isEmpty()) {
                     user.postValue(null);
                     return;
@@ -113,43 +161,93 @@ public class MainViewModel extends AndroidViewModel {
             return;
         }
 
+        isLoading.postValue(true);
         executorService.execute(() -> {
             try {
-                isLoading.postValue(true);
-                
-                // Load user dashboard data
                 loadDashboardData();
-                
-                // Load available ads
-                loadAvailableAds();
-                
-                // Load credit balance
-                loadCreditBalance();
-                
-                // Load nearby stores if location is available
-                loadNearbyStores();
-                
             } catch (Exception e) {
                 error.postValue("Failed to load user data: " + e.getMessage());
                 loadCachedData();
-            } finally {
                 isLoading.postValue(false);
             }
         });
     }
 
+    /**
+     * Hydrate all sections from users/dashboard in one round trip, then load the
+     * sections it lacks concurrently, each with its own deadline and cache fallback
+     */
     private void loadDashboardData() {
+        long startedAt = SystemClock.elapsedRealtime();
+        ApiService.DashboardData dashboard = fetchDashboard();
+        long dashboardMs = SystemClock.elapsedRealtime() - startedAt;
+        Location lastLocation = locationRepository.getLastLocation();
+        Set<String> missing = DashboardSections.missing(dashboard, lastLocation != null);
+        if (dashboard == null) {
+            dashboard = new ApiService.DashboardData();
+        }
+
+        SectionLoader sections = new SectionLoader(executorService, deadlineScheduler, SystemClock::elapsedRealtime);
+        if (dashboard.getUser() != null) {
+            user.postValue(dashboard.getUser());
+        }
+        if (missing.contains(DashboardSections.ADS)) {
+            sections.add(DashboardSections.ADS, SECTION_DEADLINE_MS, () -> fetchAvailableAds(lastLocation),
+                    ads -> availableAdCount.postValue(ads != null ? ads.size() : 0), this::loadCachedAds);
+        } else {
+            availableAdCount.postValue(dashboard.getAvailableAds().size());
+        }
+        if (missing.contains(DashboardSections.BALANCE)) {
+            sections.add(DashboardSections.BALANCE, SECTION_DEADLINE_MS, creditRepository::getCreditBalanceSync,
+                    creditBalance::postValue, this::loadCachedCreditBalance);
+        } else {
+            creditBalance.postValue(dashboard.getCreditBalance());
+        }
+        if (missing.contains(DashboardSections.STORES)) {
+            sections.add(DashboardSections.STORES, SECTION_DEADLINE_MS, () -> fetchNearbyStores(NEARBY_STORES_RADIUS),
+                    nearbyStores::postValue, this::loadCachedStores);
+        } else if (dashboard.getNearbyStores() != null) {
+            nearbyStores.postValue(dashboard.getNearbyStores());
+        }
+        if (missing.contains(DashboardSections.STATS)) {
+            // No cached copy; the previous value stays on screen
+            sections.add(DashboardSections.STATS, SECTION_DEADLINE_MS, this::fetchCreditStats,
+                    creditStats::postValue, () -> { });
+        } else {
+            creditStats.postValue(dashboard.getCreditStats());
+        }
+        // Radius entries have no endpoint of their own
+        if (dashboard.getRadiusEntries() != null) {
+            radiusEntries.postValue(dashboard.getRadiusEntries());
+        }
+
+        sections.start((timingsMs, fellBack) -> {
+            isLoading.postValue(false);
+            if (!fellBack.isEmpty()) {
+                error.postValue("Showing cached data for: " + TextUtils.join(", ", fellBack));
+            }
+            Log.d(TAG, "Time to content: dashboard " + dashboardMs + " ms, sections " + timingsMs
+                    + ", total " + (SystemClock.elapsedRealtime() - startedAt) + " ms");
+        });
+    }
+
+    private ApiService.DashboardData fetchDashboard() {
         try {
-            // This would load comprehensive dashboard data from API
-            // For now, we'll load individual components
+            Call<ApiService.ApiResponse<ApiService.DashboardData>> call = apiService.getDashboardData();
+            call.timeout().timeout(DASHBOARD_DEADLINE_MS, TimeUnit.MILLISECONDS);
+            Response<ApiService.ApiResponse<ApiService.DashboardData>> response = call.execute();
+            if (response.isSuccessful() && response.body() != null && response.body().isSuccess()) {
+                return response.body().getData();
+            }
         } catch (Exception e) {
-            error.postValue("Failed to load dashboard: " + e.getMessage());
+            // Handle error
         }
+        return null;
     }
 
     private void loadAvailableAds() {
         try {
-            List<Advertisement> ads = adRepository.getAvailableAdsSync();
+            List<Advertisement> ads = fetchAvailableAds(locationRepository.getLastLocation());
             availableAdCount.postValue(ads != null ? ads.size() : 0);
         } catch (Exception e) {
             error.postValue("Failed to load ads: " + e.getMessage());
@@ -167,15 +265,46 @@ public class MainViewModel extends AndroidViewModel {
         }
     }
 
+    private ApiService.CreditStats fetchCreditStats() throws IOException {
+        Response<ApiService.ApiResponse<ApiService.CreditStats>> response =
+                apiService.getCreditStats().execute();
+        if (!response.isSuccessful() || response.body() == null || !response.body().isSuccess()) {
+            throw new IOException("Credit stats request failed: " + response.code());
+        }
+        return response.body().getData();
+    }
+
+    /**
+     * Only the fields the ad cards show; see {@link FieldSets#AD_LIST}
+     */
+    private List<Advertisement> fetchAvailableAds(Location location) throws IOException {
+        Double latitude = location != null ? location.getLatitude() : null;
+        Double longitude = location != null ? location.getLongitude() : null;
+        Response<ApiService.ApiResponse<List<Advertisement>>> response =
+                apiService.getAvailableAds(latitude, longitude, null, null, FieldSets.AD_LIST).execute();
+        if (!response.isSuccessful() || response.body() == null || !response.body().isSuccess()) {
+            throw new IOException("Available ads request failed: " + response.code());
+        }
+        return response.body().getData();
+    }
+
+    /**
+     * Only the fields the store list shows; see {@link FieldSets#STORE_LIST}
+     */
+    private List<Store> fetchNearbyStores(int radiusMeters) throws IOException {
+        Response<ApiService.ApiResponse<List<Store>>> response =
+                apiService.getNearbyStores(radiusMeters, FieldSets.STORE_LIST).execute();
+        if (!response.isSuccessful() || response.body() == null || !response.body().isSuccess()) {
+            throw new IOException("Nearby stores request failed: " + response.code());
+        }
+        return response.body().getData();
+    }
+
     private void loadNearbyStores() {
         Location lastLocation = locationRepository.getLastLocation();
         if (lastLocation != null) {
             try {
-                List<Store> stores = adRepository.getNearbyStoresSync(
-                    lastLocation.getLatitude(),
-                    lastLocation.getLongitude(),
-                    1000 // 1km radius
-                );
+                List<Store> stores = fetchNearbyStores(NEARBY_STORES_RADIUS);
                 nearbyStores.postValue(stores);
             } catch (Exception e) {
                 error.postValue("Failed to load nearby stores: " + e.getMessage());
@@ -276,25 +405,17 @@ public class MainViewModel extends AndroidViewModel {
     public void interactWithAd(Advertisement ad, String interactionType) {
         executorService.execute(() -> {
             try {
-                isLoading.postValue(true);
-                
                 switch (interactionType) {
                     case "receive":
-                        adRepository.receiveAd(ad.getAdId());
+                        outbox.enqueue(OutboxEntry.TYPE_RECEIVE, ad.getAdId(), currentLocationData());
                         break;
                     case "click":
-                        adRepository.clickAd(ad.getAdId());
+                        outbox.enqueue(OutboxEntry.TYPE_CLICK, ad.getAdId(), currentLocationData());
                         break;
                 }
-                
-                // Refresh data after interaction
-                loadAvailableAds();
-                loadCreditBalance();
-                
+                // Balance is refreshed once the outbox has delivered it
             } catch (Exception e) {
                 error.postValue("Ad interaction failed: " + e.getMessage());
-            } finally {
-                isLoading.postValue(false);
             }
         });
     }
@@ -305,22 +426,24 @@ public class MainViewModel extends AndroidViewModel {
     public void visitStore(Store store) {
         executorService.execute(() -> {
             try {
-                isLoading.postValue(true);
-                
-                adRepository.visitStore(store.getId());
-                
-                // Refresh data after visit
-                loadCreditBalance();
+                outbox.enqueue(OutboxEntry.TYPE_VISIT, store.getId(), currentLocationData());
                 loadNearbyStores();
-                
             } catch (Exception e) {
                 error.postValue("Store visit failed: " + e.getMessage());
-            } finally {
-                isLoading.postValue(false);
             }
         });
     }
 
+    private Map<String, Object> currentLocationData() {
+        Location location = locationRepository.getLastLocation();
+        if (location == null) return null;
+        Map<String, Object> data = new HashMap<>();
+        data.put("latitude", location.getLatitude());
+        data.put("longitude", location.getLongitude());
+        data.put("accuracy", location.getAccuracy());
+        return data;
+    }
+
     /**
      * Purchase credits
      */
@@ -349,6 +472,7 @@ public class MainViewModel extends AndroidViewModel {
         executorService.execute(() -> {
             try {
                 preferencesManager.clearAuthToken();
+                ApiClient.getInstance(getApplication()).setAuthToken(null);
                 userRepository.clearUserData();
                 user.postValue(null);
             } catch (Exception e) {
@@ -374,6 +498,18 @@ public class MainViewModel extends AndroidViewModel {
         return nearbyStores;
     }
 
+    public LiveData<ApiService.CreditStats> getCreditStats() {
+        return creditStats;
+    }
+
+    public LiveData<List<ApiService.RadiusEntry>> getRadiusEntries() {
+        return radiusEntries;
+    }
+
+    public LiveData<Integer> getPendingInteractionCount() {
+        return outbox.getQueueLength();
+    }
+
     public LiveData<String> getError() {
         return error;
     }
@@ -385,7 +521,9 @@ public class MainViewModel extends AndroidViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
+        outbox.getQueueLength().removeObserver(outboxDrained);
         executorService.shutdown();
+        deadlineScheduler.shutdownNow();
         if (adSyncService != null) {
             adSyncService.stopSync();
         }
@@ -0,0 +1,123 @@
+package com.adx.integration.ui.main;
+
+import com.adx.integration.utils.Clock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Loads independent screen sections concurrently, each under its own deadline
+ * A section is published as soon as it resolves; one that fails or misses its deadline
+ * runs its own fallback (usually the cache) without holding up the others
+ */
+class SectionLoader {
+
+    interface Listener {
+        /**
+         * Every section was published or fell back
+         * @param timingsMs time from start until each section settled
+         * @param fellBack sections that failed or timed out
+         */
+        void onAllSettled(Map<String, Long> timingsMs, Set<String> fellBack);
+    }
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService deadlines;
+    private final Clock clock;
+    private final List<Section<?>> sections = new ArrayList<>();
+
+    /**
+     * @param clock source for the per-section timings; elapsed time is enough
+     */
+    SectionLoader(ExecutorService executor, ScheduledExecutorService deadlines, Clock clock) {
+        this.executor = executor;
+        this.deadlines = deadlines;
+        this.clock = clock;
+    }
+
+    <T> SectionLoader add(String name, long deadlineMs, Callable<T> load, Consumer<T> publish, Runnable fallback) {
+        sections.add(new Section<>(name, deadlineMs, load, publish, fallback));
+        return this;
+    }
+
+    void start(Listener listener) {
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        Set<String> fellBack = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        if (sections.isEmpty()) {
+            listener.onAllSettled(timings, fellBack);
+            return;
+        }
+
+        long startedAt = clock.currentTimeMillis();
+        AtomicInteger pending = new AtomicInteger(sections.size());
+        for (Section<?> section : sections) {
+            section.start(() -> {
+                timings.put(section.name, clock.currentTimeMillis() - startedAt);
+                if (section.fellBack) {
+                    fellBack.add(section.name);
+                }
+                if (pending.decrementAndGet() == 0) {
+                    listener.onAllSettled(timings, fellBack);
+                }
+            });
+        }
+    }
+
+    private final class Section<T> {
+        final String name;
+        final long deadlineMs;
+        final Callable<T> load;
+        final Consumer<T> publish;
+        final Runnable fallback;
+        final AtomicBoolean settled = new AtomicBoolean();
+        volatile boolean fellBack;
+
+        Section(String name, long deadlineMs, Callable<T> load, Consumer<T> publish, Runnable fallback) {
+            this.name = name;
+            this.deadlineMs = deadlineMs;
+            this.load = load;
+            this.publish = publish;
+            this.fallback = fallback;
+        }
+
+        void start(Runnable onSettled) {
+            Future<?> future = executor.submit(() -> {
+                T value;
+                try {
+                    value = load.call();
+                } catch (Exception e) {
+                    fallBack(onSettled);
+                    return;
+                }
+                if (settled.compareAndSet(false, true)) {
+                    publish.accept(value);
+                    onSettled.run();
+                }
+            });
+            deadlines.schedule(() -> {
+                if (settled.get()) return;
+                future.cancel(true);
+                fallBack(onSettled);
+            }, deadlineMs, TimeUnit.MILLISECONDS);
+        }
+
+        private void fallBack(Runnable onSettled) {
+            if (!settled.compareAndSet(false, true)) return;
+            fellBack = true;
+            fallback.run();
+            onSettled.run();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.adx.integration.utils;
+
+/**
+ * Source of wall-clock time, injectable so time-based logic can run against a fake clock
+ */
+public interface Clock {
+
+    Clock SYSTEM = System::currentTimeMillis;
+
+    long currentTimeMillis();
+}
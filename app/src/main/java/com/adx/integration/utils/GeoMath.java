@@ -0,0 +1,84 @@
+package com.adx.integration.utils;
+
+/**
+ * Pure-Java geodesic helpers for radius checks
+ * Cheap filters run first: a degree bounding box rejects far candidates,
+ * an equirectangular approximation settles clear cases, and the exact
+ * haversine distance is only computed near the fence boundary
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_METERS = 6371008.8; // mean radius
+    public static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180.0;
+
+    // Relative error band around the radius where the approximation is not trusted
+    private static final double BOUNDARY_TOLERANCE = 0.005;
+
+    private GeoMath() {
+    }
+
+    /**
+     * Great-circle distance in meters using the haversine formula
+     */
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dPhi = phi2 - phi1;
+        double dLambda = Math.toRadians(normalizeLongitudeDelta(lon2 - lon1));
+
+        double sinPhi = Math.sin(dPhi / 2);
+        double sinLambda = Math.sin(dLambda / 2);
+        double a = sinPhi * sinPhi + Math.cos(phi1) * Math.cos(phi2) * sinLambda * sinLambda;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Equirectangular distance approximation in meters
+     * Accurate to well under 1% for the few-kilometre distances used by store fences
+     */
+    public static double approxDistanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double x = normalizeLongitudeDelta(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = lat2 - lat1;
+        return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * Check whether the second point is within radiusMeters of the first
+     */
+    public static boolean isWithinRadius(double lat1, double lon1, double lat2, double lon2, double radiusMeters) {
+        if (radiusMeters < 0) return false;
+
+        // Degree bounding box: latitude degrees have a fixed length, and a
+        // longitude degree is never shorter than at the pole-most of the two points
+        double radiusDegrees = radiusMeters / METERS_PER_DEGREE;
+        if (Math.abs(lat2 - lat1) > radiusDegrees) return false;
+        double minCos = Math.cos(Math.toRadians(Math.max(Math.abs(lat1), Math.abs(lat2))));
+        if (Math.abs(normalizeLongitudeDelta(lon2 - lon1)) * minCos > radiusDegrees) return false;
+
+        double approx = approxDistanceMeters(lat1, lon1, lat2, lon2);
+        if (approx < radiusMeters * (1 - BOUNDARY_TOLERANCE)) return true;
+        if (approx > radiusMeters * (1 + BOUNDARY_TOLERANCE)) return false;
+
+        return distanceMeters(lat1, lon1, lat2, lon2) <= radiusMeters;
+    }
+
+    /**
+     * Latitude span in degrees covered by a distance
+     */
+    public static double latitudeSpanDegrees(double meters) {
+        return meters / METERS_PER_DEGREE;
+    }
+
+    /**
+     * Longitude span in degrees covered by a distance at a given latitude
+     */
+    public static double longitudeSpanDegrees(double meters, double latitude) {
+        return meters / (METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians(latitude)), 0.01));
+    }
+
+    private static double normalizeLongitudeDelta(double delta) {
+        if (delta > 180) return delta - 360;
+        if (delta < -180) return delta + 360;
+        return delta;
+    }
+}
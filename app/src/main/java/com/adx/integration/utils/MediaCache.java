@@ -0,0 +1,52 @@
+package com.adx.integration.utils;
+
+import android.content.Context;
+
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import java.io.File;
+
+/**
+ * Process-wide video cache shared by playback and prefetching
+ * ExoPlayer allows only one SimpleCache per directory, so every player and
+ * prefetcher must go through this class
+ */
+public final class MediaCache {
+
+    private static final String CACHE_DIR = "media_cache";
+    private static final long MAX_CACHE_BYTES = 200L * 1024 * 1024; // 200 MB
+
+    private static volatile SimpleCache cache;
+
+    private MediaCache() {
+    }
+
+    public static SimpleCache getInstance(Context context) {
+        if (cache == null) {
+            synchronized (MediaCache.class) {
+                if (cache == null) {
+                    Context appContext = context.getApplicationContext();
+                    cache = new SimpleCache(
+                            new File(appContext.getCacheDir(), CACHE_DIR),
+                            new LeastRecentlyUsedCacheEvictor(MAX_CACHE_BYTES),
+                            new StandaloneDatabaseProvider(appContext));
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Data source that serves cached bytes first and fills the cache from the network
+     */
+    public static CacheDataSource.Factory dataSourceFactory(Context context) {
+        return new CacheDataSource.Factory()
+                .setCache(getInstance(context))
+                .setUpstreamDataSourceFactory(new DefaultHttpDataSource.Factory())
+                .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.adsbubble.data
+
+/**
+ * Minimal geohash encoder/decoder used to key ad sync state by region
+ * Precision 5 is a ~4.9 km x 4.9 km cell, precision 6 ~1.2 km x 0.6 km
+ */
+object Geohash {
+    private const val BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz"
+
+    data class Bounds(val minLat: Double, val maxLat: Double, val minLon: Double, val maxLon: Double) {
+        val centerLat get() = (minLat + maxLat) / 2
+        val centerLon get() = (minLon + maxLon) / 2
+    }
+
+    fun encode(lat: Double, lon: Double, precision: Int): String {
+        require(precision in 1..12) { "precision must be between 1 and 12" }
+        var minLat = -90.0; var maxLat = 90.0
+        var minLon = -180.0; var maxLon = 180.0
+        val hash = StringBuilder(precision)
+        var evenBit = true
+        var bit = 0
+        var ch = 0
+        while (hash.length < precision) {
+            if (evenBit) {
+                val mid = (minLon + maxLon) / 2
+                if (lon >= mid) { ch = ch shl 1 or 1; minLon = mid } else { ch = ch shl 1; maxLon = mid }
+            } else {
+                val mid = (minLat + maxLat) / 2
+                if (lat >= mid) { ch = ch shl 1 or 1; minLat = mid } else { ch = ch shl 1; maxLat = mid }
+            }
+            evenBit = !evenBit
+            if (++bit == 5) {
+                hash.append(BASE32[ch])
+                bit = 0
+                ch = 0
+            }
+        }
+        return hash.toString()
+    }
+
+    fun bounds(hash: String): Bounds {
+        var minLat = -90.0; var maxLat = 90.0
+        var minLon = -180.0; var maxLon = 180.0
+        var evenBit = true
+        for (c in hash) {
+            val idx = BASE32.indexOf(c)
+            require(idx >= 0) { "Invalid geohash: $hash" }
+            for (n in 4 downTo 0) {
+                val bitSet = (idx shr n) and 1 == 1
+                if (evenBit) {
+                    val mid = (minLon + maxLon) / 2
+                    if (bitSet) minLon = mid else maxLon = mid
+                } else {
+                    val mid = (minLat + maxLat) / 2
+                    if (bitSet) minLat = mid else maxLat = mid
+                }
+                evenBit = !evenBit
+            }
+        }
+        return Bounds(minLat, maxLat, minLon, maxLon)
+    }
+}
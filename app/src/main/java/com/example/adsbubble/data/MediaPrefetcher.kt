@@ -0,0 +1,110 @@
+package com.example.adsbubble.data
+
+import android.content.Context
+import android.net.ConnectivityManager
+import android.net.NetworkCapabilities
+import android.net.Uri
+import coil.annotation.ExperimentalCoilApi
+import coil.imageLoader
+import coil.request.CachePolicy
+import coil.request.ImageRequest
+import coil.request.SuccessResult
+import com.adx.integration.utils.MediaCache
+import com.bumptech.glide.Glide
+import com.example.adsbubble.data.db.Ad
+import com.google.android.exoplayer2.upstream.DataSpec
+import com.google.android.exoplayer2.upstream.cache.CacheWriter
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+
+/**
+ * Warms the media caches for a store the user just entered, so its ads render
+ * straight from disk when the bubble is opened
+ *
+ * Thumbnails go into the disk caches of both image loaders: coil's for
+ * [com.example.adsbubble.ui.AdsAdapter] and Glide's for
+ * [com.adx.integration.ui.adapters.AdvertisementAdapter]. Nothing is decoded into
+ * memory, since the ads may never be shown. The first bytes of each video go into the
+ * shared [MediaCache]. Work stops once the byte budget is spent, and nothing is
+ * fetched on metered or slow networks
+ */
+class MediaPrefetcher(
+    private val context: Context,
+    private val budgetBytes: Long = DEFAULT_BUDGET_BYTES
+) {
+    var bytesPrefetched = 0L
+        private set
+
+    suspend fun prefetch(ads: List<Ad>) = withContext(Dispatchers.IO) {
+        if (!isGoodConnection()) return@withContext
+
+        var remaining = budgetBytes
+        // Thumbnails first: they are small and every ad shows one
+        for (ad in ads) {
+            if (remaining <= 0) break
+            val url = ad.imageUrl ?: continue
+            remaining -= prefetchCoilImage(url)
+            if (remaining <= 0) break
+            remaining -= prefetchGlideImage(url)
+        }
+        for (ad in ads) {
+            if (remaining <= 0) break
+            val url = ad.videoUrl ?: continue
+            remaining -= prefetchVideo(url, minOf(VIDEO_PREFIX_BYTES, remaining))
+        }
+        bytesPrefetched += budgetBytes - remaining.coerceAtLeast(0)
+    }
+
+    @OptIn(ExperimentalCoilApi::class)
+    private suspend fun prefetchCoilImage(url: String): Long {
+        val loader = context.imageLoader
+        val request = ImageRequest.Builder(context)
+            .data(url)
+            .memoryCachePolicy(CachePolicy.DISABLED)
+            .build()
+        val result = loader.execute(request)
+        if (result !is SuccessResult) return 0
+        val diskKey = result.diskCacheKey ?: return 0
+        return loader.diskCache?.openSnapshot(diskKey)?.use { it.data.toFile().length() } ?: 0
+    }
+
+    private fun prefetchGlideImage(url: String): Long {
+        return try {
+            // Source data only, which is what a remote load with the default strategy reads
+            Glide.with(context).downloadOnly().load(url).submit().get().length()
+        } catch (e: Exception) {
+            0
+        }
+    }
+
+    private fun prefetchVideo(url: String, maxBytes: Long): Long {
+        return try {
+            val dataSpec = DataSpec.Builder()
+                .setUri(Uri.parse(url))
+                .setPosition(0)
+                .setLength(maxBytes)
+                .build()
+            var cached = 0L
+            CacheWriter(MediaCache.dataSourceFactory(context).createDataSource(), dataSpec, null) { _, bytesCached, _ ->
+                cached = bytesCached
+            }.cache()
+            cached
+        } catch (e: Exception) {
+            0
+        }
+    }
+
+    private fun isGoodConnection(): Boolean {
+        val cm = context.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+        val caps = cm.getNetworkCapabilities(cm.activeNetwork) ?: return false
+        if (!caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)) return false
+        return caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED) ||
+            caps.linkDownstreamBandwidthKbps >= GOOD_BANDWIDTH_KBPS
+    }
+
+    companion object {
+        const val DEFAULT_BUDGET_BYTES = 8L * 1024 * 1024 // 8 MB per store entry
+        private const val VIDEO_PREFIX_BYTES = 1536L * 1024 // ~3 seconds at 4 Mbps
+        private const val GOOD_BANDWIDTH_KBPS = 10_000
+    }
+}
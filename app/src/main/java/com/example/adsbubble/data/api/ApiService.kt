@@ -3,6 +3,7 @@ package com.example.adsbubble.data.api
 import com.example.adsbubble.data.model.AdDto
 import okhttp3.MultipartBody
 import okhttp3.RequestBody
+import okhttp3.ResponseBody
 import retrofit2.http.*
 
 data class AdsResponse(val ads: List<AdDto>, val hash: String? = null)
@@ -11,6 +12,15 @@ interface ApiService {
     @GET("ads/nearby")
     suspend fun getNearbyAds(@Query("lat") lat: Double, @Query("lon") lon: Double, @Query("radius") radiusMiles: Double = 1.0): AdsResponse
 
+    /**
+     * Changes to a region since a cursor, as `{upserts: [AdDto], deleted: [token], cursor, full}`.
+     * When `full` is true (first sync or expired cursor) `upserts` is the complete set for the
+     * region. Streamed, since a region can hold far more ads than fit in memory
+     */
+    @Streaming
+    @GET("ads/delta")
+    suspend fun getAdsDelta(@Query("region") region: String, @Query("since") since: String?): ResponseBody
+
     @POST("auth/login")
     suspend fun login(@Body body: Map<String, String>): Map<String, String>
 
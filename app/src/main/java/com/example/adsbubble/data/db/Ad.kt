@@ -1,5 +1,6 @@
 package com.example.adsbubble.data.db
 
+import androidx.room.ColumnInfo
 import androidx.room.Entity
 import androidx.room.PrimaryKey
 
@@ -15,5 +16,7 @@ data class Ad(
     val latitude: Double?,
     val longitude: Double?,
     val bookmarked: Boolean = false,
-    val timestamp: Long = System.currentTimeMillis()
+    val timestamp: Long = System.currentTimeMillis(),
+    // Start time of the sync that last wrote the row; a full sync drops rows it did not reach
+    @ColumnInfo(defaultValue = "0") val syncedAt: Long = 0
 )
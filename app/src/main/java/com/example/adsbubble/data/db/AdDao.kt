@@ -3,6 +3,9 @@ package com.example.adsbubble.data.db
 import androidx.lifecycle.LiveData
 import androidx.room.*
 
+// SQLite limits bound variables per statement (999 on older versions)
+private const val SQL_VARIABLE_CHUNK = 500
+
 @Dao
 interface AdDao {
     @Query("SELECT * FROM ads ORDER BY timestamp DESC")
@@ -11,15 +14,96 @@ interface AdDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun insertAll(ads: List<Ad>)
 
+    @Query("SELECT * FROM ads WHERE storeId IN (:storeIds) ORDER BY timestamp DESC")
+    suspend fun getAdsForStores(storeIds: List<String>): List<Ad>
+
     @Update
     suspend fun updateAd(ad: Ad)
 
     @Query("DELETE FROM ads WHERE token = :token")
     suspend fun deleteByToken(token: String)
 
+    @Query("DELETE FROM ads WHERE token IN (:tokens)")
+    suspend fun deleteByTokens(tokens: List<String>): Int
+
+    @Query("SELECT token FROM ads WHERE bookmarked = 1 AND token IN (:tokens)")
+    suspend fun getBookmarkedTokens(tokens: List<String>): List<String>
+
+    @Query("SELECT * FROM ads WHERE latitude BETWEEN :minLat AND :maxLat AND longitude BETWEEN :minLon AND :maxLon")
+    suspend fun getAdsInBounds(minLat: Double, maxLat: Double, minLon: Double, maxLon: Double): List<Ad>
+
+    /**
+     * Apply one batch of a delta atomically; returns the number of rows deleted
+     * A streamed delta takes several batches, so the delta as a whole is not atomic
+     */
+    @Transaction
+    suspend fun applyDelta(upserts: List<Ad>, deletedTokens: List<String>): Int {
+        insertAll(keepBookmarks(upserts))
+        var deleted = 0
+        for (chunk in deletedTokens.chunked(SQL_VARIABLE_CHUNK)) deleted += deleteByTokens(chunk)
+        return deleted
+    }
+
+    @Query("SELECT COUNT(*) FROM ads")
+    suspend fun countAds(): Int
+
+    @Query("DELETE FROM ads WHERE syncedAt < :stamp AND latitude BETWEEN :minLat AND :maxLat AND longitude BETWEEN :minLon AND :maxLon")
+    suspend fun deleteUnsyncedInBounds(stamp: Long, minLat: Double, maxLat: Double, minLon: Double, maxLon: Double): Int
+
+    @Query("DELETE FROM ads WHERE bookmarked = 0 AND latitude BETWEEN :minLat AND :maxLat AND longitude BETWEEN :minLon AND :maxLon")
+    suspend fun deleteUnbookmarkedInBounds(minLat: Double, maxLat: Double, minLon: Double, maxLon: Double): Int
+
+    @Query("SELECT * FROM ad_tiles WHERE geohash IN (:geohashes)")
+    suspend fun getTiles(geohashes: List<String>): List<AdTile>
+
+    @Query("SELECT * FROM ad_tiles ORDER BY lastAccessAt ASC")
+    suspend fun getTilesByAccess(): List<AdTile>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsertTile(tile: AdTile)
+
+    @Query("UPDATE ad_tiles SET lastAccessAt = :ts WHERE geohash IN (:geohashes)")
+    suspend fun touchTiles(geohashes: List<String>, ts: Long)
+
+    @Query("DELETE FROM ad_tiles WHERE geohash = :geohash")
+    suspend fun deleteTile(geohash: String)
+
+    /**
+     * Finish a streamed tile sync and advance its cursor; a full sync also drops the
+     * region's rows older than [stamp]. Returns the number of ad rows deleted
+     */
+    @Transaction
+    suspend fun finishTileSync(tile: AdTile, full: Boolean, stamp: Long,
+                               minLat: Double, maxLat: Double, minLon: Double, maxLon: Double): Int {
+        val deleted = if (full) deleteUnsyncedInBounds(stamp, minLat, maxLat, minLon, maxLon) else 0
+        upsertTile(tile)
+        return deleted
+    }
+
+    /**
+     * Drop a tile and its ads (bookmarks are kept); the next visit does a full sync
+     */
+    @Transaction
+    suspend fun evictTile(geohash: String, minLat: Double, maxLat: Double, minLon: Double, maxLon: Double): Int {
+        deleteTile(geohash)
+        return deleteUnbookmarkedInBounds(minLat, maxLat, minLon, maxLon)
+    }
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun upsertStoreState(state: StoreState)
 
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsertStoreStates(states: List<StoreState>)
+
     @Query("SELECT * FROM store_state WHERE storeId = :storeId")
     suspend fun getStoreState(storeId: String): StoreState?
 }
+
+// REPLACE rewrites the whole row, so carry the local bookmark flag over
+private suspend fun AdDao.keepBookmarks(ads: List<Ad>): List<Ad> {
+    if (ads.isEmpty()) return ads
+    val bookmarked = HashSet<String>()
+    for (chunk in ads.chunked(SQL_VARIABLE_CHUNK)) bookmarked += getBookmarkedTokens(chunk.map { it.token })
+    if (bookmarked.isEmpty()) return ads
+    return ads.map { if (it.token in bookmarked) it.copy(bookmarked = true) else it }
+}
@@ -0,0 +1,15 @@
+package com.example.adsbubble.data.db
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Sync state of one geohash tile of cached ads
+ */
+@Entity(tableName = "ad_tiles")
+data class AdTile(
+    @PrimaryKey val geohash: String,
+    val cursor: String?,
+    val syncedAt: Long,
+    val lastAccessAt: Long
+)
@@ -4,8 +4,10 @@ import android.content.Context
 import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
 
-@Database(entities = [Ad::class, StoreState::class], version = 1, exportSchema = false)
+@Database(entities = [Ad::class, StoreState::class, AdTile::class], version = 3, exportSchema = false)
 abstract class AppDatabase : RoomDatabase() {
     abstract fun adDao(): AdDao
 
@@ -16,7 +18,22 @@ abstract class AppDatabase : RoomDatabase() {
                 INSTANCE ?: buildDatabase(context).also { INSTANCE = it }
             }
 
+        private val MIGRATION_1_2 = object : Migration(1, 2) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `ad_tiles` (`geohash` TEXT NOT NULL, `cursor` TEXT, " +
+                    "`syncedAt` INTEGER NOT NULL, `lastAccessAt` INTEGER NOT NULL, PRIMARY KEY(`geohash`))")
+            }
+        }
+
+        private val MIGRATION_2_3 = object : Migration(2, 3) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE `ads` ADD COLUMN `syncedAt` INTEGER NOT NULL DEFAULT 0")
+            }
+        }
+
         private fun buildDatabase(context: Context) =
-            Room.databaseBuilder(context.applicationContext, AppDatabase::class.java, "ads_db").build()
+            Room.databaseBuilder(context.applicationContext, AppDatabase::class.java, "ads_db")
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3)
+                .build()
     }
 }
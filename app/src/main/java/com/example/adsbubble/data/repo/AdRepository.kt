@@ -11,11 +11,26 @@ import com.example.adsbubble.data.db.StoreState
 import com.example.adsbubble.data.model.AdDto
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
 
 class AdRepository(private val api: ApiService, private val dao: AdDao, private val prefs: SharedPreferences) {
 
+    companion object {
+        private const val NEARBY_RADIUS_METERS = 1609.0 // 1 mile
+        private val legacyPrefsRemoved = AtomicBoolean()
+
+        // Rows written/deleted by delta sync in this process, for comparing against full sync
+        val rowsWritten = AtomicLong()
+        val rowsDeleted = AtomicLong()
+    }
+
+    private val tileCache = AdTileCache(api, dao, gson = ApiClient.gson) { dtoToRoom(it) }
+
     fun allAds() = dao.getAllAds()
 
+    suspend fun adsForStores(storeIds: List<String>) = dao.getAdsForStores(storeIds)
+
     private fun dtoToRoom(a: AdDto): RoomAd {
         return RoomAd(
             token = a.token,
@@ -30,22 +45,34 @@ class AdRepository(private val api: ApiService, private val dao: AdDao, private
         )
     }
 
-    suspend fun refreshAds(lat: Double, lon: Double) = withContext(Dispatchers.IO) {
-        val resp = api.getNearbyAds(lat, lon)
-        val newHash = resp.hash ?: resp.ads.hashCode().toString()
-        val key = "ads_hash_${lat.toString().take(8)}_${lon.toString().take(8)}"
-        val last = prefs.getString(key, null)
-        if (last != newHash) {
-            val list = resp.ads.map { dtoToRoom(it) }
-            dao.insertAll(list)
-            prefs.edit().putString(key, newHash).apply()
-        }
+    /**
+     * Ads within [NEARBY_RADIUS_METERS] of a point, served from the tile cache;
+     * only expired or unknown tiles are delta-synced
+     */
+    suspend fun refreshAds(lat: Double, lon: Double): List<RoomAd> = withContext(Dispatchers.IO) {
+        removeLegacyPrefs()
+        tileCache.adsNear(lat, lon, NEARBY_RADIUS_METERS)
+    }
+
+    // Change hashes and region cursors used to live in prefs, one key per spot visited
+    private fun removeLegacyPrefs() {
+        if (!legacyPrefsRemoved.compareAndSet(false, true)) return
+        val stale = prefs.all.keys.filter { it.startsWith("ads_hash_") || it.startsWith("ads_cursor_") }
+        if (stale.isEmpty()) return
+        val editor = prefs.edit()
+        stale.forEach { editor.remove(it) }
+        editor.apply()
     }
 
     suspend fun markEntered(storeId: String) {
         dao.upsertStoreState(StoreState(storeId, true, System.currentTimeMillis()))
     }
 
+    suspend fun markEntered(storeIds: List<String>) {
+        val now = System.currentTimeMillis()
+        dao.upsertStoreStates(storeIds.map { StoreState(it, true, now) })
+    }
+
     suspend fun markExited(storeId: String) {
         dao.upsertStoreState(StoreState(storeId, false, null))
     }
@@ -0,0 +1,89 @@
+package com.example.adsbubble.data.repo
+
+import com.example.adsbubble.data.db.Ad
+import com.example.adsbubble.data.db.AdDao
+import com.example.adsbubble.data.model.AdDto
+import com.google.gson.Gson
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import okhttp3.ResponseBody
+
+/**
+ * Streams an ads/delta body into Room without holding the payload in memory
+ *
+ * Upserts and deleted tokens are decoded one element at a time and written in batches
+ * of [batchSize], each in its own transaction, so memory stays flat however large the
+ * region is. Upserted rows are stamped with the sync's start time so a full sync can
+ * drop the rows it did not reach once the body is consumed. The caller advances the
+ * cursor only after that; an interrupted sync is repeated from the old cursor, which is
+ * safe because upserts and deletes are idempotent
+ *
+ * This trades away the one-transaction-per-delta guarantee: while a delta streams in,
+ * queries over its region can see some batches applied and others not. The region
+ * converges once the sync finishes or is retried. Staging rows to swap them in at
+ * [AdDao.finishTileSync] would keep deltas atomic, but needs a second table and
+ * writes every row twice
+ */
+class AdStreamIngest(
+    private val dao: AdDao,
+    private val gson: Gson,
+    private val batchSize: Int = DEFAULT_BATCH_SIZE,
+    private val toRoom: (AdDto) -> Ad
+) {
+    class Result(val cursor: String?, val full: Boolean, val upserted: Int, val deleted: Int)
+
+    /**
+     * Blocks on the network while reading; call off the main thread
+     */
+    suspend fun ingest(body: ResponseBody, stamp: Long): Result = body.use { response ->
+        val dtoAdapter = gson.getAdapter(AdDto::class.java)
+        val reader = gson.newJsonReader(response.charStream())
+        var cursor: String? = null
+        var full = false
+        var upserted = 0
+        var deleted = 0
+
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "upserts" -> reader.forEachBatch({ dtoAdapter.read(it) }) { batch ->
+                    dao.applyDelta(batch.map { dto -> toRoom(dto).copy(syncedAt = stamp) }, emptyList())
+                    upserted += batch.size
+                }
+                "deleted" -> reader.forEachBatch({ it.nextString() }) { batch ->
+                    deleted += dao.applyDelta(emptyList(), batch)
+                }
+                "cursor" -> cursor = if (reader.skipNull()) null else reader.nextString()
+                "full" -> full = !reader.skipNull() && reader.nextBoolean()
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        Result(cursor, full, upserted, deleted)
+    }
+
+    private inline fun <T> JsonReader.forEachBatch(read: (JsonReader) -> T, flush: (List<T>) -> Unit) {
+        if (skipNull()) return
+        val batch = ArrayList<T>(batchSize)
+        beginArray()
+        while (hasNext()) {
+            batch += read(this)
+            if (batch.size == batchSize) {
+                flush(batch)
+                batch.clear()
+            }
+        }
+        endArray()
+        if (batch.isNotEmpty()) flush(batch)
+    }
+
+    private fun JsonReader.skipNull(): Boolean {
+        if (peek() != JsonToken.NULL) return false
+        nextNull()
+        return true
+    }
+
+    companion object {
+        const val DEFAULT_BATCH_SIZE = 500
+    }
+}
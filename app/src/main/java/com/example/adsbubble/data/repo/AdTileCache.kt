@@ -0,0 +1,122 @@
+package com.example.adsbubble.data.repo
+
+import com.example.adsbubble.data.Geohash
+import com.example.adsbubble.data.api.ApiService
+import com.example.adsbubble.data.db.Ad
+import com.example.adsbubble.data.db.AdDao
+import com.example.adsbubble.data.db.AdTile
+import com.example.adsbubble.data.model.AdDto
+import com.google.gson.Gson
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.cos
+
+/**
+ * Ads cached per geohash tile
+ *
+ * A nearby query is answered from the tiles covering its bounding box. Tiles synced
+ * within the TTL are hits and cost no request; expired or unknown tiles are misses
+ * and are delta-synced from their stored cursor through [AdStreamIngest], which
+ * applies a delta in batches rather than atomically; a tile is only marked synced,
+ * and its cursor advanced, after the whole delta is in. Once the
+ * cache holds more than [maxAds] rows, least recently used tiles are evicted together
+ * with their ads
+ */
+class AdTileCache(
+    private val api: ApiService,
+    private val dao: AdDao,
+    private val precision: Int = DEFAULT_PRECISION,
+    private val ttlMs: Long = DEFAULT_TTL_MS,
+    private val maxAds: Int = DEFAULT_MAX_ADS,
+    gson: Gson,
+    toRoom: (AdDto) -> Ad
+) {
+    private val ingest = AdStreamIngest(dao, gson, toRoom = toRoom)
+
+    suspend fun adsNear(lat: Double, lon: Double, radiusMeters: Double): List<Ad> {
+        val latSpan = radiusMeters / METERS_PER_DEGREE
+        val lonSpan = radiusMeters / (METERS_PER_DEGREE * cos(Math.toRadians(lat)).coerceAtLeast(0.01))
+        val minLat = lat - latSpan
+        val maxLat = lat + latSpan
+        val minLon = lon - lonSpan
+        val maxLon = lon + lonSpan
+
+        val tiles = coveringTiles(minLat, maxLat, minLon, maxLon)
+        val now = System.currentTimeMillis()
+        val known = dao.getTiles(tiles).associateBy { it.geohash }
+        for (geohash in tiles) {
+            val tile = known[geohash]
+            if (tile != null && now - tile.syncedAt < ttlMs) {
+                hits.incrementAndGet()
+            } else {
+                misses.incrementAndGet()
+                syncTile(geohash, tile?.cursor, now)
+            }
+        }
+        dao.touchTiles(tiles, now)
+        evictIfNeeded(tiles.toSet())
+
+        return dao.getAdsInBounds(minLat, maxLat, minLon, maxLon)
+    }
+
+    private suspend fun syncTile(geohash: String, since: String?, now: Long) {
+        val result = ingest.ingest(api.getAdsDelta(geohash, since), now)
+        val bounds = Geohash.bounds(geohash)
+        val deleted = dao.finishTileSync(
+            AdTile(geohash, result.cursor ?: since, now, now),
+            since == null || result.full, now,
+            bounds.minLat, bounds.maxLat, bounds.minLon, bounds.maxLon
+        )
+        AdRepository.rowsWritten.addAndGet(result.upserted.toLong())
+        AdRepository.rowsDeleted.addAndGet((result.deleted + deleted).toLong())
+    }
+
+    private suspend fun evictIfNeeded(inUse: Set<String>) {
+        var count = dao.countAds()
+        if (count <= maxAds) return
+        for (tile in dao.getTilesByAccess()) {
+            if (count <= maxAds) break
+            if (tile.geohash in inUse) continue
+            val bounds = Geohash.bounds(tile.geohash)
+            count -= dao.evictTile(tile.geohash, bounds.minLat, bounds.maxLat, bounds.minLon, bounds.maxLon)
+            evictions.incrementAndGet()
+        }
+    }
+
+    /**
+     * Geohash cells at [precision] intersecting a bounding box
+     */
+    private fun coveringTiles(minLat: Double, maxLat: Double, minLon: Double, maxLon: Double): List<String> {
+        val cell = Geohash.bounds(Geohash.encode(minLat, minLon, precision))
+        val latStep = cell.maxLat - cell.minLat
+        val lonStep = cell.maxLon - cell.minLon
+        val tiles = LinkedHashSet<String>()
+        var lat = minLat
+        while (true) {
+            var lon = minLon
+            while (true) {
+                tiles += Geohash.encode(lat, lon, precision)
+                if (lon >= maxLon) break
+                lon = minOf(lon + lonStep, maxLon)
+            }
+            if (lat >= maxLat) break
+            lat = minOf(lat + latStep, maxLat)
+        }
+        return tiles.toList()
+    }
+
+    companion object {
+        const val DEFAULT_PRECISION = 5 // ~4.9 km cells
+        const val DEFAULT_TTL_MS = 10 * 60 * 1000L // 10 minutes
+        const val DEFAULT_MAX_ADS = 5000
+        private const val METERS_PER_DEGREE = 111_320.0
+
+        val hits = AtomicLong()
+        val misses = AtomicLong()
+        val evictions = AtomicLong()
+
+        fun hitRatio(): Double {
+            val total = hits.get() + misses.get()
+            return if (total > 0) hits.get().toDouble() / total else 0.0
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.adsbubble.geofence
+
+import com.example.adsbubble.data.db.Ad
+
+/**
+ * Registers the first OS geofences around a position
+ *
+ * Fences otherwise only rotate after an ENTER, which can never fire while none are
+ * registered, so a fresh install or a cleared registration would stay without fences.
+ * The platform reports ENTER for fences the user is already inside when they are added,
+ * which hands off to [HybridTrackingController]; [onRegistered] lets it drop rings
+ * whose fence was rotated out
+ */
+class GeofenceBootstrap(
+    private val manager: GeofenceRegistrationManager,
+    private val refreshAds: suspend (lat: Double, lon: Double) -> List<Ad>,
+    private val onRegistered: (Set<String>) -> Unit = {}
+) {
+    /**
+     * Refresh ads around a position and register the stores nearest to it
+     * Returns the store ids registered so far
+     */
+    suspend fun seed(lat: Double, lon: Double): Set<String> {
+        manager.updateCandidates(storeFences(refreshAds(lat, lon)))
+        manager.onLocation(lat, lon)
+        val registered = manager.registeredStoreIds()
+        onRegistered(registered)
+        return registered
+    }
+}
+
+/**
+ * One fence per store that has a position
+ */
+fun storeFences(ads: List<Ad>): List<StoreFence> =
+    ads.filter { it.latitude != null && it.longitude != null }
+        .distinctBy { it.storeId }
+        .map { StoreFence(it.storeId, it.latitude!!, it.longitude!!) }
@@ -5,8 +5,6 @@ import android.content.Context
 import android.content.Intent
 import com.google.android.gms.location.Geofence
 import com.google.android.gms.location.GeofencingEvent
-import androidx.core.content.ContextCompat
-import com.example.adsbubble.geofence.GeofenceTransitionService
 
 class GeofenceBroadcastReceiver : BroadcastReceiver() {
     override fun onReceive(ctx: Context, intent: Intent) {
@@ -15,16 +13,12 @@ class GeofenceBroadcastReceiver : BroadcastReceiver() {
         val transition = geofencingEvent.geofenceTransition
         val triggeringIds = geofencingEvent.triggeringGeofences?.map { it.requestId } ?: emptyList()
         if (transition == Geofence.GEOFENCE_TRANSITION_ENTER) {
-            for (id in triggeringIds) {
-                val i = Intent(ctx, GeofenceTransitionService::class.java).apply {
-                    putExtra("storeId", id)
-                    putExtra("lat", geofencingEvent.triggeringLocation?.latitude ?: 0.0)
-                    putExtra("lon", geofencingEvent.triggeringLocation?.longitude ?: 0.0)
-                }
-                ContextCompat.startForegroundService(ctx, i)
-            }
+            HybridTrackingController.onRingsEntered(ctx, triggeringIds)
+            GeofenceTransitionService.enqueue(ctx, triggeringIds,
+                geofencingEvent.triggeringLocation?.latitude ?: 0.0,
+                geofencingEvent.triggeringLocation?.longitude ?: 0.0)
         } else if (transition == Geofence.GEOFENCE_TRANSITION_EXIT) {
-            // handle exit if needed
+            HybridTrackingController.onRingsExited(ctx, triggeringIds)
         }
     }
 }
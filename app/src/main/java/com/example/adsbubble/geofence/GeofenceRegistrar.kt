@@ -0,0 +1,70 @@
+package com.example.adsbubble.geofence
+
+import android.Manifest
+import android.content.Context
+import android.content.pm.PackageManager
+import androidx.core.app.ActivityCompat
+import com.google.android.gms.location.Geofence
+import com.google.android.gms.location.GeofencingRequest
+import com.google.android.gms.location.LocationServices
+
+data class StoreFence(
+    val storeId: String,
+    val lat: Double,
+    val lon: Double,
+    val radiusMeters: Float = 1609f,
+    val priority: Float = 1f
+)
+
+/**
+ * The platform geofencing calls the registration manager makes; every call is one IPC
+ * Each reports whether the platform applied it, possibly later and on another thread
+ */
+interface GeofenceRegistrar {
+    fun add(fences: List<StoreFence>, onResult: (Boolean) -> Unit)
+    fun remove(storeIds: List<String>, onResult: (Boolean) -> Unit)
+    fun removeAll(onResult: (Boolean) -> Unit)
+}
+
+class PlayServicesGeofenceRegistrar(private val context: Context) : GeofenceRegistrar {
+    private val geofencingClient by lazy { LocationServices.getGeofencingClient(context) }
+
+    override fun add(fences: List<StoreFence>, onResult: (Boolean) -> Unit) {
+        if (fences.isEmpty()) {
+            onResult(true)
+            return
+        }
+        if (ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            onResult(false)
+            return
+        }
+        val request = GeofencingRequest.Builder().apply {
+            setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_ENTER)
+            addGeofences(fences.map { toGeofence(it) })
+        }.build()
+        // Fails e.g. with GEOFENCE_TOO_MANY_GEOFENCES or GEOFENCE_NOT_AVAILABLE
+        geofencingClient.addGeofences(request, GeofencePendingIntent.getPendingIntent(context, fences[0].storeId))
+            .addOnCompleteListener { onResult(it.isSuccessful) }
+    }
+
+    override fun remove(storeIds: List<String>, onResult: (Boolean) -> Unit) {
+        if (storeIds.isEmpty()) {
+            onResult(true)
+            return
+        }
+        geofencingClient.removeGeofences(storeIds)
+            .addOnCompleteListener { onResult(it.isSuccessful) }
+    }
+
+    override fun removeAll(onResult: (Boolean) -> Unit) {
+        geofencingClient.removeGeofences(GeofencePendingIntent.getPendingIntent(context, ""))
+            .addOnCompleteListener { onResult(it.isSuccessful) }
+    }
+
+    private fun toGeofence(fence: StoreFence): Geofence = Geofence.Builder()
+        .setRequestId(fence.storeId)
+        .setCircularRegion(fence.lat, fence.lon, fence.radiusMeters)
+        .setExpirationDuration(Geofence.NEVER_EXPIRE)
+        .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER or Geofence.GEOFENCE_TRANSITION_EXIT)
+        .build()
+}
@@ -0,0 +1,189 @@
+package com.example.adsbubble.geofence
+
+import android.content.Context
+import com.adx.integration.utils.GeoMath
+import java.util.PriorityQueue
+
+/**
+ * Keeps the K most relevant stores registered as OS geofences
+ *
+ * The platform caps an app at 100 active geofences, so instead of registering
+ * every store we rank candidates by distance to their fence edge (scaled by
+ * priority) and register only the top K. As the user moves the set is recomputed
+ * and only the difference is applied: at most one batched remove and one batched
+ * add per update. A difference is only recorded as registered once the platform
+ * reports it applied; after a failure the next update retries it
+ *
+ * Candidates are capped at [maxCandidates]; past that, the ones ranked furthest
+ * from the last known position are evicted
+ */
+class GeofenceRegistrationManager(
+    private val registrar: GeofenceRegistrar,
+    private val maxFences: Int = DEFAULT_MAX_FENCES,
+    private val refreshDistanceMeters: Double = DEFAULT_REFRESH_DISTANCE_METERS,
+    private val maxCandidates: Int = DEFAULT_MAX_CANDIDATES,
+    private val onRegistrationReset: () -> Unit = {}
+) {
+    private val candidates = HashMap<String, StoreFence>()
+    private val registered = HashMap<String, StoreFence>()
+    private var candidatesChanged = false
+    private var registrationKnown = false
+    private var retryNeeded = false
+    private var lastLat = Double.NaN
+    private var lastLon = Double.NaN
+
+    var ipcCalls = 0L
+        private set
+    var fencesAdded = 0L
+        private set
+    var fencesRemoved = 0L
+        private set
+    var failedCalls = 0L
+        private set
+    var candidatesEvicted = 0L
+        private set
+
+    init {
+        require(maxFences in 1..PLATFORM_FENCE_LIMIT) { "maxFences must be between 1 and $PLATFORM_FENCE_LIMIT" }
+        require(maxCandidates >= maxFences) { "maxCandidates must be at least maxFences" }
+    }
+
+    /**
+     * Merge stores into the candidate set; stores already known are replaced
+     */
+    @Synchronized
+    fun updateCandidates(stores: Collection<StoreFence>) {
+        for (store in stores) {
+            if (candidates.put(store.storeId, store) != store) candidatesChanged = true
+        }
+        pruneCandidates()
+    }
+
+    @Synchronized
+    fun removeCandidate(storeId: String) {
+        if (candidates.remove(storeId) != null) candidatesChanged = true
+    }
+
+    /**
+     * Recompute the registered set for a new position if the user moved far enough,
+     * the candidates changed or an earlier call failed. Returns true if any IPC was made
+     */
+    @Synchronized
+    fun onLocation(lat: Double, lon: Double): Boolean {
+        val moved = lastLat.isNaN() ||
+            GeoMath.distanceMeters(lat, lon, lastLat, lastLon) >= refreshDistanceMeters
+        if (!moved && !candidatesChanged && !retryNeeded && registrationKnown) return false
+
+        lastLat = lat
+        lastLon = lon
+        pruneCandidates()
+        candidatesChanged = false
+        retryNeeded = false
+        return apply(selectNearest(lat, lon, maxFences))
+    }
+
+    @Synchronized
+    fun registeredStoreIds(): Set<String> = HashSet(registered.keys)
+
+    private fun pruneCandidates() {
+        if (candidates.size <= maxCandidates || lastLat.isNaN()) return
+        val kept = selectNearest(lastLat, lastLon, maxCandidates)
+        candidatesEvicted += candidates.size - kept.size
+        candidates.keys.retainAll(kept.keys)
+        candidatesChanged = true
+    }
+
+    private fun selectNearest(lat: Double, lon: Double, limit: Int): Map<String, StoreFence> {
+        // Bounded max-heap: the worst of the current best K sits on top
+        val heap = PriorityQueue<Pair<Double, StoreFence>>(limit + 1, compareByDescending { it.first })
+        for (store in candidates.values) {
+            heap.add(score(store, lat, lon) to store)
+            if (heap.size > limit) heap.poll()
+        }
+        val selected = HashMap<String, StoreFence>(heap.size * 2)
+        for ((_, store) in heap) selected[store.storeId] = store
+        return selected
+    }
+
+    private fun score(store: StoreFence, lat: Double, lon: Double): Double {
+        val edge = (GeoMath.distanceMeters(lat, lon, store.lat, store.lon) - store.radiusMeters).coerceAtLeast(0.0)
+        return edge / store.priority.coerceAtLeast(MIN_PRIORITY)
+    }
+
+    private fun apply(desired: Map<String, StoreFence>): Boolean {
+        var calls = 0
+        if (!registrationKnown) {
+            // After a process restart we don't know what the OS still holds
+            registered.clear()
+            registrationKnown = true
+            registrar.removeAll { ok -> onResetResult(ok) }
+            calls++
+        }
+
+        val removals = registered.keys.filter { it !in desired }
+        // Re-adding a request id replaces its fence, so changed geometry needs no remove
+        val additions = desired.values.filter { registered[it.storeId] != it }
+
+        if (removals.isNotEmpty()) {
+            registrar.remove(removals) { ok -> onRemoveResult(removals, ok) }
+            calls++
+        }
+        if (additions.isNotEmpty()) {
+            registrar.add(additions) { ok -> onAddResult(additions, ok) }
+            calls++
+        }
+        ipcCalls += calls
+        return calls > 0
+    }
+
+    private fun onResetResult(ok: Boolean) {
+        synchronized(this) {
+            if (!ok) {
+                failedCalls++
+                registrationKnown = false
+                retryNeeded = true
+            }
+        }
+        // No EXIT will arrive for fences removed this way
+        if (ok) onRegistrationReset()
+    }
+
+    @Synchronized
+    private fun onRemoveResult(storeIds: List<String>, ok: Boolean) {
+        if (!ok) {
+            failedCalls++
+            retryNeeded = true
+            return
+        }
+        storeIds.forEach { registered.remove(it) }
+        fencesRemoved += storeIds.size
+    }
+
+    @Synchronized
+    private fun onAddResult(fences: List<StoreFence>, ok: Boolean) {
+        if (!ok) {
+            failedCalls++
+            retryNeeded = true
+            return
+        }
+        fences.forEach { registered[it.storeId] = it }
+        fencesAdded += fences.size
+    }
+
+    companion object {
+        const val PLATFORM_FENCE_LIMIT = 100
+        const val DEFAULT_MAX_FENCES = 90 // leave headroom under the platform limit
+        const val DEFAULT_REFRESH_DISTANCE_METERS = 500.0
+        const val DEFAULT_MAX_CANDIDATES = 1000
+        private const val MIN_PRIORITY = 0.01f
+
+        @Volatile private var INSTANCE: GeofenceRegistrationManager? = null
+        fun getInstance(context: Context): GeofenceRegistrationManager =
+            INSTANCE ?: synchronized(this) {
+                INSTANCE ?: GeofenceRegistrationManager(
+                    PlayServicesGeofenceRegistrar(context.applicationContext),
+                    onRegistrationReset = { HybridTrackingController.clearRings(context.applicationContext) }
+                ).also { INSTANCE = it }
+            }
+    }
+}
@@ -1,26 +1,104 @@
 package com.example.adsbubble.geofence
 
 import android.app.IntentService
+import android.content.Context
 import android.content.Intent
+import androidx.core.content.ContextCompat
+import com.example.adsbubble.data.MediaPrefetcher
 import com.example.adsbubble.data.api.ApiClient
 import com.example.adsbubble.data.db.AppDatabase
 import com.example.adsbubble.data.repo.AdRepository
 import kotlinx.coroutines.runBlocking
+import java.util.Locale
 
+/**
+ * Single queued worker for geofence ENTER events
+ *
+ * Each event carries all of its triggering store ids. Ids that are already queued
+ * or being processed are dropped before the event is enqueued, each event makes
+ * at most one ads refresh (skipped if the same spot was just refreshed), and all
+ * store states of the event are written in one transaction
+ */
 class GeofenceTransitionService : IntentService("GeofenceTransitionService") {
     override fun onHandleIntent(intent: Intent?) {
-        val storeId = intent?.getStringExtra("storeId") ?: return
-        val lat = intent.getDoubleExtra("lat", 0.0)
-        val lon = intent.getDoubleExtra("lon", 0.0)
+        val storeIds = intent?.getStringArrayExtra(EXTRA_STORE_IDS)?.toList() ?: return
+        val lat = intent.getDoubleExtra(EXTRA_LAT, 0.0)
+        val lon = intent.getDoubleExtra(EXTRA_LON, 0.0)
         val db = AppDatabase.getInstance(applicationContext)
         val repo = AdRepository(ApiClient.retrofit, db.adDao(), applicationContext.getSharedPreferences("prefs", 0))
         runBlocking {
             try {
-                repo.refreshAds(lat, lon)
-                repo.markEntered(storeId)
+                repo.markEntered(storeIds)
+
+                if (!refreshedRecently(lat, lon)) {
+                    val ads = repo.refreshAds(lat, lon)
+                    // Only a refresh that went through covers later events from this spot
+                    recordRefresh(lat, lon)
+
+                    // Rotate OS geofences to the stores nearest to where we are now
+                    val helper = GeofenceHelper(applicationContext)
+                    helper.registerGeofences(storeFences(ads))
+                    helper.updateLocation(lat, lon)
+                    HybridTrackingController.retainRegistered(applicationContext,
+                        GeofenceRegistrationManager.getInstance(applicationContext).registeredStoreIds())
+                }
+
+                // The bubble is usually opened within seconds of entering: warm its media now
+                MediaPrefetcher(applicationContext).prefetch(repo.adsForStores(storeIds))
             } catch (ex: Exception) {
                 ex.printStackTrace()
+            } finally {
+                release(storeIds)
+            }
+        }
+    }
+
+    companion object {
+        private const val EXTRA_STORE_IDS = "storeIds"
+        private const val EXTRA_LAT = "lat"
+        private const val EXTRA_LON = "lon"
+        private const val REFRESH_REUSE_MS = 30 * 1000L // 30 seconds
+
+        private val inFlight = HashSet<String>()
+        private var lastRefreshKey: String? = null
+        private var lastRefreshTs = 0L
+
+        /**
+         * Queue one ENTER event; ids already queued or in progress are skipped
+         */
+        fun enqueue(context: Context, storeIds: List<String>, lat: Double, lon: Double) {
+            val fresh = claim(storeIds)
+            if (fresh.isEmpty()) return
+            val i = Intent(context, GeofenceTransitionService::class.java).apply {
+                putExtra(EXTRA_STORE_IDS, fresh.toTypedArray())
+                putExtra(EXTRA_LAT, lat)
+                putExtra(EXTRA_LON, lon)
             }
+            ContextCompat.startForegroundService(context, i)
+        }
+
+        @Synchronized
+        private fun claim(storeIds: List<String>): List<String> =
+            storeIds.distinct().filter { inFlight.add(it) }
+
+        @Synchronized
+        private fun release(storeIds: List<String>) {
+            inFlight.removeAll(storeIds.toSet())
         }
+
+        /**
+         * One refresh per location: events from the same ~100 m spot share a recent refresh
+         */
+        @Synchronized
+        private fun refreshedRecently(lat: Double, lon: Double): Boolean =
+            refreshKey(lat, lon) == lastRefreshKey && System.currentTimeMillis() - lastRefreshTs < REFRESH_REUSE_MS
+
+        @Synchronized
+        private fun recordRefresh(lat: Double, lon: Double) {
+            lastRefreshKey = refreshKey(lat, lon)
+            lastRefreshTs = System.currentTimeMillis()
+        }
+
+        private fun refreshKey(lat: Double, lon: Double) = String.format(Locale.US, "%.3f,%.3f", lat, lon)
     }
 }
@@ -0,0 +1,180 @@
+package com.example.adsbubble.geofence
+
+import android.content.Context
+import android.content.Intent
+import androidx.core.content.ContextCompat
+import androidx.work.ExistingWorkPolicy
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkManager
+import com.adx.integration.service.LocationTrackingService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Hybrid tracking: the OS geofences are a cheap outer ring around each store, and
+ * the high-accuracy [LocationTrackingService] only runs while the user is inside
+ * at least one ring. It is started on the first ENTER and stopped on the last EXIT
+ *
+ * The set of rings the user is in is persisted so it survives the process being
+ * killed between transitions. Entries are dropped after [HybridRings.MAX_RING_DWELL_MS]
+ * in case the OS never delivered the EXIT; a [RingExpiryWorker] is scheduled for the
+ * oldest entry so tracking stops then even if no other transition arrives
+ */
+object HybridTrackingController {
+    private const val PREFS = "prefs"
+    private const val KEY_INSIDE_RINGS = "hybrid_inside_rings"
+    private const val EXPIRY_WORK = "hybrid_ring_expiry"
+
+    @Synchronized
+    fun onRingsEntered(context: Context, storeIds: List<String>) = rings(context).onRingsEntered(storeIds)
+
+    @Synchronized
+    fun onRingsExited(context: Context, storeIds: List<String>) = rings(context).onRingsExited(storeIds)
+
+    @Synchronized
+    fun retainRegistered(context: Context, registeredStoreIds: Set<String>) =
+        rings(context).retainRegistered(registeredStoreIds)
+
+    @Synchronized
+    fun expireRings(context: Context) = rings(context).expireRings()
+
+    @Synchronized
+    fun clearRings(context: Context) = rings(context).clearRings()
+
+    @Synchronized
+    fun insideRings(context: Context): Set<String> = rings(context).insideRings()
+
+    private fun rings(context: Context) =
+        HybridRings(PrefsRingStore(context.applicationContext), ServiceTrackingSwitch(context))
+
+    /**
+     * Rings as "storeId|enteredAt" entries in prefs, with the expiry work following the oldest
+     */
+    private class PrefsRingStore(private val context: Context) : HybridRings.RingStore {
+        private val prefs get() = context.getSharedPreferences(PREFS, 0)
+
+        override fun load(): Map<String, Long> {
+            val stored = prefs.getStringSet(KEY_INSIDE_RINGS, null) ?: return emptyMap()
+            val rings = HashMap<String, Long>()
+            for (entry in stored) {
+                val separator = entry.lastIndexOf('|')
+                if (separator <= 0) continue
+                val enteredAt = entry.substring(separator + 1).toLongOrNull() ?: continue
+                rings[entry.substring(0, separator)] = enteredAt
+            }
+            return rings
+        }
+
+        override fun save(rings: Map<String, Long>) {
+            val entries = rings.map { (storeId, enteredAt) -> "$storeId|$enteredAt" }.toSet()
+            prefs.edit().putStringSet(KEY_INSIDE_RINGS, entries).apply()
+            scheduleExpiry(rings.values.minOrNull())
+        }
+
+        private fun scheduleExpiry(oldestEnteredAt: Long?) {
+            val workManager = WorkManager.getInstance(context)
+            if (oldestEnteredAt == null) {
+                workManager.cancelUniqueWork(EXPIRY_WORK)
+                return
+            }
+            val delayMs = (oldestEnteredAt + HybridRings.MAX_RING_DWELL_MS - System.currentTimeMillis()).coerceAtLeast(0L)
+            val request = OneTimeWorkRequestBuilder<RingExpiryWorker>()
+                .setInitialDelay(delayMs, TimeUnit.MILLISECONDS)
+                .build()
+            workManager.enqueueUniqueWork(EXPIRY_WORK, ExistingWorkPolicy.REPLACE, request)
+        }
+    }
+
+    private class ServiceTrackingSwitch(private val context: Context) : HybridRings.TrackingSwitch {
+        override fun start() {
+            // Geofence transitions are exempt from the background foreground-service start limits
+            ContextCompat.startForegroundService(context, Intent(context, LocationTrackingService::class.java))
+        }
+
+        override fun stop() {
+            context.stopService(Intent(context, LocationTrackingService::class.java))
+        }
+    }
+}
+
+/**
+ * Ring bookkeeping behind [HybridTrackingController], without Android dependencies
+ * so the enter/exit handoff can be driven on a JVM
+ */
+class HybridRings(
+    private val store: RingStore,
+    private val tracking: TrackingSwitch,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+    interface RingStore {
+        fun load(): Map<String, Long>
+        fun save(rings: Map<String, Long>)
+    }
+
+    interface TrackingSwitch {
+        fun start()
+        fun stop()
+    }
+
+    fun onRingsEntered(storeIds: List<String>) {
+        if (storeIds.isEmpty()) return
+        val now = clock()
+        val rings = load(now)
+        storeIds.forEach { rings[it] = now }
+        store.save(rings)
+
+        // Also restarts tracking if the service was killed while inside a ring
+        tracking.start()
+    }
+
+    fun onRingsExited(storeIds: List<String>) {
+        val rings = load(clock())
+        storeIds.forEach { rings.remove(it) }
+        store.save(rings)
+        if (rings.isEmpty()) tracking.stop()
+    }
+
+    /**
+     * Forget rings that are no longer registered: once a fence is rotated out the
+     * OS will never report leaving it
+     */
+    fun retainRegistered(registeredStoreIds: Set<String>) {
+        val rings = load(clock())
+        if (rings.isEmpty()) return
+        if (rings.keys.retainAll(registeredStoreIds)) {
+            store.save(rings)
+            if (rings.isEmpty()) tracking.stop()
+        }
+    }
+
+    /**
+     * Drop rings whose dwell expired and stop tracking if none are left
+     */
+    fun expireRings() {
+        val rings = load(clock())
+        store.save(rings)
+        if (rings.isEmpty()) tracking.stop()
+    }
+
+    /**
+     * Forget every ring, e.g. after the OS geofences were removed and no EXIT can follow
+     */
+    fun clearRings() {
+        val rings = load(clock())
+        store.save(emptyMap())
+        if (rings.isNotEmpty()) tracking.stop()
+    }
+
+    fun insideRings(): Set<String> = load(clock()).keys
+
+    private fun load(now: Long): MutableMap<String, Long> {
+        val rings = HashMap<String, Long>()
+        for ((storeId, enteredAt) in store.load()) {
+            if (now - enteredAt < MAX_RING_DWELL_MS) rings[storeId] = enteredAt
+        }
+        return rings
+    }
+
+    companion object {
+        const val MAX_RING_DWELL_MS = 6 * 60 * 60 * 1000L // 6 hours
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.adsbubble.geofence
+
+import android.content.Context
+import androidx.work.Worker
+import androidx.work.WorkerParameters
+
+/**
+ * Drops rings whose dwell expired, so tracking stops even if no transition arrives
+ */
+class RingExpiryWorker(context: Context, params: WorkerParameters) : Worker(context, params) {
+    override fun doWork(): Result {
+        HybridTrackingController.expireRings(applicationContext)
+        return Result.success()
+    }
+}
@@ -8,15 +8,19 @@ import android.os.Bundle
 import android.provider.Settings
 import android.widget.Button
 import androidx.activity.result.contract.ActivityResultContracts
+import androidx.activity.viewModels
 import androidx.appcompat.app.AppCompatActivity
 import androidx.core.app.ActivityCompat
 import com.example.adsbubble.R
 import com.example.adsbubble.service.BubbleService
+import com.example.adsbubble.viewmodel.AdsViewModel
 
 class MainActivity : AppCompatActivity() {
+    private val ads: AdsViewModel by viewModels()
     private val requestOverlay = registerForActivityResult(ActivityResultContracts.StartActivityForResult()) { }
     private val requestPermissions = registerForActivityResult(ActivityResultContracts.RequestMultiplePermissions()) { map ->
-        // no-op, user handles
+        // Also reports permissions granted earlier; nothing registers geofences until a position is known
+        if (map[Manifest.permission.ACCESS_FINE_LOCATION] == true) ads.refreshNearby()
     }
 
     override fun onCreate(savedInstanceState: Bundle?) {
@@ -38,6 +42,6 @@ class MainActivity : AppCompatActivity() {
 
         // Request perms
         val perms = arrayOf(Manifest.permission.ACCESS_FINE_LOCATION, Manifest.permission.CAMERA, Manifest.permission.RECORD_AUDIO)
-        ActivityCompat.requestPermissions(this, perms, 101)
+        requestPermissions.launch(perms)
     }
 }
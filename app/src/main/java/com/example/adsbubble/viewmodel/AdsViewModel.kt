@@ -1,6 +1,10 @@
 package com.example.adsbubble.viewmodel
 
+import android.Manifest
+import android.annotation.SuppressLint
 import android.app.Application
+import android.content.pm.PackageManager
+import androidx.core.content.ContextCompat
 import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.viewModelScope
@@ -8,19 +12,49 @@ import com.example.adsbubble.data.api.ApiClient
 import com.example.adsbubble.data.db.AppDatabase
 import com.example.adsbubble.data.db.Ad
 import com.example.adsbubble.data.repo.AdRepository
+import com.example.adsbubble.geofence.GeofenceBootstrap
+import com.example.adsbubble.geofence.GeofenceRegistrationManager
+import com.example.adsbubble.geofence.HybridTrackingController
+import com.google.android.gms.location.LocationServices
+import com.google.android.gms.location.Priority
 import kotlinx.coroutines.launch
 
 class AdsViewModel(application: Application) : AndroidViewModel(application) {
     private val db = AppDatabase.getInstance(application)
     private val prefs = application.getSharedPreferences("prefs", 0)
     private val repo = AdRepository(ApiClient.retrofit, db.adDao(), prefs)
+    private val geofences = GeofenceBootstrap(GeofenceRegistrationManager.getInstance(application), repo::refreshAds) {
+        HybridTrackingController.retainRegistered(application, it)
+    }
 
     val ads: LiveData<List<Ad>> = repo.allAds()
 
+    /**
+     * Refresh ads around a position and register the nearest stores as geofences
+     */
     fun refresh(lat: Double, lon: Double) {
         viewModelScope.launch {
-            repo.refreshAds(lat, lon)
+            try {
+                geofences.seed(lat, lon)
+            } catch (ex: Exception) {
+                ex.printStackTrace()
+            }
+        }
+    }
+
+    /**
+     * [refresh] around a cell/Wi-Fi grade fix; no-op without location permission
+     */
+    @SuppressLint("MissingPermission")
+    fun refreshNearby() {
+        val app = getApplication<Application>()
+        if (ContextCompat.checkSelfPermission(app, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED &&
+            ContextCompat.checkSelfPermission(app, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            return
         }
+        LocationServices.getFusedLocationProviderClient(app)
+            .getCurrentLocation(Priority.PRIORITY_BALANCED_POWER_ACCURACY, null)
+            .addOnSuccessListener { location -> location?.let { refresh(it.latitude, it.longitude) } }
     }
 
     fun markEntered(storeId: String) {
@@ -0,0 +1,283 @@
+package com.adx.integration.data.outbox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import androidx.lifecycle.LiveData;
+
+import com.adx.integration.data.remote.ApiService;
+import com.adx.integration.data.remote.json.ApiConverterFactory;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Retrofit;
+
+public class InteractionOutboxTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final MockWebServer server = new MockWebServer();
+    private final FakeOutboxDao dao = new FakeOutboxDao();
+    private final InteractionOutbox outbox = new InteractionOutbox(null, dao, Runnable::run, () -> NOW);
+    private ApiService api;
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+        api = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(new ApiConverterFactory())
+                .build()
+                .create(ApiService.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void appliedAndDuplicateResultsAreDelivered() throws Exception {
+        queue("k1", "k2");
+        server.enqueue(results(result("k1", "applied", "tx1"), result("k2", "duplicate", "tx-original")));
+
+        outbox.flush(api);
+
+        assertEquals(OutboxEntry.STATE_SENT, dao.get("k1").getState());
+        assertEquals("tx1", dao.get("k1").getTransactionId());
+        assertEquals("tx-original", dao.get("k2").getTransactionId());
+        assertEquals(2, outbox.getDelivered());
+        assertEquals(1, outbox.getServerDuplicates());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void entriesWithoutResultAreResent() throws Exception {
+        queue("k1", "k2", "k3");
+        server.enqueue(results(result("k1", "applied", "tx1"), result("k3", "applied", "tx3")));
+        server.enqueue(results(result("k2", "applied", "tx2")));
+
+        outbox.flush(api);
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(3, keys(server.takeRequest()).size());
+        List<String> resent = keys(server.takeRequest());
+        assertEquals(1, resent.size());
+        assertEquals("k2", resent.get(0));
+        assertEquals(0, dao.countPending());
+        assertEquals(2, dao.get("k2").getAttempts());
+    }
+
+    @Test
+    public void perItemRejectionOnlyRejectsThatEntry() throws Exception {
+        queue("k1", "k2");
+        server.enqueue(results(result("k1", "applied", "tx1"), rejected("k2", "Ad expired")));
+
+        outbox.flush(api);
+
+        assertEquals(OutboxEntry.STATE_SENT, dao.get("k1").getState());
+        assertEquals(OutboxEntry.STATE_REJECTED, dao.get("k2").getState());
+        assertEquals("Ad expired", dao.get("k2").getError());
+        assertEquals(1, outbox.getRejected());
+    }
+
+    @Test
+    public void badRequestAndUnprocessableRejectTheBatch() throws Exception {
+        for (int code : new int[] {400, 422}) {
+            String key = "k" + code;
+            queue(key);
+            server.enqueue(new MockResponse().setResponseCode(code).setBody("{\"success\":false}"));
+
+            outbox.flush(api);
+
+            assertEquals(OutboxEntry.STATE_REJECTED, dao.get(key).getState());
+            assertEquals("HTTP " + code, dao.get(key).getError());
+        }
+        assertEquals(2, outbox.getRejected());
+    }
+
+    @Test
+    public void otherErrorsKeepEntriesPendingForRetry() throws Exception {
+        queue("k1");
+        for (int code : new int[] {401, 404, 429, 500, 503}) {
+            server.enqueue(new MockResponse().setResponseCode(code).setBody("{\"success\":false}"));
+            try {
+                outbox.flush(api);
+                fail("expected HTTP " + code + " to be retried");
+            } catch (IOException expected) {
+                // Retried with backoff by the worker
+            }
+            assertEquals(OutboxEntry.STATE_PENDING, dao.get("k1").getState());
+        }
+        assertEquals(5, dao.get("k1").getAttempts());
+        assertEquals(0, outbox.getRejected());
+    }
+
+    @Test
+    public void entryIsDroppedAfterMaxAttempts() throws Exception {
+        queue("exhausted", "fresh");
+        dao.get("exhausted").setAttempts(10);
+        dao.get("fresh").setAttempts(9);
+        server.enqueue(results(result("fresh", "applied", "tx")));
+
+        outbox.flush(api);
+
+        assertEquals(OutboxEntry.STATE_REJECTED, dao.get("exhausted").getState());
+        assertEquals("Gave up after 10 attempts", dao.get("exhausted").getError());
+        List<String> sent = keys(server.takeRequest());
+        assertEquals(1, sent.size());
+        assertEquals("fresh", sent.get(0));
+        assertEquals(OutboxEntry.STATE_SENT, dao.get("fresh").getState());
+    }
+
+    @Test
+    public void batchSettlingNothingStopsTheFlush() throws Exception {
+        queue("k1");
+        server.enqueue(results());
+
+        try {
+            outbox.flush(api);
+            fail("expected the flush to stop");
+        } catch (IOException expected) {
+            // Retried with backoff by the worker
+        }
+        assertEquals(1, server.getRequestCount());
+        assertEquals(OutboxEntry.STATE_PENDING, dao.get("k1").getState());
+    }
+
+    private void queue(String... keys) {
+        for (String key : keys) {
+            dao.insert(new OutboxEntry(key, OutboxEntry.TYPE_CLICK, "ad-" + key, null, NOW - 1000));
+        }
+    }
+
+    private static JsonObject result(String key, String status, String transactionId) {
+        JsonObject result = new JsonObject();
+        result.addProperty("idempotencyKey", key);
+        result.addProperty("status", status);
+        JsonObject transaction = new JsonObject();
+        transaction.addProperty("transactionId", transactionId);
+        result.add("transaction", transaction);
+        return result;
+    }
+
+    private static JsonObject rejected(String key, String error) {
+        JsonObject result = new JsonObject();
+        result.addProperty("idempotencyKey", key);
+        result.addProperty("status", "rejected");
+        result.addProperty("error", error);
+        return result;
+    }
+
+    private static MockResponse results(JsonObject... results) {
+        JsonArray array = new JsonArray();
+        for (JsonObject result : results) array.add(result);
+        JsonObject data = new JsonObject();
+        data.add("results", array);
+        JsonObject body = new JsonObject();
+        body.addProperty("success", true);
+        body.add("data", data);
+        return new MockResponse().setBody(body.toString());
+    }
+
+    private static List<String> keys(RecordedRequest request) {
+        JsonObject batch = new Gson().fromJson(request.getBody().readUtf8(), JsonObject.class);
+        List<String> keys = new ArrayList<>();
+        for (JsonElement interaction : batch.getAsJsonArray("interactions")) {
+            keys.add(interaction.getAsJsonObject().get("idempotencyKey").getAsString());
+        }
+        return keys;
+    }
+
+    /**
+     * In-memory stand-in for the Room dao, keyed like the unique index on idempotencyKey
+     */
+    private static class FakeOutboxDao implements OutboxDao {
+        private final Map<String, OutboxEntry> byKey = new HashMap<>();
+        private final List<OutboxEntry> rows = new ArrayList<>();
+        private long nextId = 1;
+
+        OutboxEntry get(String key) {
+            return byKey.get(key);
+        }
+
+        @Override
+        public long insert(OutboxEntry entry) {
+            if (byKey.containsKey(entry.getIdempotencyKey())) return -1;
+            entry.setId(nextId++);
+            byKey.put(entry.getIdempotencyKey(), entry);
+            rows.add(entry);
+            return entry.getId();
+        }
+
+        @Override
+        public List<OutboxEntry> getPending(int limit) {
+            List<OutboxEntry> pending = new ArrayList<>();
+            for (OutboxEntry entry : rows) {
+                if (entry.getState() == OutboxEntry.STATE_PENDING && pending.size() < limit) pending.add(entry);
+            }
+            return pending;
+        }
+
+        @Override
+        public int countPending() {
+            return getPending(Integer.MAX_VALUE).size();
+        }
+
+        @Override
+        public LiveData<Integer> observePendingCount() {
+            return null;
+        }
+
+        @Override
+        public void incrementAttempts(List<Long> ids) {
+            for (OutboxEntry entry : rows) {
+                if (ids.contains(entry.getId())) entry.setAttempts(entry.getAttempts() + 1);
+            }
+        }
+
+        @Override
+        public void markSent(String idempotencyKey, String transactionId, long settledAt) {
+            OutboxEntry entry = byKey.get(idempotencyKey);
+            entry.setState(OutboxEntry.STATE_SENT);
+            entry.setTransactionId(transactionId);
+            entry.setSettledAt(settledAt);
+        }
+
+        @Override
+        public void markRejected(String idempotencyKey, String error, long settledAt) {
+            OutboxEntry entry = byKey.get(idempotencyKey);
+            entry.setState(OutboxEntry.STATE_REJECTED);
+            entry.setError(error);
+            entry.setSettledAt(settledAt);
+        }
+
+        @Override
+        public int deleteSettledBefore(long before) {
+            int deleted = 0;
+            for (OutboxEntry entry : new ArrayList<>(rows)) {
+                if (entry.getState() != OutboxEntry.STATE_PENDING && entry.getSettledAt() < before) {
+                    rows.remove(entry);
+                    byKey.remove(entry.getIdempotencyKey());
+                    deleted++;
+                }
+            }
+            return deleted;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.adx.integration.data.remote;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.http.GET;
+import retrofit2.http.POST;
+import retrofit2.http.Query;
+
+public class SingleFlightCallAdapterFactoryTest {
+
+    private static final int CALLERS = 8;
+    private static final long WAIT_SECONDS = 10;
+
+    interface TestApi {
+        @GET("items")
+        Call<String> items(@Query("page") int page);
+
+        @POST("items")
+        Call<String> add();
+    }
+
+    private final MockWebServer server = new MockWebServer();
+    private final GatedDispatcher dispatcher = new GatedDispatcher();
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private long now = 1_700_000_000_000L;
+    private SingleFlightCallAdapterFactory factory;
+    private TestApi api;
+
+    @Before
+    public void setUp() throws IOException {
+        server.setDispatcher(dispatcher);
+        server.start();
+        factory = new SingleFlightCallAdapterFactory(() -> now, 5000);
+        api = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addCallAdapterFactory(factory)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(TestApi.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        dispatcher.release();
+        threads.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void concurrentIdenticalGetsShareOneRequest() throws Exception {
+        dispatcher.response = new MockResponse().setBody("\"page one\"");
+
+        List<Future<Response<String>>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(threads.submit(() -> api.items(1).execute()));
+        }
+        awaitCoalesced(CALLERS - 1);
+        dispatcher.release();
+
+        for (Future<Response<String>> result : results) {
+            assertEquals("page one", result.get(WAIT_SECONDS, TimeUnit.SECONDS).body());
+        }
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, factory.getStarted());
+    }
+
+    @Test
+    public void differentQueriesAreNotCoalesced() throws Exception {
+        dispatcher.release();
+        dispatcher.response = new MockResponse().setBody("\"page\"");
+
+        api.items(1).execute();
+        api.items(2).execute();
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, factory.getCoalesced());
+    }
+
+    @Test
+    public void errorResponseReachesEveryWaiterWithItsOwnBody() throws Exception {
+        dispatcher.response = new MockResponse().setResponseCode(503).setBody("busy");
+
+        List<Future<Response<String>>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(threads.submit(() -> api.items(1).execute()));
+        }
+        awaitCoalesced(CALLERS - 1);
+        dispatcher.release();
+
+        for (Future<Response<String>> result : results) {
+            Response<String> response = result.get(WAIT_SECONDS, TimeUnit.SECONDS);
+            assertEquals(503, response.code());
+            assertEquals("busy", response.errorBody().string());
+        }
+        assertEquals(1, server.getRequestCount());
+
+        // A failed call is not reused
+        api.items(1).execute();
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void networkFailureReachesEveryWaiter() throws Exception {
+        dispatcher.response = new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START);
+
+        RecordingCallback[] callbacks = new RecordingCallback[CALLERS];
+        for (int i = 0; i < CALLERS; i++) {
+            callbacks[i] = new RecordingCallback();
+            api.items(1).enqueue(callbacks[i]);
+        }
+        dispatcher.release();
+
+        for (RecordingCallback callback : callbacks) {
+            assertTrue(callback.done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+            assertTrue(callback.failure instanceof IOException);
+        }
+        assertEquals(1, factory.getStarted());
+    }
+
+    @Test
+    public void cancellingOneWaiterLeavesTheOthersRunning() throws Exception {
+        dispatcher.response = new MockResponse().setBody("\"page one\"");
+
+        List<Call<String>> calls = new ArrayList<>();
+        RecordingCallback[] callbacks = new RecordingCallback[3];
+        for (int i = 0; i < callbacks.length; i++) {
+            callbacks[i] = new RecordingCallback();
+            Call<String> call = api.items(1);
+            call.enqueue(callbacks[i]);
+            calls.add(call);
+        }
+        // The first caller leads the shared request; cancelling it must not cancel that request
+        calls.get(0).cancel();
+        calls.get(1).cancel();
+        dispatcher.release();
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(callbacks[i].done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+            assertTrue(callbacks[i].failure instanceof IOException);
+        }
+        assertTrue(callbacks[2].done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("page one", callbacks[2].response.body());
+        assertFalse(calls.get(2).isCanceled());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void completedResponseIsReusedUntilAWriteOrTheWindowEnds() throws Exception {
+        dispatcher.release();
+        dispatcher.response = new MockResponse().setBody("\"page\"");
+
+        api.items(1).execute();
+        now += 4000;
+        api.items(1).execute();
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, factory.getReused());
+
+        now += 2000;
+        api.items(1).execute();
+        assertEquals(2, server.getRequestCount());
+
+        api.add().execute();
+        api.items(1).execute();
+        assertEquals(4, server.getRequestCount());
+    }
+
+    private void awaitCoalesced(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_SECONDS);
+        while (factory.getCoalesced() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, factory.getCoalesced());
+    }
+
+    /**
+     * Holds every request until released, so callers overlap deterministically
+     */
+    private static class GatedDispatcher extends Dispatcher {
+        private final CountDownLatch gate = new CountDownLatch(1);
+        volatile MockResponse response;
+
+        void release() {
+            gate.countDown();
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            gate.await();
+            return response;
+        }
+    }
+
+    private static class RecordingCallback implements Callback<String> {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Response<String> response;
+        volatile Throwable failure;
+
+        @Override
+        public void onResponse(Call<String> call, Response<String> response) {
+            this.response = response;
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Call<String> call, Throwable t) {
+            failure = t;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.adx.integration.data.remote.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.adx.integration.data.model.Advertisement;
+import com.adx.integration.data.model.Store;
+import com.adx.integration.data.remote.ApiService;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The streaming adapters must bind exactly what Gson's reflective adapter binds;
+ * both results are compared as trees written by a plain reflective Gson
+ */
+public class ModelAdapterParityTest {
+
+    private static final Gson REFLECTIVE = new Gson();
+    private static final Gson TREE = new GsonBuilder().serializeNulls().create();
+
+    @Test
+    public void storeMatchesReflectiveParse() throws IOException {
+        assertParity(fixture("store_full.json"), Store.class);
+    }
+
+    @Test
+    public void advertisementMatchesReflectiveParse() throws IOException {
+        assertParity(fixture("advertisement_full.json"), Advertisement.class);
+    }
+
+    @Test
+    public void eachNullFieldMatchesReflectiveParse() throws IOException {
+        assertParityWithEachFieldNull(fixture("store_full.json"), Store.class);
+        assertParityWithEachFieldNull(fixture("advertisement_full.json"), Advertisement.class);
+    }
+
+    @Test
+    public void emptyAndNullObjectsMatchReflectiveParse() {
+        assertParity("{}", Store.class);
+        assertParity("{}", Advertisement.class);
+        assertNull(ApiGson.get().fromJson("null", Store.class));
+    }
+
+    @Test
+    public void wrappedListsMatchReflectiveParse() throws IOException {
+        String json = "{\"success\":true,\"data\":[" + fixture("store_full.json") + ",null,{}],\"message\":\"ok\"}";
+        Type type = new TypeToken<ApiService.ApiResponse<List<Store>>>() {}.getType();
+
+        assertEquals(TREE.toJsonTree(REFLECTIVE.fromJson(json, type)),
+                TREE.toJsonTree(ApiGson.get().fromJson(json, type)));
+    }
+
+    @Test
+    public void listGsonSkipsOnlyStatsLists() throws IOException {
+        String storeJson = fixture("store_full.json");
+        Store store = ApiGson.forLists().fromJson(storeJson, Store.class);
+        assertNull(store.getStats().getUniqueVisitors());
+        assertNotNull(ApiGson.get().fromJson(storeJson, Store.class).getStats().getUniqueVisitors());
+
+        String adJson = fixture("advertisement_full.json");
+        Advertisement ad = ApiGson.forLists().fromJson(adJson, Advertisement.class);
+        assertNull(ad.getStats().getUniqueUsers());
+
+        // Apart from the skipped lists, list parsing binds the same values
+        JsonObject expected = TREE.toJsonTree(REFLECTIVE.fromJson(storeJson, Store.class)).getAsJsonObject();
+        expected.getAsJsonObject("stats").add("uniqueVisitors", JsonNull.INSTANCE);
+        assertEquals(expected, TREE.toJsonTree(store));
+
+        expected = TREE.toJsonTree(REFLECTIVE.fromJson(adJson, Advertisement.class)).getAsJsonObject();
+        expected.getAsJsonObject("stats").add("uniqueUsers", JsonNull.INSTANCE);
+        assertEquals(expected, TREE.toJsonTree(ad));
+    }
+
+    private static <T> void assertParityWithEachFieldNull(String json, Class<T> type) {
+        JsonObject full = REFLECTIVE.fromJson(json, JsonObject.class);
+        for (Map.Entry<String, JsonElement> field : full.entrySet()) {
+            JsonObject copy = full.deepCopy();
+            copy.add(field.getKey(), JsonNull.INSTANCE);
+            assertParity(copy.toString(), type);
+        }
+    }
+
+    private static <T> void assertParity(String json, Class<T> type) {
+        JsonElement expected = TREE.toJsonTree(REFLECTIVE.fromJson(json, type));
+        JsonElement actual = TREE.toJsonTree(ApiGson.get().fromJson(json, type));
+        assertEquals(json, expected, actual);
+    }
+
+    private static String fixture(String name) throws IOException {
+        InputStream in = ModelAdapterParityTest.class.getResourceAsStream("/json/" + name);
+        if (in == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        StringBuilder text = new StringBuilder();
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+        }
+        return text.toString();
+    }
+}
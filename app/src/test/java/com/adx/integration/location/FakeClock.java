@@ -0,0 +1,19 @@
+package com.adx.integration.location;
+
+import com.adx.integration.utils.Clock;
+
+/**
+ * Clock the test moves by hand
+ */
+class FakeClock implements Clock {
+    long now;
+
+    FakeClock(long now) {
+        this.now = now;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+}
@@ -0,0 +1,177 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.adx.integration.data.model.Store;
+import com.adx.integration.utils.GeoMath;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+public class FenceTableTest {
+
+    @Test
+    public void putStoresFenceColumns() {
+        FenceTable table = new FenceTable();
+        Store store = TestStores.store("a", 37.5, -122.25, 75, 4, 12);
+
+        int slot = table.put(store);
+
+        assertEquals(0, slot);
+        assertEquals(slot, table.slotOf("a"));
+        assertEquals(37.5, table.latitude(slot), 0);
+        assertEquals(-122.25, table.longitude(slot), 0);
+        assertEquals(75f, table.radius(slot), 0);
+        assertEquals(4, table.creditDeduction(slot));
+        assertEquals(12, table.timeoutMinutes(slot));
+        assertEquals("a", table.id(slot));
+        assertSame(store, table.store(slot));
+    }
+
+    @Test
+    public void putOverwritesInPlace() {
+        FenceTable table = new FenceTable();
+        int slot = table.put(TestStores.store("a", 37.0, -122.0, 50));
+
+        assertEquals(slot, table.put(TestStores.store("a", 38.0, -122.0, 60)));
+        assertEquals(1, table.size());
+        assertEquals(38.0, table.latitude(slot), 0);
+        assertEquals(60f, table.radius(slot), 0);
+    }
+
+    @Test
+    public void putRejectsDisabledStoreAndDropsOldFence() {
+        FenceTable table = new FenceTable();
+        table.put(TestStores.store("a", 37.0, -122.0, 50));
+        Store disabled = TestStores.store("a", 37.0, -122.0, 50);
+        disabled.getRadiusSettings().setEnabled(false);
+
+        assertEquals(FenceTable.NO_SLOT, table.put(disabled));
+        assertEquals(FenceTable.NO_SLOT, table.slotOf("a"));
+        assertEquals(0, table.size());
+        assertEquals(FenceTable.NO_SLOT, table.put(null));
+    }
+
+    @Test
+    public void removedSlotsAreReused() {
+        FenceTable table = new FenceTable(2);
+        int a = table.put(TestStores.store("a", 37.0, -122.0, 50));
+        table.put(TestStores.store("b", 37.1, -122.0, 50));
+        table.put(TestStores.store("c", 37.2, -122.0, 50));
+
+        assertEquals(a, table.remove("a"));
+        assertEquals(FenceTable.NO_SLOT, table.remove("a"));
+        assertFalse(table.isActive(a));
+        assertNull(table.id(a));
+
+        assertEquals(a, table.put(TestStores.store("d", 37.3, -122.0, 50)));
+        assertTrue(table.isActive(a));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void capacityIsSlotHighWaterMark() {
+        FenceTable table = new FenceTable(64);
+        assertEquals(0, table.capacity());
+
+        for (int i = 0; i < 100; i++) {
+            table.put(TestStores.store("s" + i, 37.0 + i * 0.001, -122.0, 50));
+        }
+        assertEquals(100, table.capacity());
+
+        table.remove("s99");
+        table.remove("s10");
+        assertEquals(100, table.capacity());
+        assertEquals(98, table.size());
+
+        int active = 0;
+        for (int slot = 0; slot < table.capacity(); slot++) {
+            if (table.isActive(slot)) active++;
+        }
+        assertEquals(98, active);
+        assertFalse(table.isActive(table.capacity()));
+        assertFalse(table.isActive(-1));
+    }
+
+    @Test
+    public void clearResetsSlots() {
+        FenceTable table = new FenceTable();
+        table.put(TestStores.store("a", 37.0, -122.0, 50));
+        table.put(TestStores.store("b", 37.1, -122.0, 50));
+
+        table.clear();
+
+        assertEquals(0, table.size());
+        assertEquals(0, table.capacity());
+        assertEquals(FenceTable.NO_SLOT, table.slotOf("a"));
+        assertEquals(0, table.put(TestStores.store("c", 37.2, -122.0, 50)));
+    }
+
+    @Test
+    public void containmentScanDoesNotAllocate() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        FenceTable table = new FenceTable();
+        Random random = new Random(5);
+        String[] tracked = new String[8];
+        for (int i = 0; i < 2_000; i++) {
+            String id = "s" + i;
+            table.put(TestStores.store(id, 37.7 + random.nextDouble() * 0.05, -122.45 + random.nextDouble() * 0.05,
+                    50 + random.nextInt(200), 1 + random.nextInt(5), 5));
+            if (i < tracked.length) tracked[i] = id;
+        }
+        // Holes left by removals are skipped by the scan
+        table.remove("s100");
+        table.remove("s200");
+
+        double[] latitudes = new double[1_000];
+        double[] longitudes = new double[1_000];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = 37.7 + random.nextDouble() * 0.05;
+            longitudes[i] = -122.45 + random.nextDouble() * 0.05;
+        }
+        long threadId = Thread.currentThread().getId();
+        long sink = evaluate(table, tracked, latitudes, longitudes); // warm up
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        sink += evaluate(table, tracked, latitudes, longitudes);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(sink > 0);
+        // Allow for incidental JVM bookkeeping; one object per fix would be far more
+        assertTrue("allocated " + allocated + " bytes", allocated < latitudes.length);
+    }
+
+    /**
+     * Per fix: the containment pass over every fence, then the slot lookup for each tracked store,
+     * the same work the radius engine does
+     */
+    private static long evaluate(FenceTable table, String[] tracked, double[] latitudes, double[] longitudes) {
+        long credits = 0;
+        for (int fix = 0; fix < latitudes.length; fix++) {
+            for (int slot = 0; slot < table.capacity(); slot++) {
+                if (!table.isActive(slot)) continue;
+                double distance = GeoMath.distanceMeters(latitudes[fix], longitudes[fix],
+                        table.latitude(slot), table.longitude(slot));
+                if (distance <= table.radius(slot)) {
+                    credits += table.creditDeduction(slot);
+                }
+            }
+            for (String id : tracked) {
+                credits += table.slotOf(id) != FenceTable.NO_SLOT ? 0 : 1;
+            }
+        }
+        return credits;
+    }
+}
@@ -0,0 +1,91 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+public class LocationHistoryLogTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsBackFlushedAndBufferedPoints() throws IOException {
+        File file = folder.newFile();
+        LocationHistoryLog log = new LocationHistoryLog(file);
+        for (int i = 0; i < 40; i++) {
+            log.append(point(i));
+        }
+
+        // 32 points went out as one chunk, 8 are still buffered
+        assertEquals(32, log.getPointsWritten());
+        List<TrackPoint> points = log.read(0);
+        assertEquals(40, points.size());
+        assertEquals(point(39).getTimeMs(), points.get(39).getTimeMs());
+        assertEquals(point(39).getLatitude(), points.get(39).getLatitude(), 1e-6);
+
+        log.flush();
+        List<TrackPoint> reopened = new LocationHistoryLog(file).read(0);
+        assertEquals(40, reopened.size());
+        assertEquals(10, new LocationHistoryLog(file).read(point(30).getTimeMs()).size());
+    }
+
+    @Test
+    public void trimKeepsNewestChunks() throws IOException {
+        File file = folder.newFile();
+        LocationHistoryLog log = new LocationHistoryLog(file, 1024);
+        for (int i = 0; i < 32 * 20; i++) {
+            log.append(point(i));
+        }
+
+        assertTrue(file.length() <= 1024);
+        List<TrackPoint> points = log.read(0);
+        assertTrue(points.size() < 32 * 20);
+        assertEquals(point(32 * 20 - 1).getTimeMs(), points.get(points.size() - 1).getTimeMs());
+    }
+
+    @Test
+    public void damagedChunkIsSkippedAndTornTailIgnored() throws IOException {
+        File file = folder.newFile();
+        LocationHistoryLog log = new LocationHistoryLog(file);
+        for (int i = 0; i < 32 * 3; i++) {
+            log.append(point(i));
+        }
+        long chunkBytes = file.length() / 3;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // Damage a byte inside the second chunk, then leave half a chunk at the end
+            raf.seek(chunkBytes + chunkBytes / 2);
+            int b = raf.read();
+            raf.seek(chunkBytes + chunkBytes / 2);
+            raf.write(b ^ 0xFF);
+            raf.setLength(file.length() - chunkBytes / 2);
+        }
+
+        LocationHistoryLog reopened = new LocationHistoryLog(file);
+        List<TrackPoint> points = reopened.read(0);
+        assertEquals(32, points.size());
+        assertEquals(point(0).getTimeMs(), points.get(0).getTimeMs());
+        assertEquals(1, reopened.getCorruptChunks());
+    }
+
+    @Test
+    public void missingFileReadsEmpty() throws IOException {
+        assertTrue(new LocationHistoryLog(new File(folder.getRoot(), "none.bin")).read(0).isEmpty());
+    }
+
+    /** A walk north, one fix every 5 seconds */
+    private static TrackPoint point(int i) {
+        return new TrackPoint(37.7749 + i * 5e-5, -122.4194, T0 + i * 5000L);
+    }
+}
@@ -0,0 +1,159 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.adx.integration.location.LocationSamplingPolicy.Accuracy;
+import com.adx.integration.location.LocationSamplingPolicy.SamplingPlan;
+import com.adx.integration.utils.GeoMath;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class LocationSamplingPolicyTest {
+
+    private static final long BASELINE_INTERVAL_MS = 5000; // the fixed 5 s request the policy replaced
+
+    private final LocationSamplingPolicy policy = new LocationSamplingPolicy();
+
+    @Test
+    public void activeFenceOrEdgeWithin50mSamplesEvery5s() {
+        SamplingPlan inside = policy.plan(0, 0, false);
+        SamplingPlan active = policy.plan(3000, 0, true);
+
+        assertEquals(new SamplingPlan(5000, 2000, Accuracy.HIGH, 5), inside);
+        assertEquals(inside, active);
+        assertEquals(inside, policy.plan(50, 30, false));
+    }
+
+    @Test
+    public void approachingEdgeStaysHighAccuracyAndTightensWithSpeed() {
+        SamplingPlan walking = policy.plan(400, 1.4f, false);
+        SamplingPlan driving = policy.plan(400, 15, false);
+
+        assertEquals(Accuracy.HIGH, walking.getAccuracy());
+        assertEquals(30_000, walking.getIntervalMs());
+        assertEquals(25, walking.getMinDisplacementMeters(), 0);
+        // 400 m at 15 m/s is reached in ~27 s: sample twice before that
+        assertEquals(13_333, driving.getIntervalMs());
+        assertEquals(6_666, driving.getFastestIntervalMs());
+    }
+
+    @Test
+    public void standingStillIsPlannedAtWalkingSpeed() {
+        assertEquals(policy.plan(400, 1.4f, false), policy.plan(400, 0, false));
+        assertEquals(policy.plan(1500, 1.4f, false), policy.plan(1500, 0.2f, false));
+    }
+
+    @Test
+    public void midRangeUsesBalancedPowerWithinBounds() {
+        SamplingPlan walking = policy.plan(1500, 1.4f, false);
+        SamplingPlan fast = policy.plan(1500, 100, false);
+
+        assertEquals(Accuracy.BALANCED, walking.getAccuracy());
+        assertEquals(2 * 60 * 1000, walking.getIntervalMs());
+        assertEquals(15_000, fast.getIntervalMs());
+        assertEquals(50, fast.getMinDisplacementMeters(), 0);
+    }
+
+    @Test
+    public void farOrUnknownFencesBackOffToLowPower() {
+        SamplingPlan far = policy.plan(10_000, 1.4f, false);
+        SamplingPlan unknown = policy.plan(Double.POSITIVE_INFINITY, 1.4f, false);
+        SamplingPlan highway = policy.plan(10_000, 30, false);
+
+        assertEquals(Accuracy.LOW_POWER, far.getAccuracy());
+        assertEquals(5 * 60 * 1000, far.getIntervalMs());
+        assertEquals(far, unknown);
+        // Still never slower than one fix a minute
+        assertEquals(60_000, highway.getIntervalMs());
+    }
+
+    @Test
+    public void smallIntervalChangesDoNotReregister() {
+        SamplingPlan plan = new SamplingPlan(40_000, 20_000, Accuracy.BALANCED, 50);
+
+        assertFalse(plan.differsSignificantly(new SamplingPlan(32_000, 16_000, Accuracy.BALANCED, 50)));
+        assertTrue(plan.differsSignificantly(new SamplingPlan(30_000, 15_000, Accuracy.BALANCED, 50)));
+        assertTrue(plan.differsSignificantly(new SamplingPlan(40_000, 20_000, Accuracy.HIGH, 50)));
+        assertTrue(plan.differsSignificantly(null));
+    }
+
+    @Test
+    public void fixesPerHourOnRecordedTraces() throws IOException {
+        String[] traces = {"visit_and_leave.csv", "long_stay.csv", "boundary_jitter.csv", "walk_past_two_stores.csv"};
+        System.out.println("trace                      minutes  baseline/h  adaptive/h  enters  exits");
+        for (String resource : traces) {
+            ReplayTrace trace = ReplayTrace.load(resource);
+            Sampled baseline = replay(trace, 0, true);
+            Sampled adaptive = replay(trace, 0, false);
+            report(resource, trace, baseline, adaptive);
+
+            // Near the stores the policy samples as tightly as the baseline, so visits are billed the same
+            assertEquals(resource, baseline.enters, adaptive.enters);
+            assertEquals(resource, baseline.exits, adaptive.exits);
+            assertTrue(resource, adaptive.fixes <= baseline.fixes);
+        }
+
+        // The same walk with every store 3 km away: nothing to bill, so sampling backs off
+        ReplayTrace trace = ReplayTrace.load("walk_past_two_stores.csv");
+        Sampled baseline = replay(trace, 3000, true);
+        Sampled adaptive = replay(trace, 3000, false);
+        report("walk, stores 3 km away", trace, baseline, adaptive);
+        assertTrue(adaptive.fixes * 10 <= baseline.fixes);
+    }
+
+    /**
+     * Replays a trace as a device would sample it: the next fix is taken one planned
+     * interval after the last, from the recorded position at that time
+     */
+    private Sampled replay(ReplayTrace trace, double storeOffsetMeters, boolean fixedInterval) {
+        FakeClock clock = new FakeClock(trace.times[0]);
+        RadiusReplayHarness.CountingListener listener = new RadiusReplayHarness.CountingListener();
+        RadiusCreditEngine engine = new RadiusCreditEngine(clock, new RadiusReplayHarness.FakeGateway(),
+                new RadiusReplayTest.InlineEffects(), null, listener);
+        engine.upsertStores(RadiusReplayTest.catalog());
+        double offsetDegrees = storeOffsetMeters / GeoMath.METERS_PER_DEGREE;
+
+        Sampled sampled = new Sampled();
+        long nextFixAt = trace.times[0];
+        int previous = -1;
+        for (int i = 0; i < trace.size; i++) {
+            if (trace.times[i] < nextFixAt) continue;
+            double latitude = trace.latitudes[i] - offsetDegrees;
+            clock.now = trace.times[i];
+            engine.evaluate(latitude, trace.longitudes[i], trace.accuracies[i], trace.times[i]);
+            engine.advanceTimeouts();
+            sampled.fixes++;
+
+            float speed = 0;
+            if (previous >= 0) {
+                double meters = GeoMath.distanceMeters(trace.latitudes[previous], trace.longitudes[previous],
+                        trace.latitudes[i], trace.longitudes[i]);
+                speed = (float) (meters * 1000 / (trace.times[i] - trace.times[previous]));
+            }
+            previous = i;
+            long interval = fixedInterval ? BASELINE_INTERVAL_MS
+                    : policy.plan(engine.nearestEdgeDistance(latitude, trace.longitudes[i]), speed,
+                            engine.hasTrackedStores()).getIntervalMs();
+            nextFixAt = trace.times[i] + interval;
+        }
+        sampled.enters = listener.enters;
+        sampled.exits = listener.exits;
+        return sampled;
+    }
+
+    private static void report(String name, ReplayTrace trace, Sampled baseline, Sampled adaptive) {
+        double hours = (trace.times[trace.size - 1] - trace.times[0]) / 3_600_000.0;
+        System.out.printf("%-26s %7.1f  %10.0f  %10.0f  %6d  %5d%n", name, hours * 60,
+                baseline.fixes / hours, adaptive.fixes / hours, adaptive.enters, adaptive.exits);
+    }
+
+    private static class Sampled {
+        long fixes;
+        long enters;
+        long exits;
+    }
+}
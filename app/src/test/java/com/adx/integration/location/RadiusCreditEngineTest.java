@@ -0,0 +1,99 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+
+import com.adx.integration.data.model.Store;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RadiusCreditEngineTest {
+
+    @Test
+    public void deductRefusedBySaturatedEffectStageIsRetried() throws IOException {
+        ReplayTrace trace = ReplayTrace.load("visit_and_leave.csv");
+        FakeClock clock = new FakeClock(trace.times[0]);
+        CountingGateway gateway = new CountingGateway();
+        SaturatingEffects effects = new SaturatingEffects();
+        RecordingListener listener = new RecordingListener();
+        RadiusCreditEngine engine = new RadiusCreditEngine(clock, gateway, effects, null, listener);
+        // The enter deduct is the first effect: refuse it and its retries on the next four fixes
+        effects.refuseNext = 5;
+
+        for (int i = 0; i < trace.size; i++) {
+            clock.now = trace.times[i];
+            engine.evaluate(trace.latitudes[i], trace.longitudes[i], trace.accuracies[i], trace.times[i]);
+            engine.advanceTimeouts();
+        }
+
+        assertEquals(5, effects.refused);
+        assertEquals(1, gateway.deducts);
+        assertEquals(Arrays.asList("enter A", "exit A"), listener.events);
+    }
+
+    private static class CountingGateway implements RadiusCreditEngine.Gateway {
+        int deducts;
+
+        @Override
+        public List<Store> getNearbyStores(double latitude, double longitude, int radiusMeters) {
+            return RadiusReplayTest.catalog();
+        }
+
+        @Override
+        public boolean deductRadiusCredits(String storeId, int credits) {
+            deducts++;
+            return true;
+        }
+
+        @Override
+        public void returnRadiusCredits(String storeId) {
+            // Not reached: the visit is shorter than the timeout
+        }
+    }
+
+    /**
+     * Inline effects that refuse the next {@code refuseNext} effects, as a full pool would
+     */
+    private static class SaturatingEffects extends RadiusReplayTest.InlineEffects {
+        int refuseNext;
+        int refused;
+
+        @Override
+        public boolean runEffect(Runnable effect) {
+            if (refuseNext > 0) {
+                refuseNext--;
+                refused++;
+                return false;
+            }
+            return super.runEffect(effect);
+        }
+    }
+
+    private static class RecordingListener implements RadiusCreditEngine.Listener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onRadiusEntered(Store store) {
+            events.add("enter " + store.getId());
+        }
+
+        @Override
+        public void onRadiusExited(Store store) {
+            events.add("exit " + store.getId());
+        }
+
+        @Override
+        public void onRadiusCreditsReturned(String storeId) {
+            events.add("refund " + storeId);
+        }
+
+        @Override
+        public void onTimeoutsPending() {
+            // Timeouts are advanced after every fix
+        }
+    }
+}
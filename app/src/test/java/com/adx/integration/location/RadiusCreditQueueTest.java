@@ -0,0 +1,343 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class RadiusCreditQueueTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FakeClock clock = new FakeClock(T0);
+    private final FakeSender sender = new FakeSender();
+    private final RecordingListener listener = new RecordingListener();
+    private final List<RadiusCreditQueue> queues = new ArrayList<>();
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "radius_operations.log");
+    }
+
+    @After
+    public void tearDown() {
+        for (RadiusCreditQueue queue : queues) {
+            queue.close();
+        }
+    }
+
+    @Test
+    public void refundOfUnsentDeductNetsOut() throws IOException {
+        RadiusCreditQueue queue = open();
+        queue.deduct("a", 3);
+
+        assertTrue(queue.refund("a"));
+        queue.flush();
+
+        assertTrue(sender.batches.isEmpty());
+        assertEquals(2, queue.getNetted());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void refundOfSentDeductIsSentForThatEntry() throws IOException {
+        RadiusCreditQueue queue = open();
+        String entryId = queue.deduct("a", 3);
+        queue.flush();
+
+        queue.refund("a");
+        queue.flush();
+
+        assertEquals(2, sender.batches.size());
+        RadiusCreditQueue.Operation refund = sender.batches.get(1).get(0);
+        assertEquals(RadiusCreditQueue.TYPE_REFUND, refund.type);
+        assertEquals(entryId, refund.entryId);
+        assertEquals(3, refund.credits);
+        assertEquals(2, listener.applied.size());
+    }
+
+    @Test
+    public void refundWithoutOpenEntryIsIgnored() throws IOException {
+        RadiusCreditQueue queue = open();
+
+        assertFalse(queue.refund("a"));
+        queue.flush();
+
+        assertTrue(sender.batches.isEmpty());
+        assertEquals(0, queue.getQueued());
+    }
+
+    @Test
+    public void refundAfterRejectedDeductIsDropped() throws IOException {
+        RadiusCreditQueue queue = open();
+        String entryId = queue.deduct("a", 3);
+        sender.rejectNext(entryId);
+        queue.flush();
+
+        assertEquals(1, listener.rejected.size());
+        assertTrue(queue.refund("a"));
+        queue.flush();
+
+        assertEquals(1, sender.batches.size());
+        assertEquals(1, queue.getRejected());
+    }
+
+    @Test
+    public void failedSendIsRetriedUnderSameIds() throws IOException {
+        RadiusCreditQueue queue = open();
+        String entryId = queue.deduct("a", 3);
+        sender.failNext(new IOException("offline"));
+
+        try {
+            queue.flush();
+            fail("expected the send to fail");
+        } catch (IOException expected) {
+            // Retried below
+        }
+        assertEquals(1, queue.getPendingCount());
+
+        queue.flush();
+        assertEquals(2, sender.batches.size());
+        assertEquals(entryId, sender.batches.get(1).get(0).id);
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(1, queue.getSent());
+    }
+
+    @Test
+    public void refusedBatchIsParkedUntilRestore() throws IOException {
+        RadiusCreditQueue queue = open();
+        String parkedId = queue.deduct("a", 3);
+        sender.failNext(new RadiusCreditQueue.BatchRejectedException("404"));
+
+        try {
+            queue.flush();
+            fail("expected the batch to be refused");
+        } catch (RadiusCreditQueue.BatchRejectedException expected) {
+            // Parked
+        }
+        assertEquals(1, queue.getParkedCount());
+
+        // Parked operations are not resent, but new ones still go out
+        queue.flush();
+        assertEquals(1, sender.batches.size());
+        String nextId = queue.deduct("b", 2);
+        queue.flush();
+        assertEquals(Collections.singletonList(nextId), ids(sender.batches.get(1)));
+
+        queue.close();
+        RadiusCreditQueue restored = open();
+        restored.restore();
+        restored.flush();
+        assertEquals(Collections.singletonList(parkedId), ids(sender.batches.get(2)));
+        assertEquals(0, restored.getParkedCount());
+    }
+
+    @Test
+    public void refundNetsParkedDeduct() throws IOException {
+        RadiusCreditQueue queue = open();
+        queue.deduct("a", 3);
+        sender.failNext(new RadiusCreditQueue.BatchRejectedException("400"));
+        try {
+            queue.flush();
+        } catch (RadiusCreditQueue.BatchRejectedException expected) {
+            // Parked
+        }
+
+        assertTrue(queue.refund("a"));
+        assertEquals(0, queue.getParkedCount());
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void restoreReplaysUnsentOperations() throws IOException {
+        RadiusCreditQueue queue = open();
+        String sentId = queue.deduct("a", 3);
+        queue.flush();
+        String unsentId = queue.deduct("b", 2);
+        queue.close();
+
+        RadiusCreditQueue restored = open();
+        restored.restore();
+        assertEquals(1, restored.getPendingCount());
+
+        restored.refund("a");
+        restored.flush();
+        List<RadiusCreditQueue.Operation> batch = sender.batches.get(1);
+        assertEquals(unsentId, batch.get(0).id);
+        assertEquals(sentId, batch.get(1).entryId);
+    }
+
+    @Test
+    public void refundRepeatedAfterCrashIsNotSentTwice() throws IOException {
+        RadiusCreditQueue queue = open();
+        queue.deduct("a", 3);
+        queue.flush();
+        // The refund is on disk but the crash hits before the session journal records it,
+        // so the restarted engine fires the refund again
+        queue.refund("a");
+        queue.close();
+
+        RadiusCreditQueue restored = open();
+        restored.restore();
+        assertFalse(restored.refund("a"));
+        restored.flush();
+
+        List<RadiusCreditQueue.Operation> batch = sender.batches.get(1);
+        assertEquals(1, batch.size());
+        assertEquals(RadiusCreditQueue.TYPE_REFUND, batch.get(0).type);
+    }
+
+    @Test
+    public void rotationCarriesOpenAndRejectedEntries() throws IOException {
+        RotationState state = buildRotatedLog();
+
+        assertTrue(new File(file.getPath() + ".1").exists());
+        assertTrue(file.length() < new File(file.getPath() + ".1").length());
+        assertRestoredState(state);
+    }
+
+    @Test
+    public void restoreFallsBackToPreviousGenerationMidRotation() throws IOException {
+        RotationState state = buildRotatedLog();
+
+        // Crash between the renames: the current generation has moved away and
+        // the new one has not been moved in yet
+        File previous = new File(file.getPath() + ".1");
+        assertTrue(previous.delete());
+        assertTrue(file.renameTo(previous));
+
+        assertRestoredState(state);
+        assertTrue(file.exists());
+    }
+
+    private RotationState buildRotatedLog() throws IOException {
+        RadiusCreditQueue queue = open(4 * 1024);
+        RotationState state = new RotationState();
+        state.openId = queue.deduct("open", 3);
+        queue.flush();
+        state.rejectedId = queue.deduct("rejected", 2);
+        sender.rejectNext(state.rejectedId);
+        queue.flush();
+        clock.now = T0 + 5_000;
+        state.pendingId = queue.deduct("pending", 1);
+        clock.now = T0 + 60_000;
+        for (int i = 0; i < 100; i++) {
+            queue.deduct("churn" + i, 1);
+            queue.refund("churn" + i);
+        }
+        queue.close();
+        sender.batches.clear();
+        return state;
+    }
+
+    private void assertRestoredState(RotationState state) throws IOException {
+        RadiusCreditQueue restored = open();
+        restored.restore();
+        assertEquals(1, restored.getPendingCount());
+
+        assertTrue(restored.refund("open"));
+        assertTrue(restored.refund("rejected"));
+        restored.flush();
+
+        assertEquals(1, sender.batches.size());
+        List<RadiusCreditQueue.Operation> batch = sender.batches.get(0);
+        assertEquals(2, batch.size());
+        assertEquals(state.pendingId, batch.get(0).id);
+        assertEquals(T0 + 5_000, batch.get(0).createdAt);
+        RadiusCreditQueue.Operation refund = batch.get(1);
+        assertEquals(state.openId, refund.entryId);
+        assertEquals(3, refund.credits);
+        restored.close();
+
+        // The recovered state is durable in the current generation
+        RadiusCreditQueue again = open();
+        again.restore();
+        assertEquals(0, again.getPendingCount());
+        assertFalse(again.refund("open"));
+    }
+
+    private RadiusCreditQueue open() {
+        return open(256 * 1024);
+    }
+
+    private RadiusCreditQueue open(long maxAuditBytes) {
+        RadiusCreditQueue queue = new RadiusCreditQueue(file, clock, sender, listener, maxAuditBytes);
+        queues.add(queue);
+        return queue;
+    }
+
+    private static List<String> ids(List<RadiusCreditQueue.Operation> operations) {
+        List<String> ids = new ArrayList<>();
+        for (RadiusCreditQueue.Operation op : operations) ids.add(op.id);
+        return ids;
+    }
+
+    private static class RotationState {
+        String openId;
+        String rejectedId;
+        String pendingId;
+    }
+
+    /**
+     * Records batches; failures and rejections are scripted per send
+     */
+    private static class FakeSender implements RadiusCreditQueue.Sender {
+        final List<List<RadiusCreditQueue.Operation>> batches = new ArrayList<>();
+        private final Deque<IOException> failures = new ArrayDeque<>();
+        private final Set<String> rejections = new HashSet<>();
+
+        void failNext(IOException failure) {
+            failures.add(failure);
+        }
+
+        void rejectNext(String id) {
+            rejections.add(id);
+        }
+
+        @Override
+        public Set<String> send(List<RadiusCreditQueue.Operation> operations) throws IOException {
+            batches.add(new ArrayList<>(operations));
+            IOException failure = failures.poll();
+            if (failure != null) throw failure;
+            Set<String> rejected = new HashSet<>(rejections);
+            rejections.clear();
+            return rejected;
+        }
+    }
+
+    private static class RecordingListener implements RadiusCreditQueue.Listener {
+        final List<RadiusCreditQueue.Operation> applied = new ArrayList<>();
+        final List<RadiusCreditQueue.Operation> rejected = new ArrayList<>();
+
+        @Override
+        public void onApplied(RadiusCreditQueue.Operation operation) {
+            applied.add(operation);
+        }
+
+        @Override
+        public void onEntryRejected(RadiusCreditQueue.Operation deduct) {
+            rejected.add(deduct);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.adx.integration.location.RadiusPresenceTracker.Transition;
+import com.adx.integration.utils.GeoMath;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RadiusPresenceTrackerTest {
+
+    private static final double STORE_LAT = 37.7749;
+    private static final double STORE_LON = -122.4194;
+    private static final float STORE_RADIUS = 50;
+
+    private final RadiusPresenceTracker tracker = new RadiusPresenceTracker();
+
+    @Test
+    public void recordedJitterAtFenceEdgeNeverEnters() throws IOException {
+        List<Transition> transitions = replay("boundary_jitter.csv");
+
+        assertEquals(new ArrayList<Transition>(), transitions);
+        assertFalse(tracker.isInside("A"));
+        assertEquals(0, tracker.getConfirmedTransitions());
+        assertEquals(30, tracker.getSuppressedTransitions());
+    }
+
+    @Test
+    public void recordedVisitEntersAndExitsOnce() throws IOException {
+        List<Transition> transitions = replay("visit_and_leave.csv");
+
+        assertEquals(Arrays.asList(Transition.ENTER, Transition.EXIT), transitions);
+        assertEquals(0, tracker.getSuppressedTransitions());
+    }
+
+    @Test
+    public void enterNeedsDwell() {
+        assertEquals(Transition.NONE, tracker.onFix("A", 10, 50, 5, 0));
+        assertEquals(Transition.NONE, tracker.onFix("A", 10, 50, 5, 10_000));
+        assertFalse(tracker.isInside("A"));
+        assertEquals(Transition.ENTER, tracker.onFix("A", 10, 50, 5, 15_000));
+        assertTrue(tracker.isInside("A"));
+    }
+
+    @Test
+    public void exitNeedsAccuracyCircleBeyondExitRadiusForDwell() {
+        enter("A");
+        assertEquals(75f, tracker.exitRadius(50), 0);
+
+        // Centre beyond the exit radius but the accuracy circle still reaches it
+        assertEquals(Transition.NONE, tracker.onFix("A", 80, 50, 10, 20_000));
+        assertEquals(Transition.NONE, tracker.onFix("A", 80, 50, 10, 60_000));
+        assertTrue(tracker.isInside("A"));
+
+        assertEquals(Transition.NONE, tracker.onFix("A", 90, 50, 10, 70_000));
+        // Ambiguous fix keeps the pending exit
+        assertEquals(Transition.NONE, tracker.onFix("A", 80, 50, 10, 85_000));
+        assertEquals(Transition.EXIT, tracker.onFix("A", 90, 50, 10, 100_000));
+        assertFalse(tracker.isInside("A"));
+        assertTrue(tracker.getTrackedStoreIds().isEmpty());
+    }
+
+    @Test
+    public void returningInsideExitRadiusCancelsExit() {
+        enter("A");
+        tracker.onFix("A", 100, 50, 5, 20_000);
+        assertEquals(Transition.NONE, tracker.onFix("A", 70, 50, 5, 40_000));
+        assertEquals(Transition.NONE, tracker.onFix("A", 100, 50, 5, 55_000));
+        assertTrue(tracker.isInside("A"));
+        assertEquals(1, tracker.getSuppressedTransitions());
+    }
+
+    @Test
+    public void smallFencesUseMinimumExitMargin() {
+        assertEquals(25f, tracker.exitRadius(10), 0);
+        assertEquals(300f, tracker.exitRadius(200), 0);
+    }
+
+    @Test
+    public void inaccurateFixesAreIgnored() {
+        assertEquals(Transition.NONE, tracker.onFix("A", 0, 50, 51, 0));
+        assertEquals(1, tracker.getIgnoredFixes());
+        assertTrue(tracker.getTrackedStoreIds().isEmpty());
+    }
+
+    @Test
+    public void markInsideAndForget() {
+        tracker.markInside("A", 0);
+        assertTrue(tracker.isInside("A"));
+        tracker.forget("A");
+        assertFalse(tracker.isInside("A"));
+    }
+
+    private void enter(String storeId) {
+        tracker.onFix(storeId, 0, 50, 5, 0);
+        assertEquals(Transition.ENTER, tracker.onFix(storeId, 0, 50, 5, 15_000));
+    }
+
+    private List<Transition> replay(String resource) throws IOException {
+        ReplayTrace trace = ReplayTrace.load(resource);
+        List<Transition> transitions = new ArrayList<>();
+        for (int i = 0; i < trace.size; i++) {
+            double distance = GeoMath.distanceMeters(trace.latitudes[i], trace.longitudes[i], STORE_LAT, STORE_LON);
+            Transition transition = tracker.onFix("A", distance, STORE_RADIUS, trace.accuracies[i], trace.times[i]);
+            if (transition != Transition.NONE) transitions.add(transition);
+        }
+        return transitions;
+    }
+}
@@ -0,0 +1,383 @@
+package com.adx.integration.location;
+
+import com.adx.integration.data.model.Store;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Replays a location trace through {@link RadiusCreditEngine} on a plain JVM
+ *
+ * Uses a fake clock driven by fix timestamps, a fake gateway that counts RPCs and
+ * an inline effect runner, so a replay is single-threaded and deterministic. The
+ * store catalog is synthetic and preloaded into the fence index; the gateway's
+ * nearby-store sync is still issued and counted but leaves the index as it is
+ *
+ * Usage: RadiusReplayHarness [--trace file.csv|file.gpx|name.csv] [--stores 1000,10000,...]
+ *                            [--fixes n] [--seed n]
+ *
+ * CSV lines are time,latitude,longitude[,accuracy]; time is epoch millis, epoch
+ * seconds or ISO-8601. A trace name that isn't a file is loaded from the bundled
+ * test traces. Without a trace a synthetic walk with dwells is generated
+ */
+public class RadiusReplayHarness {
+
+    private static final int[] DEFAULT_CATALOG_SIZES = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int DEFAULT_SYNTHETIC_FIXES = 50_000;
+    private static final double CATALOG_MARGIN_DEGREES = 0.01;
+    private static final long DRAIN_MS = 60 * 60 * 1000; // 1 hour, past every refund deadline
+
+    public static void main(String[] args) throws Exception {
+        String tracePath = null;
+        int[] catalogSizes = DEFAULT_CATALOG_SIZES;
+        int syntheticFixes = DEFAULT_SYNTHETIC_FIXES;
+        long seed = 42;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--trace": tracePath = args[++i]; break;
+                case "--stores": catalogSizes = parseSizes(args[++i]); break;
+                case "--fixes": syntheticFixes = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+
+        Trace trace;
+        if (tracePath == null) {
+            trace = Trace.synthetic(syntheticFixes, new Random(seed));
+        } else if (!new File(tracePath).isFile()) {
+            trace = Trace.fromReplay(ReplayTrace.load(tracePath));
+        } else if (tracePath.toLowerCase().endsWith(".gpx")) {
+            trace = Trace.readGpx(tracePath);
+        } else {
+            trace = Trace.readCsv(tracePath);
+        }
+        if (trace.size == 0) {
+            throw new IllegalArgumentException("Trace has no fixes");
+        }
+        System.out.printf("trace: %d fixes over %.1f min%n",
+                trace.size, (trace.times[trace.size - 1] - trace.times[0]) / 60000.0);
+
+        // Warm up the JIT so the first catalog isn't measured in the interpreter
+        replay(trace, catalog(trace, catalogSizes[0], new Random(seed)));
+
+        System.out.println("stores    load_ms  fixes/s    enter  exit  refund  suppressed  "
+                + "deduct_rpc  refund_rpc  sync_rpc  p50_us  p99_us  max_us");
+        for (int size : catalogSizes) {
+            Result result = replay(trace, catalog(trace, size, new Random(seed)));
+            System.out.println(result.format(size));
+        }
+    }
+
+    static Result replay(Trace trace, List<Store> catalog) {
+        FakeClock clock = new FakeClock(trace.times[0]);
+        FakeGateway gateway = new FakeGateway();
+        CountingListener listener = new CountingListener();
+        RadiusCreditEngine engine = new RadiusCreditEngine(clock, gateway, new RadiusReplayTest.InlineEffects(), null, listener);
+
+        long loadStart = System.nanoTime();
+        engine.upsertStores(catalog);
+        long loadNanos = System.nanoTime() - loadStart;
+
+        long[] latencies = new long[trace.size];
+        long replayStart = System.nanoTime();
+        for (int i = 0; i < trace.size; i++) {
+            clock.now = trace.times[i];
+            long start = System.nanoTime();
+            engine.evaluate(trace.latitudes[i], trace.longitudes[i], trace.accuracies[i], trace.times[i]);
+            engine.advanceTimeouts();
+            engine.nearestEdgeDistance(trace.latitudes[i], trace.longitudes[i]); // adaptive sampling input
+            latencies[i] = System.nanoTime() - start;
+        }
+        long replayNanos = System.nanoTime() - replayStart;
+
+        clock.now += DRAIN_MS;
+        engine.advanceTimeouts();
+
+        Arrays.sort(latencies);
+        Result result = new Result();
+        result.loadNanos = loadNanos;
+        result.fixesPerSecond = trace.size / (replayNanos / 1e9);
+        result.enters = listener.enters;
+        result.exits = listener.exits;
+        result.refunds = listener.refunds;
+        result.suppressed = engine.getSuppressedTransitions();
+        result.deductRpcs = gateway.deductCalls;
+        result.refundRpcs = gateway.refundCalls;
+        result.syncRpcs = gateway.nearbyCalls;
+        result.p50Nanos = percentile(latencies, 0.50);
+        result.p99Nanos = percentile(latencies, 0.99);
+        result.maxNanos = latencies[latencies.length - 1];
+        return result;
+    }
+
+    /**
+     * Uniformly scattered radius-enabled stores over the trace's bounding box
+     */
+    static List<Store> catalog(Trace trace, int size, Random random) {
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int i = 0; i < trace.size; i++) {
+            minLat = Math.min(minLat, trace.latitudes[i]);
+            maxLat = Math.max(maxLat, trace.latitudes[i]);
+            minLon = Math.min(minLon, trace.longitudes[i]);
+            maxLon = Math.max(maxLon, trace.longitudes[i]);
+        }
+        minLat -= CATALOG_MARGIN_DEGREES;
+        maxLat += CATALOG_MARGIN_DEGREES;
+        minLon -= CATALOG_MARGIN_DEGREES;
+        maxLon += CATALOG_MARGIN_DEGREES;
+
+        List<Store> stores = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Store.Coordinates coordinates = new Store.Coordinates();
+            coordinates.setLatitude(minLat + random.nextDouble() * (maxLat - minLat));
+            coordinates.setLongitude(minLon + random.nextDouble() * (maxLon - minLon));
+            Store.Location location = new Store.Location();
+            location.setCoordinates(coordinates);
+
+            Store.RadiusSettings radius = new Store.RadiusSettings();
+            radius.setEnabled(true);
+            radius.setRadius(30 + random.nextInt(271));
+            radius.setCreditDeduction(1 + random.nextInt(5));
+            radius.setTimeoutMinutes(5 + random.nextInt(16));
+
+            Store store = new Store();
+            store.setId("store-" + i);
+            store.setName("Store " + i);
+            store.setLocation(location);
+            store.setRadiusSettings(radius);
+            stores.add(store);
+        }
+        return stores;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static int[] parseSizes(String value) {
+        String[] parts = value.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+
+    static class Trace {
+        final double[] latitudes;
+        final double[] longitudes;
+        final float[] accuracies;
+        final long[] times;
+        final int size;
+
+        Trace(List<double[]> rows) {
+            size = rows.size();
+            latitudes = new double[size];
+            longitudes = new double[size];
+            accuracies = new float[size];
+            times = new long[size];
+            for (int i = 0; i < size; i++) {
+                double[] row = rows.get(i);
+                times[i] = (long) row[0];
+                latitudes[i] = row[1];
+                longitudes[i] = row[2];
+                accuracies[i] = (float) row[3];
+            }
+        }
+
+        static Trace fromReplay(ReplayTrace replay) {
+            List<double[]> rows = new ArrayList<>(replay.size);
+            for (int i = 0; i < replay.size; i++) {
+                rows.add(new double[] {replay.times[i], replay.latitudes[i], replay.longitudes[i], replay.accuracies[i]});
+            }
+            return new Trace(rows);
+        }
+
+        static Trace readCsv(String path) throws IOException {
+            List<double[]> rows = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.trim().split("\\s*,\\s*");
+                    if (fields.length < 3 || fields[0].isEmpty()) continue;
+                    try {
+                        double accuracy = fields.length > 3 ? Double.parseDouble(fields[3]) : 0;
+                        rows.add(new double[] {parseTime(fields[0]),
+                                Double.parseDouble(fields[1]), Double.parseDouble(fields[2]), accuracy});
+                    } catch (RuntimeException e) {
+                        // Header or malformed line
+                    }
+                }
+            }
+            return new Trace(rows);
+        }
+
+        static Trace readGpx(String path) throws IOException, XMLStreamException {
+            List<double[]> rows = new ArrayList<>();
+            try (InputStream in = new FileInputStream(path)) {
+                XMLStreamReader xml = XMLInputFactory.newInstance().createXMLStreamReader(in);
+                double[] point = null;
+                while (xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = xml.getLocalName();
+                        if (name.equals("trkpt") || name.equals("rtept") || name.equals("wpt")) {
+                            point = new double[] {Double.NaN,
+                                    Double.parseDouble(xml.getAttributeValue(null, "lat")),
+                                    Double.parseDouble(xml.getAttributeValue(null, "lon")), 0};
+                        } else if (point != null && name.equals("time")) {
+                            point[0] = parseTime(xml.getElementText().trim());
+                        } else if (point != null && name.equals("hdop")) {
+                            point[3] = Double.parseDouble(xml.getElementText().trim()) * 5; // ~5 m per unit of HDOP
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && point != null) {
+                        String name = xml.getLocalName();
+                        if (name.equals("trkpt") || name.equals("rtept") || name.equals("wpt")) {
+                            if (Double.isNaN(point[0])) {
+                                point[0] = rows.isEmpty() ? 0 : rows.get(rows.size() - 1)[0] + 1000;
+                            }
+                            rows.add(point);
+                            point = null;
+                        }
+                    }
+                }
+                xml.close();
+            }
+            return new Trace(rows);
+        }
+
+        private static long parseTime(String value) {
+            if (value.matches("-?\\d+(\\.\\d+)?")) {
+                double number = Double.parseDouble(value);
+                return number < 1e11 ? (long) (number * 1000) : (long) number; // seconds vs millis
+            }
+            return Instant.parse(value).toEpochMilli();
+        }
+
+        /**
+         * A pedestrian with GPS noise: walks at ~1.4 m/s with drifting heading and
+         * stops for a few minutes now and then, which is what exercises dwell and
+         * refund timeouts
+         */
+        static Trace synthetic(int fixes, Random random) {
+            List<double[]> rows = new ArrayList<>(fixes);
+            double latitude = 37.7749;
+            double longitude = -122.4194;
+            double heading = random.nextDouble() * 2 * Math.PI;
+            long time = 1_700_000_000_000L;
+            int dwellFixes = 0;
+
+            for (int i = 0; i < fixes; i++) {
+                if (dwellFixes > 0) {
+                    dwellFixes--;
+                } else {
+                    if (random.nextDouble() < 0.005) {
+                        dwellFixes = 24 + random.nextInt(120); // 2 to 12 minutes at 5 s per fix
+                    }
+                    heading += random.nextGaussian() * 0.3;
+                    double step = 1.4 * 5;
+                    latitude += Math.cos(heading) * step / 111_320.0;
+                    longitude += Math.sin(heading) * step / (111_320.0 * Math.cos(Math.toRadians(latitude)));
+                }
+
+                float accuracy = 5 + random.nextFloat() * 15;
+                double noise = accuracy / 2 / 111_320.0;
+                rows.add(new double[] {time,
+                        latitude + random.nextGaussian() * noise,
+                        longitude + random.nextGaussian() * noise, accuracy});
+                time += 5000;
+            }
+            return new Trace(rows);
+        }
+    }
+
+    static class Result {
+        long loadNanos;
+        double fixesPerSecond;
+        long enters;
+        long exits;
+        long refunds;
+        long suppressed;
+        long deductRpcs;
+        long refundRpcs;
+        long syncRpcs;
+        long p50Nanos;
+        long p99Nanos;
+        long maxNanos;
+
+        String format(int stores) {
+            return String.format("%-9d %7d  %8.0f  %6d  %4d  %6d  %10d  %10d  %10d  %8d  %6.1f  %6.1f  %6.1f",
+                    stores, loadNanos / 1_000_000, fixesPerSecond, enters, exits, refunds, suppressed,
+                    deductRpcs, refundRpcs, syncRpcs,
+                    p50Nanos / 1000.0, p99Nanos / 1000.0, maxNanos / 1000.0);
+        }
+    }
+
+    static class FakeGateway implements RadiusCreditEngine.Gateway {
+        long nearbyCalls;
+        long deductCalls;
+        long refundCalls;
+
+        @Override
+        public List<Store> getNearbyStores(double latitude, double longitude, int radiusMeters) {
+            nearbyCalls++;
+            // Read as a failed sync, so the preloaded catalog stays indexed
+            return null;
+        }
+
+        @Override
+        public boolean deductRadiusCredits(String storeId, int credits) {
+            deductCalls++;
+            return true;
+        }
+
+        @Override
+        public void returnRadiusCredits(String storeId) {
+            refundCalls++;
+        }
+    }
+
+    static class CountingListener implements RadiusCreditEngine.Listener {
+        long enters;
+        long exits;
+        long refunds;
+
+        @Override
+        public void onRadiusEntered(Store store) {
+            enters++;
+        }
+
+        @Override
+        public void onRadiusExited(Store store) {
+            exits++;
+        }
+
+        @Override
+        public void onRadiusCreditsReturned(String storeId) {
+            refunds++;
+        }
+
+        @Override
+        public void onTimeoutsPending() {
+            // Timeouts are advanced after every fix
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.adx.integration.data.model.Store;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays recorded traces through {@link RadiusCreditEngine} with a fake clock driven
+ * by the fix timestamps, a fake gateway and inline effects, and checks the resulting
+ * transitions and credit totals
+ *
+ * Store A: 50 m radius, 3 credits, 5 minute timeout. Store B, 122 m north of A:
+ * 30 m radius, 2 credits, 10 minute timeout
+ */
+public class RadiusReplayTest {
+
+    private static final long DRAIN_MS = 60 * 60 * 1000; // 1 hour, past every refund deadline
+
+    @Test
+    public void visitShorterThanTimeoutKeepsCredits() throws IOException {
+        Replay replay = replay("visit_and_leave.csv");
+
+        assertEquals(Arrays.asList("enter A", "exit A"), replay.listener.events);
+        assertEquals(3, replay.gateway.creditsDeducted);
+        assertEquals(0, replay.gateway.creditsReturned);
+    }
+
+    @Test
+    public void stayPastTimeoutReturnsCredits() throws IOException {
+        Replay replay = replay("long_stay.csv");
+
+        // The session ends with the refund, so leaving afterwards is not reported
+        assertEquals(Arrays.asList("enter A", "refund A"), replay.listener.events);
+        assertEquals(3, replay.gateway.creditsDeducted);
+        assertEquals(3, replay.gateway.creditsReturned);
+    }
+
+    @Test
+    public void jitterAtFenceEdgeIsSuppressed() throws IOException {
+        Replay replay = replay("boundary_jitter.csv");
+
+        assertEquals(new ArrayList<String>(), replay.listener.events);
+        assertEquals(0, replay.gateway.creditsDeducted);
+        assertEquals(30, replay.engine.getSuppressedTransitions());
+    }
+
+    @Test
+    public void walkingThroughTwoStoresChargesEachOnce() throws IOException {
+        Replay replay = replay("walk_past_two_stores.csv");
+
+        // A's exit needs 75 m held for 30 s, so B's 15 s enter dwell completes first
+        assertEquals(Arrays.asList("enter A", "enter B", "exit A", "exit B"), replay.listener.events);
+        assertEquals(5, replay.gateway.creditsDeducted);
+        assertEquals(0, replay.gateway.creditsReturned);
+    }
+
+    @Test
+    public void storeSyncIsRateLimited() throws IOException {
+        Replay replay = replay("long_stay.csv");
+
+        // 153 fixes over 12.7 minutes, moving less than the sync distance each minute
+        assertEquals(13, replay.gateway.nearbyCalls);
+        assertEquals(2, replay.engine.getIndexedStoreCount());
+    }
+
+    @Test
+    public void harnessReplaysBundledTraceAgainstSyntheticCatalog() throws IOException {
+        RadiusReplayHarness.Trace trace = RadiusReplayHarness.Trace.fromReplay(ReplayTrace.load("walk_past_two_stores.csv"));
+        List<Store> catalog = RadiusReplayHarness.catalog(trace, 1_000, new Random(42));
+
+        RadiusReplayHarness.Result result = RadiusReplayHarness.replay(trace, catalog);
+
+        // Every deduct is paired with an enter, and the store sync stays rate limited
+        assertEquals(result.enters, result.deductRpcs);
+        assertEquals(result.refunds, result.refundRpcs);
+        assertTrue(result.syncRpcs <= 1 + (trace.times[trace.size - 1] - trace.times[0]) / 60_000);
+        assertTrue(result.p99Nanos <= result.maxNanos);
+    }
+
+    private static Replay replay(String resource) throws IOException {
+        ReplayTrace trace = ReplayTrace.load(resource);
+        FakeClock clock = new FakeClock(trace.times[0]);
+        Replay replay = new Replay();
+        replay.engine = new RadiusCreditEngine(clock, replay.gateway, new InlineEffects(), null, replay.listener);
+
+        for (int i = 0; i < trace.size; i++) {
+            clock.now = trace.times[i];
+            replay.engine.evaluate(trace.latitudes[i], trace.longitudes[i], trace.accuracies[i], trace.times[i]);
+            replay.engine.advanceTimeouts();
+        }
+        clock.now += DRAIN_MS;
+        replay.engine.advanceTimeouts();
+        return replay;
+    }
+
+    static List<Store> catalog() {
+        return Arrays.asList(
+                TestStores.store("A", 37.7749, -122.4194, 50, 3, 5),
+                TestStores.store("B", 37.7749 + 122 / 111_320.0, -122.4194, 30, 2, 10));
+    }
+
+    private static class Replay {
+        final FakeGateway gateway = new FakeGateway();
+        final RecordingListener listener = new RecordingListener();
+        RadiusCreditEngine engine;
+    }
+
+    private static class FakeGateway implements RadiusCreditEngine.Gateway {
+        private final Map<String, Integer> deducted = new HashMap<>();
+        int nearbyCalls;
+        int creditsDeducted;
+        int creditsReturned;
+
+        @Override
+        public List<Store> getNearbyStores(double latitude, double longitude, int radiusMeters) {
+            nearbyCalls++;
+            return catalog();
+        }
+
+        @Override
+        public boolean deductRadiusCredits(String storeId, int credits) {
+            deducted.put(storeId, credits);
+            creditsDeducted += credits;
+            return true;
+        }
+
+        @Override
+        public void returnRadiusCredits(String storeId) {
+            Integer credits = deducted.remove(storeId);
+            creditsReturned += credits != null ? credits : 0;
+        }
+    }
+
+    private static class RecordingListener implements RadiusCreditEngine.Listener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onRadiusEntered(Store store) {
+            events.add("enter " + store.getId());
+        }
+
+        @Override
+        public void onRadiusExited(Store store) {
+            events.add("exit " + store.getId());
+        }
+
+        @Override
+        public void onRadiusCreditsReturned(String storeId) {
+            events.add("refund " + storeId);
+        }
+
+        @Override
+        public void onTimeoutsPending() {
+            // Timeouts are advanced after every fix
+        }
+    }
+
+    /**
+     * Runs effects immediately on the calling thread
+     */
+    static class InlineEffects implements EffectRunner {
+        @Override
+        public boolean runEffect(Runnable effect) {
+            effect.run();
+            return true;
+        }
+
+        @Override
+        public void runConflatedEffect(String key, Runnable effect) {
+            effect.run();
+        }
+
+        @Override
+        public void runOnEvaluationThread(Runnable task) {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class RadiusSessionJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<RadiusSessionJournal> journals = new ArrayList<>();
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "radius_sessions.journal");
+    }
+
+    @After
+    public void tearDown() {
+        for (RadiusSessionJournal journal : journals) {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void recoversOpenSessionsOnly() throws IOException {
+        RadiusSessionJournal journal = open();
+        journal.recover();
+        journal.recordEnter("a", 1_000, 301_000, 3);
+        journal.recordEnter("b", 2_000, 602_000, 2);
+        journal.recordEnter("c", 3_000, 303_000, 1);
+        journal.recordExit("b", 4_000);
+        journal.recordRefund("c", 5_000);
+        journal.flush();
+
+        Map<String, RadiusSessionJournal.Session> sessions = open().recover();
+
+        assertEquals(1, sessions.size());
+        RadiusSessionJournal.Session a = sessions.get("a");
+        assertEquals("a", a.getStoreId());
+        assertEquals(1_000, a.getEntryTime());
+        assertEquals(301_000, a.getDeadline());
+        assertEquals(3, a.getCreditsDeducted());
+    }
+
+    @Test
+    public void tornTailIsIgnored() throws IOException {
+        RadiusSessionJournal journal = open();
+        journal.recover();
+        journal.recordEnter("a", 1_000, 301_000, 3);
+        journal.recordEnter("b", 2_000, 302_000, 2);
+        journal.flush();
+
+        // Crash halfway through writing the exit for a
+        appendRaw("X\ta\t40");
+
+        Map<String, RadiusSessionJournal.Session> sessions = open().recover();
+        assertEquals(2, sessions.size());
+        assertTrue(sessions.containsKey("a"));
+    }
+
+    @Test
+    public void corruptRecordStopsReplay() throws IOException {
+        RadiusSessionJournal journal = open();
+        journal.recover();
+        journal.recordEnter("a", 1_000, 301_000, 3);
+        journal.flush();
+        long goodLength = file.length();
+        journal.recordEnter("b", 2_000, 302_000, 2);
+        journal.recordEnter("c", 3_000, 303_000, 1);
+        journal.flush();
+
+        // Flip one byte inside b's record; c follows it but is not trusted either
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(goodLength + 4);
+            raw.write('9');
+        }
+
+        Map<String, RadiusSessionJournal.Session> sessions = open().recover();
+        assertEquals(1, sessions.size());
+        assertTrue(sessions.containsKey("a"));
+    }
+
+    @Test
+    public void recoverCompactsToOpenSessions() throws IOException {
+        RadiusSessionJournal journal = open();
+        journal.recover();
+        for (int i = 0; i < 50; i++) {
+            journal.recordEnter("s" + i, i, i + 300_000, 1);
+            if (i % 5 != 0) journal.recordExit("s" + i, i + 1);
+        }
+        journal.flush();
+
+        open().recover();
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(10, lines.size());
+        for (String line : lines) {
+            assertTrue(line.startsWith("E\t"));
+        }
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        assertEquals(10, open().recover().size());
+    }
+
+    @Test
+    public void writesAreBatched() throws IOException {
+        RadiusSessionJournal journal = open();
+        journal.recover();
+        for (int i = 0; i < 20; i++) {
+            journal.recordEnter("s" + i, i, i + 300_000, 1);
+        }
+        journal.flush();
+
+        assertEquals(1, journal.getBatchesWritten());
+        assertEquals(20, journal.getEventsWritten());
+    }
+
+    @Test
+    public void closeWritesPendingAndDropsLaterEvents() throws IOException {
+        RadiusSessionJournal journal = open();
+        journal.recover();
+        journal.recordEnter("a", 1_000, 301_000, 3);
+        journal.close();
+        journal.recordEnter("b", 2_000, 302_000, 2);
+
+        Map<String, RadiusSessionJournal.Session> sessions = open().recover();
+        assertEquals(1, sessions.size());
+        assertTrue(sessions.containsKey("a"));
+    }
+
+    @Test
+    public void missingFileRecoversNothing() throws IOException {
+        assertTrue(open().recover().isEmpty());
+    }
+
+    private RadiusSessionJournal open() {
+        RadiusSessionJournal journal = new RadiusSessionJournal(file);
+        journals.add(journal);
+        return journal;
+    }
+
+    private void appendRaw(String text) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class RadiusTimeoutWheelTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+    private static final long TICK_MS = 5_000;
+
+    private final FakeClock clock = new FakeClock(T0);
+    private final List<String> fired = new ArrayList<>();
+    private final RadiusTimeoutWheel wheel = new RadiusTimeoutWheel(clock, fired::add);
+
+    @Test
+    public void firesOnlyOnceDeadlinePasses() {
+        wheel.schedule("a", T0 + 60_000);
+        assertTrue(wheel.isScheduled("a"));
+        assertEquals(T0 + 60_000, wheel.getDeadline("a"));
+
+        clock.now = T0 + 59_999;
+        assertEquals(0, wheel.advance());
+        clock.now = T0 + 60_000;
+        assertEquals(1, wheel.advance());
+
+        assertEquals(Collections.singletonList("a"), fired);
+        assertFalse(wheel.isScheduled("a"));
+        assertEquals(-1, wheel.getDeadline("a"));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void deadlineBetweenTicksFiresOnNextTick() {
+        wheel.schedule("a", T0 + 12_000);
+
+        clock.now = T0 + 12_000;
+        assertEquals(0, wheel.advance());
+        clock.now = T0 + 15_000;
+        assertEquals(1, wheel.advance());
+    }
+
+    @Test
+    public void cancelledTimeoutNeverFires() {
+        wheel.schedule("a", T0 + 10_000);
+        wheel.schedule("b", T0 + 10_000);
+
+        assertTrue(wheel.cancel("a"));
+        assertFalse(wheel.cancel("a"));
+        clock.now = T0 + 20_000;
+        wheel.advance();
+
+        assertEquals(Collections.singletonList("b"), fired);
+    }
+
+    @Test
+    public void rescheduleReplacesDeadline() {
+        wheel.schedule("a", T0 + 10_000);
+        wheel.schedule("a", T0 + 30_000);
+        assertEquals(1, wheel.size());
+
+        clock.now = T0 + 20_000;
+        assertEquals(0, wheel.advance());
+        clock.now = T0 + 30_000;
+        assertEquals(1, wheel.advance());
+        assertEquals(Collections.singletonList("a"), fired);
+    }
+
+    @Test
+    public void deadlinesBeyondOneRevolutionWaitForTheirRound() {
+        // 256 ticks of 5 s is ~21 minutes; 50 minutes needs a few revolutions
+        long deadline = T0 + 50 * 60_000;
+        wheel.schedule("a", deadline);
+
+        for (clock.now = T0; clock.now < deadline; clock.now += TICK_MS) {
+            assertEquals(0, wheel.advance());
+        }
+        clock.now = deadline;
+        assertEquals(1, wheel.advance());
+    }
+
+    @Test
+    public void pastDeadlineFiresOnNextTick() {
+        wheel.schedule("a", T0 - 60_000);
+        clock.now = T0 + TICK_MS;
+        assertEquals(1, wheel.advance());
+    }
+
+    @Test
+    public void largeClockJumpFiresEverythingDue() {
+        wheel.schedule("a", T0 + 5 * 60_000);
+        wheel.schedule("b", T0 + 45 * 60_000);
+        wheel.schedule("c", T0 + 90 * 60_000);
+
+        clock.now = T0 + 60 * 60_000;
+        assertEquals(2, wheel.advance());
+        assertEquals(Arrays.asList("a", "b"), sorted(fired));
+        assertTrue(wheel.isScheduled("c"));
+    }
+
+    @Test
+    public void matchesReferenceModelUnderRandomOperations() {
+        Random random = new Random(9);
+        Map<String, Long> expected = new HashMap<>();
+
+        for (int step = 0; step < 20_000; step++) {
+            String id = "s" + random.nextInt(200);
+            int op = random.nextInt(10);
+            if (op < 5) {
+                long deadline = clock.now + random.nextInt(60 * 60_000);
+                wheel.schedule(id, deadline);
+                expected.put(id, deadline);
+            } else if (op < 7) {
+                assertEquals(expected.remove(id) != null, wheel.cancel(id));
+            } else {
+                clock.now += random.nextInt(30_000);
+                fired.clear();
+                wheel.advance();
+
+                long firedUpTo = clock.now / TICK_MS * TICK_MS;
+                List<String> due = new ArrayList<>();
+                for (Map.Entry<String, Long> entry : expected.entrySet()) {
+                    if (entry.getValue() <= firedUpTo) due.add(entry.getKey());
+                }
+                for (String dueId : due) {
+                    expected.remove(dueId);
+                }
+                assertEquals(sorted(due), sorted(fired));
+            }
+            assertEquals(expected.size(), wheel.size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWheelSizeThatIsNotPowerOfTwo() {
+        new RadiusTimeoutWheel(clock, fired::add, TICK_MS, 100);
+    }
+
+    private static List<String> sorted(List<String> ids) {
+        List<String> copy = new ArrayList<>(ids);
+        Collections.sort(copy);
+        return copy;
+    }
+}
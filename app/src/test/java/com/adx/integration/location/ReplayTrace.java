@@ -0,0 +1,54 @@
+package com.adx.integration.location;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recorded location fixes loaded from a test resource
+ * Lines are time,latitude,longitude,accuracy with time in epoch millis; lines
+ * starting with # and the header are skipped
+ */
+class ReplayTrace {
+    final long[] times;
+    final double[] latitudes;
+    final double[] longitudes;
+    final float[] accuracies;
+    final int size;
+
+    private ReplayTrace(List<String[]> rows) {
+        size = rows.size();
+        times = new long[size];
+        latitudes = new double[size];
+        longitudes = new double[size];
+        accuracies = new float[size];
+        for (int i = 0; i < size; i++) {
+            String[] row = rows.get(i);
+            times[i] = Long.parseLong(row[0]);
+            latitudes[i] = Double.parseDouble(row[1]);
+            longitudes[i] = Double.parseDouble(row[2]);
+            accuracies[i] = Float.parseFloat(row[3]);
+        }
+    }
+
+    static ReplayTrace load(String resource) throws IOException {
+        InputStream in = ReplayTrace.class.getResourceAsStream("/traces/" + resource);
+        if (in == null) {
+            throw new IOException("Missing trace " + resource);
+        }
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("time")) continue;
+                rows.add(line.split("\\s*,\\s*"));
+            }
+        }
+        return new ReplayTrace(rows);
+    }
+}
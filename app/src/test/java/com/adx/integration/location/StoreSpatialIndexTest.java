@@ -0,0 +1,186 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.adx.integration.data.model.Store;
+import com.adx.integration.utils.GeoMath;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class StoreSpatialIndexTest {
+
+    private static final int STORE_COUNT = 100_000;
+    private static final double BASE_LAT = 37.70;
+    private static final double BASE_LON = -122.52;
+    private static final double SPAN_DEGREES = 0.3; // ~33 km square
+
+    private static List<Store> stores;
+    private static StoreSpatialIndex index;
+
+    @BeforeClass
+    public static void buildIndex() {
+        Random random = new Random(42);
+        stores = new ArrayList<>(STORE_COUNT);
+        for (int i = 0; i < STORE_COUNT; i++) {
+            stores.add(TestStores.store("s" + i,
+                    BASE_LAT + random.nextDouble() * SPAN_DEGREES,
+                    BASE_LON + random.nextDouble() * SPAN_DEGREES,
+                    20 + random.nextInt(480)));
+        }
+        index = new StoreSpatialIndex();
+        index.upsertAll(stores);
+    }
+
+    @Test
+    public void indexesEveryStore() {
+        assertEquals(STORE_COUNT, index.size());
+        assertEquals(STORE_COUNT, index.getFences().capacity());
+    }
+
+    @Test
+    public void findContainingMatchesBruteForce() {
+        Random random = new Random(7);
+        int[] slots = new int[256];
+        for (int q = 0; q < 300; q++) {
+            double latitude = BASE_LAT + random.nextDouble() * SPAN_DEGREES;
+            double longitude = BASE_LON + random.nextDouble() * SPAN_DEGREES;
+
+            int found = index.findContaining(latitude, longitude, slots);
+            Set<String> actual = new HashSet<>();
+            for (int i = 0; i < Math.min(found, slots.length); i++) {
+                actual.add(index.getFences().id(slots[i]));
+            }
+            assertEquals(found, actual.size());
+            assertEquals(bruteForce(latitude, longitude), actual);
+        }
+    }
+
+    @Test
+    public void findContainingReportsTotalWhenBufferIsShort() {
+        Store store = stores.get(0);
+        int[] large = new int[256];
+        int total = index.findContaining(store.getLatitude(), store.getLongitude(), large);
+        assertTrue(total >= 1);
+
+        int[] empty = new int[0];
+        assertEquals(total, index.findContaining(store.getLatitude(), store.getLongitude(), empty));
+    }
+
+    @Test
+    public void findContainingDoesNotAllocate() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        int[] slots = new int[64];
+        double[] latitudes = new double[10_000];
+        double[] longitudes = new double[10_000];
+        Random random = new Random(11);
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = BASE_LAT + random.nextDouble() * SPAN_DEGREES;
+            longitudes[i] = BASE_LON + random.nextDouble() * SPAN_DEGREES;
+        }
+        long threadId = Thread.currentThread().getId();
+        int sink = query(latitudes, longitudes, slots); // warm up
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        sink += query(latitudes, longitudes, slots);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(sink > 0);
+        // Allow for incidental JVM bookkeeping; one object per query would be far more
+        assertTrue("allocated " + allocated + " bytes", allocated < latitudes.length);
+    }
+
+    @Test
+    public void replaceAllEvictsStoresMissingFromSync() {
+        StoreSpatialIndex small = new StoreSpatialIndex();
+        small.upsertAll(Arrays.asList(
+                TestStores.store("a", 37.0, -122.0, 50),
+                TestStores.store("b", 37.001, -122.0, 50),
+                TestStores.store("c", 37.002, -122.0, 50)));
+
+        int evicted = small.replaceAll(
+                Collections.singletonList(TestStores.store("a", 37.0, -122.0, 80)),
+                Collections.singleton("c"));
+
+        assertEquals(1, evicted);
+        assertEquals(2, small.size());
+        assertNull(small.getStore("b"));
+        assertEquals(80, small.getStore("a").getRadius());
+        int[] slots = new int[4];
+        assertEquals(0, small.findContaining(37.001, -122.0, slots));
+        assertEquals(1, small.findContaining(37.002, -122.0, slots));
+    }
+
+    @Test
+    public void replaceAllWithNullKeepsIndex() {
+        StoreSpatialIndex small = new StoreSpatialIndex();
+        small.upsert(TestStores.store("a", 37.0, -122.0, 50));
+
+        assertEquals(0, small.replaceAll(null, Collections.<String>emptySet()));
+        assertEquals(1, small.size());
+    }
+
+    @Test
+    public void removeAndUpsertMoveFence() {
+        StoreSpatialIndex small = new StoreSpatialIndex();
+        small.upsert(TestStores.store("a", 37.0, -122.0, 50));
+        small.upsert(TestStores.store("a", 38.0, -122.0, 50));
+        int[] slots = new int[4];
+
+        assertEquals(1, small.size());
+        assertEquals(0, small.findContaining(37.0, -122.0, slots));
+        assertEquals(1, small.findContaining(38.0, -122.0, slots));
+
+        assertTrue(small.remove("a"));
+        assertFalse(small.remove("a"));
+        assertEquals(0, small.findContaining(38.0, -122.0, slots));
+    }
+
+    @Test
+    public void nearestEdgeDistanceIsZeroInsideAndPositiveOutside() {
+        StoreSpatialIndex small = new StoreSpatialIndex();
+        small.upsert(TestStores.store("a", 37.0, -122.0, 50));
+
+        assertEquals(0, small.nearestEdgeDistance(37.0, -122.0, 4), 0);
+        double outside = small.nearestEdgeDistance(37.0 + 150 / GeoMath.METERS_PER_DEGREE, -122.0, 4);
+        assertEquals(100, outside, 0.5);
+        assertEquals(Double.POSITIVE_INFINITY, small.nearestEdgeDistance(40.0, -122.0, 4), 0);
+    }
+
+    private static int query(double[] latitudes, double[] longitudes, int[] slots) {
+        int total = 0;
+        for (int i = 0; i < latitudes.length; i++) {
+            total += index.findContaining(latitudes[i], longitudes[i], slots);
+        }
+        return total;
+    }
+
+    private static Set<String> bruteForce(double latitude, double longitude) {
+        Set<String> ids = new HashSet<>();
+        for (Store store : stores) {
+            if (GeoMath.distanceMeters(latitude, longitude, store.getLatitude(), store.getLongitude())
+                    <= store.getRadius()) {
+                ids.add(store.getId());
+            }
+        }
+        return ids;
+    }
+}
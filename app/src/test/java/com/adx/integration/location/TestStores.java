@@ -0,0 +1,37 @@
+package com.adx.integration.location;
+
+import com.adx.integration.data.model.Store;
+
+/**
+ * Builders for radius-enabled stores used across the location tests
+ */
+final class TestStores {
+
+    private TestStores() {
+    }
+
+    static Store store(String id, double latitude, double longitude, int radius, int credits, int timeoutMinutes) {
+        Store.Coordinates coordinates = new Store.Coordinates();
+        coordinates.setLatitude(latitude);
+        coordinates.setLongitude(longitude);
+        Store.Location location = new Store.Location();
+        location.setCoordinates(coordinates);
+
+        Store.RadiusSettings settings = new Store.RadiusSettings();
+        settings.setEnabled(true);
+        settings.setRadius(radius);
+        settings.setCreditDeduction(credits);
+        settings.setTimeoutMinutes(timeoutMinutes);
+
+        Store store = new Store();
+        store.setId(id);
+        store.setName("Store " + id);
+        store.setLocation(location);
+        store.setRadiusSettings(settings);
+        return store;
+    }
+
+    static Store store(String id, double latitude, double longitude, int radius) {
+        return store(id, latitude, longitude, radius, 1, 10);
+    }
+}
@@ -0,0 +1,114 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TrajectoryCodecTest {
+
+    private static final double QUANTUM = 0.5e-6; // half of the 1e-6 degree grid
+
+    @Test
+    public void roundTripStaysWithinQuantization() throws IOException {
+        ReplayTrace trace = ReplayTrace.load("walk_past_two_stores.csv");
+        List<TrackPoint> points = new ArrayList<>();
+        for (int i = 0; i < trace.size; i++) {
+            points.add(new TrackPoint(trace.latitudes[i], trace.longitudes[i], trace.times[i]));
+        }
+
+        List<TrackPoint> decoded = TrajectoryCodec.decode(TrajectoryCodec.encode(points));
+
+        assertEquals(points.size(), decoded.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(points.get(i).getLatitude(), decoded.get(i).getLatitude(), QUANTUM + 1e-12);
+            assertEquals(points.get(i).getLongitude(), decoded.get(i).getLongitude(), QUANTUM + 1e-12);
+            assertEquals(points.get(i).getTimeMs() / 1000 * 1000, decoded.get(i).getTimeMs());
+        }
+    }
+
+    @Test
+    public void extremeDeltasRoundTrip() {
+        // Pole to pole and across the antimeridian: the largest coordinate deltas there are
+        List<TrackPoint> points = Arrays.asList(
+                new TrackPoint(90, 180, 0),
+                new TrackPoint(-90, -180, 4_102_444_800_000L), // year 2100
+                new TrackPoint(0, 0, 0),
+                new TrackPoint(1e-6, -1e-6, 1000),
+                new TrackPoint(1e-6, -1e-6, 1000));
+
+        List<TrackPoint> decoded = TrajectoryCodec.decode(TrajectoryCodec.encode(points));
+
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(points.get(i).getLatitude(), decoded.get(i).getLatitude(), 1e-9);
+            assertEquals(points.get(i).getLongitude(), decoded.get(i).getLongitude(), 1e-9);
+            assertEquals(points.get(i).getTimeMs(), decoded.get(i).getTimeMs());
+        }
+    }
+
+    @Test
+    public void varintBoundariesRoundTrip() {
+        // Deltas of 63/64 and 8191/8192 microdegrees sit on the one/two/three byte zigzag boundaries
+        List<TrackPoint> points = new ArrayList<>();
+        long[] deltas = {0, 63, 64, -64, -65, 8191, 8192, -8192, -8193, 1_048_575, 1_048_576};
+        long lat = 0;
+        long time = 0;
+        for (long delta : deltas) {
+            lat += delta;
+            time += delta * 1000;
+            points.add(new TrackPoint(lat / 1e6, -lat / 1e6, time));
+        }
+
+        List<TrackPoint> decoded = TrajectoryCodec.decode(TrajectoryCodec.encode(points));
+
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(points.get(i).getLatitude(), decoded.get(i).getLatitude(), 1e-9);
+            assertEquals(points.get(i).getLongitude(), decoded.get(i).getLongitude(), 1e-9);
+            assertEquals(points.get(i).getTimeMs(), decoded.get(i).getTimeMs());
+        }
+    }
+
+    @Test
+    public void emptyRunRoundTrips() {
+        assertTrue(TrajectoryCodec.decode(TrajectoryCodec.encode(Collections.<TrackPoint>emptyList())).isEmpty());
+    }
+
+    @Test
+    public void everyFlippedByteIsRejected() {
+        byte[] chunk = TrajectoryCodec.encode(Arrays.asList(
+                new TrackPoint(37.7749, -122.4194, 1_700_000_000_000L),
+                new TrackPoint(37.7750, -122.4195, 1_700_000_005_000L)));
+
+        for (int i = 0; i < chunk.length; i++) {
+            byte[] damaged = chunk.clone();
+            damaged[i] ^= 0x10;
+            assertRejected(damaged);
+        }
+    }
+
+    @Test
+    public void truncatedAndPaddedChunksAreRejected() {
+        byte[] chunk = TrajectoryCodec.encode(Collections.singletonList(new TrackPoint(37.7749, -122.4194, 0)));
+
+        for (int length = 0; length < chunk.length; length++) {
+            assertRejected(Arrays.copyOf(chunk, length));
+        }
+        assertRejected(Arrays.copyOf(chunk, chunk.length + 1));
+    }
+
+    private static void assertRejected(byte[] data) {
+        try {
+            TrajectoryCodec.decode(data);
+            fail("expected " + Arrays.toString(data) + " to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // Rejected
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.adx.integration.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.adx.integration.utils.GeoMath;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TrajectorySimplifierTest {
+
+    private static final double TOLERANCE_METERS = 20;
+    private static final long HEARTBEAT_MS = 2 * 60 * 1000; // 2 minutes
+    private static final String[] TRACES = {
+            "visit_and_leave.csv", "long_stay.csv", "boundary_jitter.csv", "walk_past_two_stores.csv"};
+
+    @Test
+    public void droppedFixesAreWithinToleranceOfTheRetainedTrack() throws IOException {
+        for (String resource : TRACES) {
+            ReplayTrace trace = ReplayTrace.load(resource);
+            TrajectorySimplifier simplifier = new TrajectorySimplifier(TOLERANCE_METERS, HEARTBEAT_MS);
+            Extrapolation track = new Extrapolation();
+
+            for (int i = 0; i < trace.size; i++) {
+                if (simplifier.offer(trace.latitudes[i], trace.longitudes[i], trace.times[i])) {
+                    track.retain(new TrackPoint(trace.latitudes[i], trace.longitudes[i], trace.times[i]));
+                } else {
+                    // A reader holding only the retained points can put this fix back within the tolerance
+                    double error = track.errorMeters(trace.latitudes[i], trace.longitudes[i], trace.times[i]);
+                    assertTrue(resource + " fix " + i + " off by " + error, error <= TOLERANCE_METERS);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void heartbeatBoundsGapsBetweenRetainedPoints() throws IOException {
+        ReplayTrace trace = ReplayTrace.load("long_stay.csv");
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(TOLERANCE_METERS, HEARTBEAT_MS);
+        long lastRetained = trace.times[0];
+        long maxInterval = 0;
+
+        for (int i = 0; i < trace.size; i++) {
+            if (i > 0) maxInterval = Math.max(maxInterval, trace.times[i] - trace.times[i - 1]);
+            if (simplifier.offer(trace.latitudes[i], trace.longitudes[i], trace.times[i])) {
+                assertTrue(trace.times[i] - lastRetained <= HEARTBEAT_MS + maxInterval);
+                lastRetained = trace.times[i];
+            }
+        }
+        assertTrue(simplifier.getFixesRetained() < simplifier.getFixesOffered() / 4);
+    }
+
+    @Test
+    public void compressionOnRecordedTraces() throws IOException {
+        long totalFixes = 0;
+        long totalRawBytes = 0;
+        long totalEncodedBytes = 0;
+
+        for (String resource : TRACES) {
+            ReplayTrace trace = ReplayTrace.load(resource);
+            TrajectorySimplifier simplifier = new TrajectorySimplifier(TOLERANCE_METERS, HEARTBEAT_MS);
+            List<TrackPoint> retained = new ArrayList<>();
+            for (int i = 0; i < trace.size; i++) {
+                if (simplifier.offer(trace.latitudes[i], trace.longitudes[i], trace.times[i])) {
+                    retained.add(new TrackPoint(trace.latitudes[i], trace.longitudes[i], trace.times[i]));
+                }
+            }
+            long rawBytes = trace.size * 24L; // two doubles and a long per fix
+            long encodedBytes = TrajectoryCodec.encode(retained).length;
+            System.out.printf("%-26s %4d fixes  %3d retained  %5d -> %4d bytes  %5.1fx%n",
+                    resource, trace.size, retained.size(), rawBytes, encodedBytes, (double) rawBytes / encodedBytes);
+
+            totalFixes += trace.size;
+            totalRawBytes += rawBytes;
+            totalEncodedBytes += encodedBytes;
+        }
+        System.out.printf("%-26s %4d fixes  %5d -> %4d bytes  %5.1fx%n",
+                "total", totalFixes, totalRawBytes, totalEncodedBytes, (double) totalRawBytes / totalEncodedBytes);
+        assertTrue(totalRawBytes >= 10 * totalEncodedBytes);
+    }
+
+    @Test
+    public void resumedFilterDoesNotRetainStationaryFix() {
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(TOLERANCE_METERS, HEARTBEAT_MS);
+        simplifier.resume(new TrackPoint(37.7749, -122.4194, 0), new TrackPoint(37.7749, -122.4194, 60_000));
+
+        assertFalse(simplifier.offer(37.7749, -122.4194, 90_000));
+        assertTrue(simplifier.offer(37.7749, -122.4194, 60_000 + HEARTBEAT_MS));
+        assertTrue(new TrajectorySimplifier(TOLERANCE_METERS).offer(37.7749, -122.4194, 90_000));
+    }
+
+    @Test
+    public void resumeContinuesTheLastVelocity() {
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(TOLERANCE_METERS, HEARTBEAT_MS);
+        double step = 70 / GeoMath.METERS_PER_DEGREE; // 70 m per minute north
+        simplifier.resume(new TrackPoint(37.0, -122.0, 0), new TrackPoint(37.0 + step, -122.0, 60_000));
+
+        assertFalse(simplifier.offer(37.0 + 1.5 * step, -122.0, 90_000));
+        assertTrue(simplifier.offer(37.0 + step, -122.0 + step, 100_000));
+        assertEquals(1, simplifier.getFixesRetained());
+    }
+
+    /**
+     * Dead reckoning from the last two retained points, as the simplifier predicts
+     */
+    private static class Extrapolation {
+        private TrackPoint previous;
+        private TrackPoint last;
+
+        void retain(TrackPoint point) {
+            previous = last;
+            last = point;
+        }
+
+        double errorMeters(double latitude, double longitude, long timeMs) {
+            double velocityLat = 0;
+            double velocityLon = 0;
+            if (previous != null) {
+                long elapsed = last.getTimeMs() - previous.getTimeMs();
+                velocityLat = (last.getLatitude() - previous.getLatitude()) / elapsed;
+                velocityLon = (last.getLongitude() - previous.getLongitude()) / elapsed;
+            }
+            long elapsed = timeMs - last.getTimeMs();
+            return GeoMath.distanceMeters(last.getLatitude() + velocityLat * elapsed,
+                    last.getLongitude() + velocityLon * elapsed, latitude, longitude);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.adx.integration.ui.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.adx.integration.data.remote.ApiService;
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class DashboardSectionsTest {
+
+    private static final String FULL = "{\"user\": {}, \"availableAds\": [], \"creditBalance\": {},"
+            + " \"nearbyStores\": [], \"creditStats\": {}, \"radiusEntries\": []}";
+
+    private final Gson gson = new Gson();
+
+    @Test
+    public void completeDashboardNeedsNoFurtherCalls() {
+        assertTrue(DashboardSections.missing(dashboard(FULL), true).isEmpty());
+    }
+
+    @Test
+    public void failedDashboardLoadsEverySectionInPriorityOrder() {
+        assertEquals(Arrays.asList(
+                DashboardSections.ADS, DashboardSections.BALANCE, DashboardSections.STORES, DashboardSections.STATS),
+                listOf(DashboardSections.missing(null, true)));
+    }
+
+    @Test
+    public void onlyAbsentSectionsAreLoaded() {
+        ApiService.DashboardData dashboard = dashboard("{\"user\": {}, \"availableAds\": [], \"nearbyStores\": []}");
+
+        assertEquals(Arrays.asList(DashboardSections.BALANCE, DashboardSections.STATS),
+                listOf(DashboardSections.missing(dashboard, true)));
+    }
+
+    @Test
+    public void storesAreSkippedWithoutLocation() {
+        ApiService.DashboardData dashboard = dashboard("{\"availableAds\": [], \"creditBalance\": {}, \"creditStats\": {}}");
+
+        assertTrue(DashboardSections.missing(dashboard, false).isEmpty());
+        assertEquals(Collections.singletonList(DashboardSections.STORES),
+                listOf(DashboardSections.missing(dashboard, true)));
+    }
+
+    @Test
+    public void missingSectionsLoadInParallel() throws Exception {
+        Set<String> missing = DashboardSections.missing(null, true);
+        // Same pool size as MainViewModel; every load waits for all the others to start
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor();
+        CyclicBarrier allStarted = new CyclicBarrier(missing.size());
+        List<String> published = new CopyOnWriteArrayList<>();
+        CountDownLatch settled = new CountDownLatch(1);
+        Set<?>[] fellBack = new Set<?>[1];
+
+        try {
+            SectionLoader sections = new SectionLoader(executor, deadlines, System::currentTimeMillis);
+            for (String name : missing) {
+                sections.add(name, 5_000, () -> allStarted.await(2, TimeUnit.SECONDS), index -> published.add(name),
+                        () -> { });
+            }
+            sections.start((Map<String, Long> timingsMs, Set<String> names) -> {
+                fellBack[0] = names;
+                settled.countDown();
+            });
+
+            assertTrue(settled.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+            deadlines.shutdownNow();
+        }
+        assertTrue(fellBack[0].isEmpty());
+        assertEquals(missing.size(), published.size());
+        assertTrue(published.containsAll(missing));
+    }
+
+    private ApiService.DashboardData dashboard(String json) {
+        return gson.fromJson(json, ApiService.DashboardData.class);
+    }
+
+    private static List<String> listOf(Set<String> sections) {
+        return new ArrayList<>(sections);
+    }
+}
@@ -0,0 +1,241 @@
+package com.adx.integration.ui.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+public class SectionLoaderTest {
+
+    private static final long LONG_DEADLINE_MS = 10_000;
+    private static final long SHORT_DEADLINE_MS = 100;
+    private static final long WAIT_SECONDS = 5;
+
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor();
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final Settled settled = new Settled();
+    private volatile long now = 1_700_000_000_000L;
+    private ExecutorService executor;
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        deadlines.shutdownNow();
+    }
+
+    @Test
+    public void slowSectionDoesNotHoldBackFirstContent() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        CountDownLatch slowRelease = new CountDownLatch(1);
+        CountDownLatch firstContent = new CountDownLatch(1);
+
+        loader()
+                .add("ads", LONG_DEADLINE_MS, () -> "3 ads", value -> {
+                    events.add("publish " + value);
+                    firstContent.countDown();
+                }, fallback("ads"))
+                .add("stats", LONG_DEADLINE_MS, () -> {
+                    slowRelease.await();
+                    return "stats";
+                }, publish(), fallback("stats"))
+                .start(settled);
+
+        assertTrue(firstContent.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("publish 3 ads"), events);
+        assertFalse(settled.done.await(50, TimeUnit.MILLISECONDS));
+
+        slowRelease.countDown();
+        assertTrue(settled.done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("publish 3 ads", "publish stats"), events);
+        assertTrue(settled.fellBack.isEmpty());
+    }
+
+    @Test
+    public void sectionsStartInTheOrderTheyWereAdded() throws Exception {
+        // One worker, so the lower-priority section waits for the thread
+        executor = Executors.newSingleThreadExecutor();
+
+        loader()
+                .add("ads", LONG_DEADLINE_MS, () -> started("ads"), publish(), fallback("ads"))
+                .add("balance", LONG_DEADLINE_MS, () -> started("balance"), publish(), fallback("balance"))
+                .add("stats", LONG_DEADLINE_MS, () -> started("stats"), publish(), fallback("stats"))
+                .start(settled);
+
+        assertTrue(settled.done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(
+                "start ads", "publish ads",
+                "start balance", "publish balance",
+                "start stats", "publish stats"), events);
+    }
+
+    @Test
+    public void lowPrioritySectionPastDeadlineIsCancelledAndFallsBack() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch loadEnded = new CountDownLatch(1);
+
+        loader()
+                .add("ads", LONG_DEADLINE_MS, () -> "ads", publish(), fallback("ads"))
+                .add("stats", SHORT_DEADLINE_MS, () -> {
+                    try {
+                        new CountDownLatch(1).await();
+                        return "stats";
+                    } catch (InterruptedException e) {
+                        interrupted.set(true);
+                        throw e;
+                    } finally {
+                        loadEnded.countDown();
+                    }
+                }, publish(), fallback("stats"))
+                .start(settled);
+
+        assertTrue(settled.done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(loadEnded.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(interrupted.get());
+        assertTrue(events.contains("publish ads"));
+        assertTrue(events.contains("fallback stats"));
+        assertFalse(events.contains("publish stats"));
+        assertEquals(Collections.singleton("stats"), settled.fellBack);
+    }
+
+    @Test
+    public void resultArrivingAfterDeadlineIsDropped() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        CountDownLatch fellBack = new CountDownLatch(1);
+        CountDownLatch loadEnded = new CountDownLatch(1);
+
+        loader()
+                .add("stats", SHORT_DEADLINE_MS, () -> {
+                    // Ignores the interrupt, like a blocking call that cannot be cancelled
+                    awaitUninterruptibly(fellBack);
+                    loadEnded.countDown();
+                    return "late stats";
+                }, publish(), () -> {
+                    events.add("fallback stats");
+                    fellBack.countDown();
+                })
+                .start(settled);
+
+        assertTrue(settled.done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(loadEnded.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("fallback stats"), events);
+        assertEquals(1, settled.calls);
+    }
+
+    @Test
+    public void failedSectionFallsBackAloneAndTimingsAreRecorded() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+
+        loader()
+                .add("ads", LONG_DEADLINE_MS, () -> {
+                    now += 120;
+                    return "ads";
+                }, publish(), fallback("ads"))
+                .add("stores", LONG_DEADLINE_MS, () -> {
+                    now += 30;
+                    throw new IOException("Nearby stores request failed: 503");
+                }, publish(), fallback("stores"))
+                .start(settled);
+
+        assertTrue(settled.done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("publish ads", "fallback stores"), events);
+        assertEquals(Collections.singleton("stores"), settled.fellBack);
+        assertEquals(Long.valueOf(120), settled.timingsMs.get("ads"));
+        assertEquals(Long.valueOf(150), settled.timingsMs.get("stores"));
+    }
+
+    @Test
+    public void noSectionsSettlesImmediately() {
+        executor = Executors.newSingleThreadExecutor();
+
+        loader().start(settled);
+
+        assertEquals(1, settled.calls);
+        assertTrue(settled.timingsMs.isEmpty());
+        assertTrue(settled.fellBack.isEmpty());
+    }
+
+    @Test
+    public void sectionWithoutResultPublishesNull() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        CountDownLatch published = new CountDownLatch(1);
+        String[] value = { "unset" };
+
+        loader()
+                .add("balance", LONG_DEADLINE_MS, () -> null, (String balance) -> {
+                    value[0] = balance;
+                    published.countDown();
+                }, fallback("balance"))
+                .start(settled);
+
+        assertTrue(published.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertNull(value[0]);
+    }
+
+    private SectionLoader loader() {
+        return new SectionLoader(executor, deadlines, () -> now);
+    }
+
+    private String started(String name) {
+        events.add("start " + name);
+        return name;
+    }
+
+    private Consumer<String> publish() {
+        return value -> events.add("publish " + value);
+    }
+
+    private Runnable fallback(String name) {
+        return () -> events.add("fallback " + name);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Settled implements SectionLoader.Listener {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Map<String, Long> timingsMs;
+        volatile Set<String> fellBack;
+        volatile int calls;
+
+        @Override
+        public void onAllSettled(Map<String, Long> timingsMs, Set<String> fellBack) {
+            this.timingsMs = timingsMs;
+            this.fellBack = fellBack;
+            calls++;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.adx.integration.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class GeoMathTest {
+
+    @Test
+    public void distanceMatchesKnownValues() {
+        // San Francisco to Los Angeles, ~559 km
+        assertEquals(559_120, GeoMath.distanceMeters(37.7749, -122.4194, 34.0522, -118.2437), 500);
+        // One degree of latitude
+        assertEquals(GeoMath.METERS_PER_DEGREE, GeoMath.distanceMeters(10, 20, 11, 20), 1e-6);
+        assertEquals(0, GeoMath.distanceMeters(37.7749, -122.4194, 37.7749, -122.4194), 0);
+    }
+
+    @Test
+    public void distanceWrapsAroundAntimeridian() {
+        double across = GeoMath.distanceMeters(0, 179.999, 0, -179.999);
+        assertEquals(0.002 * GeoMath.METERS_PER_DEGREE, across, 0.01);
+        assertEquals(across, GeoMath.approxDistanceMeters(0, 179.999, 0, -179.999), 0.01);
+    }
+
+    @Test
+    public void approximationStaysWithinHalfPercentForFenceDistances() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            double lat1 = -70 + random.nextDouble() * 140;
+            double lon1 = -180 + random.nextDouble() * 360;
+            double lat2 = lat1 + (random.nextDouble() - 0.5) * 0.05;
+            double lon2 = lon1 + (random.nextDouble() - 0.5) * 0.05;
+
+            double exact = GeoMath.distanceMeters(lat1, lon1, lat2, lon2);
+            double approx = GeoMath.approxDistanceMeters(lat1, lon1, lat2, lon2);
+            assertEquals(exact, approx, Math.max(exact * 0.005, 0.01));
+        }
+    }
+
+    @Test
+    public void isWithinRadiusAgreesWithHaversineNearBoundary() {
+        Random random = new Random(5);
+        for (int i = 0; i < 10_000; i++) {
+            double lat1 = -70 + random.nextDouble() * 140;
+            double lon1 = -180 + random.nextDouble() * 360;
+            double radius = 10 + random.nextDouble() * 990;
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            // Points within 1% of the radius on either side of the edge
+            double distance = radius * (0.99 + random.nextDouble() * 0.02);
+            double lat2 = lat1 + Math.cos(bearing) * GeoMath.latitudeSpanDegrees(distance);
+            double lon2 = lon1 + Math.sin(bearing) * GeoMath.longitudeSpanDegrees(distance, lat1);
+
+            boolean expected = GeoMath.distanceMeters(lat1, lon1, lat2, lon2) <= radius;
+            assertEquals(expected, GeoMath.isWithinRadius(lat1, lon1, lat2, lon2, radius));
+        }
+    }
+
+    @Test
+    public void isWithinRadiusRejectsFarAndNegative() {
+        assertTrue(GeoMath.isWithinRadius(37.0, -122.0, 37.0, -122.0, 0));
+        assertFalse(GeoMath.isWithinRadius(37.0, -122.0, 37.0, -122.0, -1));
+        assertFalse(GeoMath.isWithinRadius(37.0, -122.0, 38.0, -122.0, 1_000));
+        assertFalse(GeoMath.isWithinRadius(37.0, -122.0, 37.0, -121.0, 1_000));
+    }
+
+    @Test
+    public void spansCoverDistance() {
+        assertEquals(1.0, GeoMath.latitudeSpanDegrees(GeoMath.METERS_PER_DEGREE), 1e-12);
+        assertEquals(2.0, GeoMath.longitudeSpanDegrees(GeoMath.METERS_PER_DEGREE, 60), 1e-9);
+        // Clamped near the poles so spans stay finite
+        assertEquals(100.0, GeoMath.longitudeSpanDegrees(GeoMath.METERS_PER_DEGREE, 90), 1e-9);
+    }
+}
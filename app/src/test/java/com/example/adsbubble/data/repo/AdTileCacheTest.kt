@@ -0,0 +1,239 @@
+package com.example.adsbubble.data.repo
+
+import androidx.lifecycle.LiveData
+import com.example.adsbubble.data.Geohash
+import com.example.adsbubble.data.api.ApiService
+import com.example.adsbubble.data.db.Ad
+import com.example.adsbubble.data.db.AdDao
+import com.example.adsbubble.data.db.AdTile
+import com.example.adsbubble.data.db.StoreState
+import com.google.gson.Gson
+import kotlinx.coroutines.runBlocking
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import retrofit2.HttpException
+import retrofit2.Retrofit
+import retrofit2.converter.gson.GsonConverterFactory
+
+class AdTileCacheTest {
+
+    private val server = MockWebServer()
+    private val dao = FakeAdDao()
+    private val gson = Gson()
+    private lateinit var api: ApiService
+
+    // Centre of a precision 5 cell, so a 100 m query covers exactly one tile
+    private val tile = Geohash.encode(37.7749, -122.4194, 5)
+    private val lat = Geohash.bounds(tile).centerLat
+    private val lon = Geohash.bounds(tile).centerLon
+
+    @Before
+    fun setUp() {
+        server.start()
+        api = Retrofit.Builder()
+            .baseUrl(server.url("/"))
+            .addConverterFactory(GsonConverterFactory.create(gson))
+            .build()
+            .create(ApiService::class.java)
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun firstVisitDoesFullSyncAndStoresCursor() = runBlocking {
+        server.enqueue(delta(upserts = listOf("a1", "a2", "a3"), cursor = "c1", full = true))
+
+        val ads = cache().adsNear(lat, lon, 100.0)
+
+        val request = server.takeRequest()
+        assertEquals("/ads/delta", request.requestUrl!!.encodedPath)
+        assertEquals(tile, request.requestUrl!!.queryParameter("region"))
+        assertNull(request.requestUrl!!.queryParameter("since"))
+        assertEquals(setOf("a1", "a2", "a3"), ads.map { it.token }.toSet())
+        assertEquals("c1", dao.tiles.getValue(tile).cursor)
+    }
+
+    @Test
+    fun freshTileIsServedWithoutRequest() = runBlocking {
+        server.enqueue(delta(upserts = listOf("a1"), cursor = "c1", full = true))
+        val cache = cache()
+        cache.adsNear(lat, lon, 100.0)
+
+        val ads = cache.adsNear(lat, lon, 100.0)
+
+        assertEquals(1, server.requestCount)
+        assertEquals(listOf("a1"), ads.map { it.token })
+    }
+
+    @Test
+    fun expiredTileSyncsOnlyChangesSinceCursor() = runBlocking {
+        server.enqueue(delta(upserts = listOf("a1", "a2"), cursor = "c1", full = true))
+        server.enqueue(delta(upserts = listOf("a3"), deleted = listOf("a1"), cursor = "c2"))
+        val cache = cache(ttlMs = 0)
+        cache.adsNear(lat, lon, 100.0)
+
+        val ads = cache.adsNear(lat, lon, 100.0)
+
+        server.takeRequest()
+        assertEquals("c1", server.takeRequest().requestUrl!!.queryParameter("since"))
+        assertEquals(setOf("a2", "a3"), ads.map { it.token }.toSet())
+        assertEquals("c2", dao.tiles.getValue(tile).cursor)
+    }
+
+    @Test
+    fun fullSyncDropsRowsItDidNotReach() = runBlocking {
+        dao.ads["stale"] = ad("stale", syncedAt = 0)
+        server.enqueue(delta(upserts = listOf("a1"), cursor = "c1", full = true))
+
+        val ads = cache().adsNear(lat, lon, 100.0)
+
+        assertEquals(listOf("a1"), ads.map { it.token })
+        assertFalse("stale" in dao.ads)
+    }
+
+    @Test
+    fun largeDeltaIsAppliedInBatches() = runBlocking {
+        server.enqueue(delta(upserts = (0 until 1200).map { "a$it" }, cursor = "c1", full = true))
+
+        val ads = cache().adsNear(lat, lon, 100.0)
+
+        assertEquals(1200, ads.size)
+        assertEquals(3, dao.insertBatches)
+    }
+
+    @Test
+    fun failedSyncKeepsOldCursor() = runBlocking {
+        server.enqueue(delta(upserts = listOf("a1"), cursor = "c1", full = true))
+        server.enqueue(MockResponse().setResponseCode(500))
+        val cache = cache(ttlMs = 0)
+        cache.adsNear(lat, lon, 100.0)
+
+        try {
+            cache.adsNear(lat, lon, 100.0)
+            fail("expected the sync to fail")
+        } catch (e: HttpException) {
+            assertEquals(500, e.code())
+        }
+        assertEquals("c1", dao.tiles.getValue(tile).cursor)
+
+        server.enqueue(delta(upserts = emptyList(), cursor = "c2"))
+        cache.adsNear(lat, lon, 100.0)
+        server.takeRequest()
+        server.takeRequest()
+        assertEquals("c1", server.takeRequest().requestUrl!!.queryParameter("since"))
+        assertEquals("c2", dao.tiles.getValue(tile).cursor)
+        assertTrue("a1" in dao.ads)
+    }
+
+    private fun cache(ttlMs: Long = AdTileCache.DEFAULT_TTL_MS) =
+        AdTileCache(api, dao, ttlMs = ttlMs, gson = gson) { dto ->
+            Ad(dto.token, dto.storeId, dto.storeName, dto.title, dto.description,
+                dto.imageUrl, dto.videoUrl, dto.latitude, dto.longitude)
+        }
+
+    private fun delta(upserts: List<String>, deleted: List<String> = emptyList(),
+                      cursor: String?, full: Boolean = false): MockResponse {
+        val body = mapOf(
+            "upserts" to upserts.map {
+                mapOf("token" to it, "storeId" to "s1", "storeName" to "Store", "title" to "Ad $it",
+                    "latitude" to lat, "longitude" to lon)
+            },
+            "deleted" to deleted,
+            "cursor" to cursor,
+            "full" to full
+        )
+        return MockResponse().setBody(gson.toJson(body))
+    }
+
+    private fun ad(token: String, syncedAt: Long) =
+        Ad(token, "s1", "Store", "Ad $token", null, null, null, lat, lon, syncedAt = syncedAt)
+
+    /**
+     * In-memory stand-in for the Room DAO; the default methods run against it unchanged
+     */
+    private class FakeAdDao : AdDao {
+        val ads = LinkedHashMap<String, Ad>()
+        val tiles = HashMap<String, AdTile>()
+        var insertBatches = 0
+
+        override fun getAllAds(): LiveData<List<Ad>> = throw UnsupportedOperationException()
+
+        override suspend fun insertAll(ads: List<Ad>) {
+            insertBatches++
+            ads.forEach { this.ads[it.token] = it }
+        }
+
+        override suspend fun getAdsForStores(storeIds: List<String>) = ads.values.filter { it.storeId in storeIds }
+
+        override suspend fun updateAd(ad: Ad) {
+            ads[ad.token] = ad
+        }
+
+        override suspend fun deleteByToken(token: String) {
+            ads.remove(token)
+        }
+
+        override suspend fun deleteByTokens(tokens: List<String>) = tokens.count { ads.remove(it) != null }
+
+        override suspend fun getBookmarkedTokens(tokens: List<String>) =
+            tokens.filter { ads[it]?.bookmarked == true }
+
+        override suspend fun getAdsInBounds(minLat: Double, maxLat: Double, minLon: Double, maxLon: Double) =
+            ads.values.filter { it.inBounds(minLat, maxLat, minLon, maxLon) }
+
+        override suspend fun countAds() = ads.size
+
+        override suspend fun deleteUnsyncedInBounds(stamp: Long, minLat: Double, maxLat: Double,
+                                                    minLon: Double, maxLon: Double) =
+            removeWhere { it.syncedAt < stamp && it.inBounds(minLat, maxLat, minLon, maxLon) }
+
+        override suspend fun deleteUnbookmarkedInBounds(minLat: Double, maxLat: Double,
+                                                        minLon: Double, maxLon: Double) =
+            removeWhere { !it.bookmarked && it.inBounds(minLat, maxLat, minLon, maxLon) }
+
+        override suspend fun getTiles(geohashes: List<String>) = geohashes.mapNotNull { tiles[it] }
+
+        override suspend fun getTilesByAccess() = tiles.values.sortedBy { it.lastAccessAt }
+
+        override suspend fun upsertTile(tile: AdTile) {
+            tiles[tile.geohash] = tile
+        }
+
+        override suspend fun touchTiles(geohashes: List<String>, ts: Long) {
+            for (geohash in geohashes) tiles[geohash]?.let { tiles[geohash] = it.copy(lastAccessAt = ts) }
+        }
+
+        override suspend fun deleteTile(geohash: String) {
+            tiles.remove(geohash)
+        }
+
+        override suspend fun upsertStoreState(state: StoreState) = Unit
+
+        override suspend fun upsertStoreStates(states: List<StoreState>) = Unit
+
+        override suspend fun getStoreState(storeId: String): StoreState? = null
+
+        private fun removeWhere(predicate: (Ad) -> Boolean): Int {
+            val doomed = ads.values.filter(predicate).map { it.token }
+            doomed.forEach { ads.remove(it) }
+            return doomed.size
+        }
+
+        private fun Ad.inBounds(minLat: Double, maxLat: Double, minLon: Double, maxLon: Double): Boolean {
+            val lat = latitude ?: return false
+            val lon = longitude ?: return false
+            return lat in minLat..maxLat && lon in minLon..maxLon
+        }
+    }
+}
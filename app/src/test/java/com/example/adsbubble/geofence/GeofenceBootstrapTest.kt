@@ -0,0 +1,86 @@
+package com.example.adsbubble.geofence
+
+import com.adx.integration.utils.GeoMath.METERS_PER_DEGREE
+import com.example.adsbubble.data.db.Ad
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class GeofenceBootstrapTest {
+
+    private class FakeRegistrar : GeofenceRegistrar {
+        val calls = mutableListOf<String>()
+        val active = HashSet<String>()
+
+        override fun add(fences: List<StoreFence>, onResult: (Boolean) -> Unit) {
+            calls += "add ${fences.size}"
+            fences.forEach { active += it.storeId }
+            onResult(true)
+        }
+
+        override fun remove(storeIds: List<String>, onResult: (Boolean) -> Unit) {
+            calls += "remove ${storeIds.size}"
+            active -= storeIds.toSet()
+            onResult(true)
+        }
+
+        override fun removeAll(onResult: (Boolean) -> Unit) {
+            calls += "removeAll"
+            active.clear()
+            onResult(true)
+        }
+    }
+
+    private val registrar = FakeRegistrar()
+    private val manager = GeofenceRegistrationManager(registrar, maxFences = 3, refreshDistanceMeters = 500.0)
+    private val refreshes = mutableListOf<Pair<Double, Double>>()
+
+    private fun ad(token: String, storeId: String, metersNorth: Double?) = Ad(
+        token = token, storeId = storeId, storeName = storeId, title = token,
+        description = null, imageUrl = null, videoUrl = null,
+        latitude = metersNorth?.let { 37.0 + it / METERS_PER_DEGREE }, longitude = metersNorth?.let { -122.0 }
+    )
+
+    private val ads = listOf(
+        ad("t1", "near", 100.0),
+        ad("t2", "near", 100.0),
+        ad("t3", "mid", 400.0),
+        ad("t4", "far", 2000.0),
+        ad("t5", "farthest", 3000.0),
+        ad("t6", "unplaced", null)
+    )
+
+    private val bootstrap = GeofenceBootstrap(manager) { lat, lon ->
+        refreshes += lat to lon
+        ads
+    }
+
+    @Test
+    fun seedRegistersNearestStoresBeforeAnyEnter() = runBlocking {
+        val registered = bootstrap.seed(37.0, -122.0)
+
+        assertEquals(listOf(37.0 to -122.0), refreshes)
+        assertEquals(setOf("near", "mid", "far"), registered)
+        assertEquals(listOf("removeAll", "add 3"), registrar.calls)
+        assertEquals(registrar.active, registered)
+    }
+
+    @Test
+    fun reseedAtSameSpotMakesNoCalls() = runBlocking {
+        bootstrap.seed(37.0, -122.0)
+        registrar.calls.clear()
+
+        bootstrap.seed(37.0, -122.0)
+
+        assertEquals(2, refreshes.size)
+        assertTrue(registrar.calls.isEmpty())
+    }
+
+    @Test
+    fun storeFencesSkipAdsWithoutPositionAndCollapseStores() {
+        val fences = storeFences(ads)
+
+        assertEquals(listOf("near", "mid", "far", "farthest"), fences.map { it.storeId })
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.adsbubble.geofence
+
+import com.adx.integration.utils.GeoMath.METERS_PER_DEGREE
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class GeofenceRegistrationManagerTest {
+
+    /**
+     * Stands in for GeofencingClient: records every call and answers with [succeed]
+     */
+    private class FakeRegistrar : GeofenceRegistrar {
+        val calls = mutableListOf<String>()
+        val active = HashMap<String, StoreFence>()
+        var succeed = true
+
+        override fun add(fences: List<StoreFence>, onResult: (Boolean) -> Unit) {
+            calls += "add ${fences.size}"
+            if (succeed) fences.forEach { active[it.storeId] = it }
+            onResult(succeed)
+        }
+
+        override fun remove(storeIds: List<String>, onResult: (Boolean) -> Unit) {
+            calls += "remove ${storeIds.size}"
+            if (succeed) storeIds.forEach { active.remove(it) }
+            onResult(succeed)
+        }
+
+        override fun removeAll(onResult: (Boolean) -> Unit) {
+            calls += "removeAll"
+            if (succeed) active.clear()
+            onResult(succeed)
+        }
+    }
+
+    private val registrar = FakeRegistrar()
+    private var resets = 0
+
+    private fun manager(maxFences: Int = 10, maxCandidates: Int = 1000) =
+        GeofenceRegistrationManager(registrar, maxFences, 500.0, maxCandidates) { resets++ }
+
+    /** Stores in a line heading north from (37.0, -122.0), [spacing] meters apart */
+    private fun storesNorth(count: Int, spacing: Double = 200.0, prefix: String = "s") =
+        (0 until count).map { i -> StoreFence("$prefix$i", 37.0 + i * spacing / METERS_PER_DEGREE, -122.0, 50f) }
+
+    @Test
+    fun firstLocationClearsThenAddsNearestInTwoCalls() {
+        val manager = manager(maxFences = 10)
+        manager.updateCandidates(storesNorth(200))
+
+        assertTrue(manager.onLocation(37.0, -122.0))
+
+        assertEquals(listOf("removeAll", "add 10"), registrar.calls)
+        assertEquals(2L, manager.ipcCalls)
+        assertEquals((0 until 10).map { "s$it" }.toSet(), manager.registeredStoreIds())
+        assertEquals(registrar.active.keys, manager.registeredStoreIds())
+        assertEquals(1, resets)
+    }
+
+    @Test
+    fun smallMoveWithoutChangesMakesNoCalls() {
+        val manager = manager()
+        manager.updateCandidates(storesNorth(50))
+        manager.onLocation(37.0, -122.0)
+        registrar.calls.clear()
+
+        assertFalse(manager.onLocation(37.0 + 100 / METERS_PER_DEGREE, -122.0))
+        assertTrue(registrar.calls.isEmpty())
+        assertEquals(2L, manager.ipcCalls)
+    }
+
+    @Test
+    fun movingAppliesOnlyTheDifferenceInAtMostTwoCalls() {
+        val manager = manager(maxFences = 10)
+        manager.updateCandidates(storesNorth(200))
+        manager.onLocation(37.0, -122.0)
+        registrar.calls.clear()
+
+        // 1.1 km north the nearest ten are s1..s10
+        assertTrue(manager.onLocation(37.0 + 1100 / METERS_PER_DEGREE, -122.0))
+
+        assertEquals(listOf("remove 1", "add 1"), registrar.calls)
+        assertEquals(4L, manager.ipcCalls)
+        assertEquals((1..10).map { "s$it" }.toSet(), manager.registeredStoreIds())
+        assertEquals(registrar.active.keys, manager.registeredStoreIds())
+    }
+
+    @Test
+    fun failedAddIsNotRecordedAndIsRetried() {
+        val manager = manager(maxFences = 5)
+        manager.updateCandidates(storesNorth(20))
+        registrar.succeed = false
+
+        manager.onLocation(37.0, -122.0)
+        assertTrue(manager.registeredStoreIds().isEmpty())
+        assertEquals(2L, manager.failedCalls)
+        assertEquals(0, resets)
+
+        registrar.succeed = true
+        registrar.calls.clear()
+        // Same spot: only the earlier failure triggers this update
+        assertTrue(manager.onLocation(37.0, -122.0))
+        assertEquals(listOf("removeAll", "add 5"), registrar.calls)
+        assertEquals(registrar.active.keys, manager.registeredStoreIds())
+        assertEquals(1, resets)
+    }
+
+    @Test
+    fun failedRemoveKeepsFencesRegistered() {
+        val manager = manager(maxFences = 5)
+        manager.updateCandidates(storesNorth(5))
+        manager.onLocation(37.0, -122.0)
+
+        registrar.succeed = false
+        manager.removeCandidate("s0")
+        manager.onLocation(37.0, -122.0)
+        assertTrue("s0" in manager.registeredStoreIds())
+
+        registrar.succeed = true
+        registrar.calls.clear()
+        manager.onLocation(37.0, -122.0)
+        assertEquals(listOf("remove 1"), registrar.calls)
+        assertFalse("s0" in manager.registeredStoreIds())
+    }
+
+    @Test
+    fun changedGeometryIsReaddedWithoutRemove() {
+        val manager = manager(maxFences = 5)
+        manager.updateCandidates(storesNorth(5))
+        manager.onLocation(37.0, -122.0)
+        registrar.calls.clear()
+
+        manager.updateCandidates(listOf(StoreFence("s0", 37.0, -122.0, 80f)))
+        manager.onLocation(37.0, -122.0)
+
+        assertEquals(listOf("add 1"), registrar.calls)
+        assertEquals(80f, registrar.active.getValue("s0").radiusMeters, 0f)
+    }
+
+    @Test
+    fun candidatesAreCappedToNearest() {
+        val manager = manager(maxFences = 5, maxCandidates = 20)
+        manager.updateCandidates(storesNorth(10))
+        manager.onLocation(37.0, -122.0)
+
+        manager.updateCandidates(storesNorth(30, prefix = "far", spacing = 1000.0).drop(10))
+
+        assertEquals(10L, manager.candidatesEvicted)
+        assertEquals((0 until 5).map { "s$it" }.toSet(), manager.registeredStoreIds())
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsMoreFencesThanPlatformAllows() {
+        manager(maxFences = GeofenceRegistrationManager.PLATFORM_FENCE_LIMIT + 1)
+    }
+}
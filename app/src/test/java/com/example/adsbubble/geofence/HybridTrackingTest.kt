@@ -0,0 +1,158 @@
+package com.example.adsbubble.geofence
+
+import com.adx.integration.utils.GeoMath
+import com.adx.integration.utils.GeoMath.METERS_PER_DEGREE
+import com.example.adsbubble.data.db.Ad
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class HybridTrackingTest {
+
+    /**
+     * Stands in for the platform: fences added around the user report ENTER right away
+     * (INITIAL_TRIGGER_ENTER), and moving reports ENTER/EXIT for every active fence crossed
+     */
+    private inner class FakePlatform : GeofenceRegistrar {
+        val active = HashMap<String, StoreFence>()
+        private val inside = HashSet<String>()
+        var lat = 0.0
+        var lon = 0.0
+
+        fun moveTo(lat: Double, lon: Double) {
+            this.lat = lat
+            this.lon = lon
+            val entered = active.values.filter { contains(it) && it.storeId !in inside }.map { it.storeId }
+            val exited = inside.filter { id -> active[id]?.let { !contains(it) } ?: false }
+            inside += entered
+            inside -= exited.toSet()
+            if (entered.isNotEmpty()) rings.onRingsEntered(entered)
+            if (exited.isNotEmpty()) rings.onRingsExited(exited)
+        }
+
+        override fun add(fences: List<StoreFence>, onResult: (Boolean) -> Unit) {
+            fences.forEach { active[it.storeId] = it }
+            onResult(true)
+            val entered = fences.filter { contains(it) }.map { it.storeId }
+            inside += entered
+            if (entered.isNotEmpty()) rings.onRingsEntered(entered)
+        }
+
+        override fun remove(storeIds: List<String>, onResult: (Boolean) -> Unit) {
+            // Removing a fence reports nothing, even if the user was inside it
+            storeIds.forEach { active.remove(it); inside.remove(it) }
+            onResult(true)
+        }
+
+        override fun removeAll(onResult: (Boolean) -> Unit) {
+            active.clear()
+            inside.clear()
+            onResult(true)
+        }
+
+        private fun contains(fence: StoreFence) =
+            GeoMath.distanceMeters(lat, lon, fence.lat, fence.lon) <= fence.radiusMeters
+    }
+
+    private class MemoryRingStore : HybridRings.RingStore {
+        var rings: Map<String, Long> = emptyMap()
+        override fun load() = rings
+        override fun save(rings: Map<String, Long>) {
+            this.rings = HashMap(rings)
+        }
+    }
+
+    private class RecordingSwitch : HybridRings.TrackingSwitch {
+        val events = mutableListOf<String>()
+        override fun start() {
+            events += "start"
+        }
+
+        override fun stop() {
+            events += "stop"
+        }
+    }
+
+    private var now = 1_700_000_000_000L
+    private val tracking = RecordingSwitch()
+    private val rings = HybridRings(MemoryRingStore(), tracking) { now }
+    private val platform = FakePlatform()
+
+    private fun north(meters: Double) = 37.0 + meters / METERS_PER_DEGREE
+
+    // Default fences are 1609 m, so stores 10 km apart never overlap
+    private val ads = listOf(
+        ad("a", north(0.0)),
+        ad("b", north(10_000.0)),
+        ad("c", north(20_000.0))
+    )
+
+    private fun ad(storeId: String, lat: Double) = Ad(
+        token = "t-$storeId", storeId = storeId, storeName = storeId, title = storeId,
+        description = null, imageUrl = null, videoUrl = null, latitude = lat, longitude = -122.0
+    )
+
+    private fun bootstrap(maxFences: Int) = GeofenceBootstrap(
+        GeofenceRegistrationManager(platform, maxFences, 500.0, onRegistrationReset = { rings.clearRings() }),
+        { _, _ -> ads },
+        { rings.retainRegistered(it) }
+    )
+
+    /** Seed at a position the platform has not reported any transition for yet */
+    private fun seedAt(bootstrap: GeofenceBootstrap, lat: Double) = runBlocking {
+        platform.lat = lat
+        platform.lon = -122.0
+        bootstrap.seed(lat, -122.0)
+    }
+
+    @Test
+    fun seededFenceHandsOffToTrackingUntilExit() {
+        seedAt(bootstrap(maxFences = 3), north(0.0))
+
+        assertEquals(listOf("start"), tracking.events)
+        assertEquals(setOf("a"), rings.insideRings())
+
+        platform.moveTo(north(5_000.0), -122.0)
+
+        assertEquals(listOf("start", "stop"), tracking.events)
+        assertEquals(emptySet<String>(), rings.insideRings())
+    }
+
+    @Test
+    fun trackingStopsOnlyAfterLastRing() {
+        seedAt(bootstrap(maxFences = 3), north(5_000.0))
+        tracking.events.clear()
+
+        rings.onRingsEntered(listOf("a"))
+        rings.onRingsEntered(listOf("b"))
+        rings.onRingsExited(listOf("a"))
+        assertEquals(listOf("start", "start"), tracking.events)
+
+        rings.onRingsExited(listOf("b"))
+        assertEquals(listOf("start", "start", "stop"), tracking.events)
+    }
+
+    @Test
+    fun rotatingFenceOutStopsTracking() {
+        val bootstrap = bootstrap(maxFences = 1)
+        seedAt(bootstrap, north(0.0))
+        assertEquals(listOf("start"), tracking.events)
+
+        // Nearest is now c, outside its ring; a is removed before the platform reported leaving it
+        seedAt(bootstrap, north(16_000.0))
+
+        assertEquals(setOf("c"), platform.active.keys)
+        assertEquals(listOf("start", "stop"), tracking.events)
+        assertEquals(emptySet<String>(), rings.insideRings())
+    }
+
+    @Test
+    fun ringWithoutExitExpires() {
+        seedAt(bootstrap(maxFences = 3), north(0.0))
+
+        now += HybridRings.MAX_RING_DWELL_MS
+        rings.expireRings()
+
+        assertEquals(listOf("start", "stop"), tracking.events)
+    }
+}